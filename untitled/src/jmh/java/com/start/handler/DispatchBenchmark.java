@@ -0,0 +1,110 @@
+package com.start.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.start.Main;
+import com.start.model.MessageEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HandlerRegistry#dispatch} 的分发开销：Handler 都是空实现，只测索引查找和 match。
+ * 消息分三类：命中精确触发词、命中前缀、都不命中落到兜底。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    /** 只声明触发词、不做任何事的 Handler */
+    private static final class StubHandler implements MessageHandler {
+        private final TriggerSpec spec;
+
+        StubHandler(TriggerSpec spec) {
+            this.spec = spec;
+        }
+
+        @Override
+        public boolean match(MessageEvent event) {
+            return true;
+        }
+
+        @Override
+        public void handle(MessageEvent event, Main bot) {
+        }
+
+        @Override
+        public TriggerSpec triggers() {
+            return spec;
+        }
+    }
+
+    private static final class StubFallback implements MessageHandler {
+        @Override
+        public boolean match(MessageEvent event) {
+            return true;
+        }
+
+        @Override
+        public void handle(MessageEvent event, Main bot) {
+        }
+
+        @Override
+        public boolean isFallback() {
+            return true;
+        }
+    }
+
+    @Param({"exact", "prefix", "fallback"})
+    public String traffic;
+
+    private HandlerRegistry registry;
+    private MessageEvent[] events;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        List<MessageHandler> handlers = new ArrayList<>();
+        String[] words = {"你好", "幸运值", "讲个笑话", "三角洲", "今日职业", "今日cp", "排行榜", "签到"};
+        for (String w : words) {
+            handlers.add(new StubHandler(TriggerSpec.of().exact(TriggerSpec.Source.PLAIN, w)));
+        }
+        String[] prefixes = {"提醒", "蛋组", "远行商人", "/agent"};
+        for (String p : prefixes) {
+            handlers.add(new StubHandler(TriggerSpec.of().prefix(TriggerSpec.Source.PLAIN, p)));
+        }
+        handlers.add(new StubFallback());
+        registry = new HandlerRegistry(handlers);
+
+        String[] texts = switch (traffic) {
+            case "exact" -> words;
+            case "prefix" -> new String[]{"提醒我明天8点上课", "蛋组 小火猴", "远行商人 订阅", "/agent 查一下天气"};
+            default -> new String[]{"今天好困啊", "有没有人一起打游戏", "哈哈哈哈哈", "这个怎么弄"};
+        };
+        ObjectMapper mapper = new ObjectMapper();
+        events = new MessageEvent[16];
+        for (int i = 0; i < events.length; i++) {
+            String text = texts[i % texts.length];
+            ObjectNode json = mapper.createObjectNode();
+            json.put("post_type", "message");
+            json.put("message_type", "group");
+            json.put("group_id", 100000);
+            json.put("user_id", 10001 + i);
+            json.put("self_id", 10000);
+            json.put("raw_message", text);
+            json.putArray("message").addObject().put("type", "text").putObject("data").put("text", text);
+            events[i] = MessageEvent.of(json);
+        }
+    }
+
+    @Benchmark
+    public void dispatch() {
+        registry.dispatch(events[cursor++ & (events.length - 1)], null);
+    }
+}
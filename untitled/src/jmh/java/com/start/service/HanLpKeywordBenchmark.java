@@ -0,0 +1,46 @@
+package com.start.service;
+
+import com.hankcs.hanlp.HanLP;
+import com.start.util.TextAnalysis;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HanLP 关键词提取（知识库查询、记忆召回共用的主要 CPU 开销），
+ * 以及一次分词同时得出分词、关键词、词项的 {@link TextAnalysis}（不经缓存）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HanLpKeywordBenchmark {
+
+    @Param({"short", "long"})
+    public String length;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = "short".equals(length)
+                ? "远行商人今天卖什么"
+                : "昨天晚上和同学一起打三角洲行动，连输了五把，后来换了打法终于赢了一把，"
+                + "今天上课困得不行，数学老师讲的函数一个字都没听进去，放学想去三里屯喝奶茶";
+        // 词典在首次调用时加载，放在 Setup 里避免计入测量
+        HanLP.extractKeyword(text, 5);
+    }
+
+    @Benchmark
+    public List<String> extractKeyword() {
+        return HanLP.extractKeyword(text, 8);
+    }
+
+    @Benchmark
+    public TextAnalysis analyze() {
+        return TextAnalysis.analyze(text);
+    }
+}
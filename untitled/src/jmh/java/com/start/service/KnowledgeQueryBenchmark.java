@@ -0,0 +1,73 @@
+package com.start.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KeywordKnowledgeService#query} 在合成知识库上的耗时（含 HanLP 提取问题关键词）。
+ * 知识库由固定种子生成，条目数由 {@code size} 控制。
+ * 问题集有 {@value #QUESTIONS} 条互不相同的问题，远大于 {@link com.start.util.TextAnalysis} 的 LRU 容量，
+ * 按顺序循环时每次都不命中，测到的是新消息的真实开销而不是缓存命中。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KnowledgeQueryBenchmark {
+
+    private static final String[] TOPICS = {"远行商人", "蛋组", "职业", "三角洲", "洛克王国", "签到", "提醒", "排行榜",
+            "好感度", "糖果熊", "崩铁", "服务器", "幸运值", "运势", "奶茶", "作业"};
+    private static final String[] VERBS = {"怎么", "在哪", "什么时候", "如何", "为什么", "能不能"};
+    private static final String[] OBJECTS = {"刷新", "查询", "获得", "使用", "开启", "关闭", "兑换", "升级"};
+    private static final String[] OPENERS = {"请问", "话说", "那个", "诶", "有人知道", "熊熊"};
+    /** 2 的幂，便于按位取模 */
+    private static final int QUESTIONS = 4096;
+
+    @Param({"200", "2000"})
+    public int size;
+
+    private KeywordKnowledgeService service;
+    private String[] questions;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<KeywordKnowledgeService.Seed> seeds = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String topic = TOPICS[random.nextInt(TOPICS.length)];
+            String verb = VERBS[random.nextInt(VERBS.length)];
+            String object = OBJECTS[random.nextInt(OBJECTS.length)];
+            String pattern = topic + verb + object + "|" + topic + " " + object + i;
+            String answer = topic + "的" + object + "方法：打开菜单第" + (i % 7 + 1) + "项，按提示操作即可。";
+            seeds.add(new KeywordKnowledgeService.Seed(i + 1, pattern, answer, random.nextInt(10), topic));
+        }
+        service = KeywordKnowledgeService.inMemory(seeds);
+
+        // 开头 × 话题 × 动词 × 对象 共 4608 种组合，打乱后取前 QUESTIONS 条，保证互不相同
+        List<String> all = new ArrayList<>();
+        for (String opener : OPENERS) {
+            for (String topic : TOPICS) {
+                for (String verb : VERBS) {
+                    for (String object : OBJECTS) {
+                        all.add(opener + topic + verb + object + "呀？");
+                    }
+                }
+            }
+        }
+        Collections.shuffle(all, random);
+        questions = all.subList(0, QUESTIONS).toArray(new String[0]);
+    }
+
+    @Benchmark
+    public KeywordKnowledgeService.KnowledgeResult query() {
+        return service.query(questions[cursor++ & (questions.length - 1)]);
+    }
+}
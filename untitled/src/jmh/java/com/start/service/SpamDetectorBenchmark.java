@@ -0,0 +1,42 @@
+package com.start.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SpamDetector#checkAndInterrupt} 在多群混合流量下的耗时。
+ * 每条内容最多连续出现 4 次，不会触发复读发送（基准里没有 Main）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpamDetectorBenchmark {
+
+    private static final int GROUPS = 32;
+
+    private SpamDetector detector;
+    private String[] groupIds;
+    private String[] contents;
+    private long seq;
+
+    @Setup
+    public void setup() {
+        detector = new SpamDetector(null);
+        groupIds = new String[GROUPS];
+        for (int i = 0; i < GROUPS; i++) groupIds[i] = String.valueOf(100000 + i);
+        contents = new String[]{"哈哈哈哈", "+1", "笑死我了", "[CQ:face,id=178]", "真的假的", "确实", "离谱", "草"};
+    }
+
+    @Benchmark
+    public void check() {
+        long n = seq++;
+        int group = (int) (n % GROUPS);
+        // 同一群内每 4 条换一次内容
+        int content = (int) ((n / GROUPS / 4) % contents.length);
+        detector.checkAndInterrupt(groupIds[group], 10001 + (n & 7), contents[content]);
+    }
+}
@@ -0,0 +1,43 @@
+package com.start.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BaiLianService#splitIntoShortMessages} 三条分支：AI 自定分隔、空行段落、按句末标点兜底
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplitMessagesBenchmark {
+
+    @Param({"separator", "paragraph", "sentence"})
+    public String shape;
+
+    private String reply;
+
+    @Setup
+    public void setup() {
+        reply = switch (shape) {
+            case "separator" -> "真的假的|---|笑死 我也遇到过|---|下次一起去吧~|---|[CQ:face,id=178]";
+            case "paragraph" -> """
+                    今天数学课又被点名了。老师问的题我一个字都没听懂！
+
+                    还好同桌小雨小声提醒了我，不然真的要社死。
+
+                    放学去喝了多肉葡萄，心情好多了～你们今天怎么样？""";
+            default -> "[CQ:reply,id=12345][CQ:at,qq=10001] " + "排行榜第一名是小雨，第二名是阿乐。".repeat(40)
+                    + "就这样吧！还有什么想问的？";
+        };
+    }
+
+    @Benchmark
+    public List<String> split() {
+        return BaiLianService.splitIntoShortMessages(reply);
+    }
+}
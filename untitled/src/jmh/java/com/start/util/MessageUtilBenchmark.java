@@ -0,0 +1,57 @@
+package com.start.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageUtil} 纯文本 / @ 提取：CQ 码字符串和 OneBot 消息段数组两种输入
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageUtilBenchmark {
+
+    private static final String CQ_MESSAGE =
+            "[CQ:reply,id=-2147483001][CQ:at,qq=10001] [CQ:at,qq=10002] 今天远行商人卖什么[CQ:face,id=178]？"
+                    + "[CQ:image,file=abc.image,url=https://example.com/a.png]顺便看看蛋组";
+
+    private static final String JSON_MESSAGE = """
+            [{"type":"reply","data":{"id":"-2147483001"}},
+             {"type":"at","data":{"qq":"10001"}},
+             {"type":"text","data":{"text":" "}},
+             {"type":"at","data":{"qq":"10002"}},
+             {"type":"text","data":{"text":" 今天远行商人卖什么"}},
+             {"type":"face","data":{"id":"178"}},
+             {"type":"text","data":{"text":"？"}},
+             {"type":"image","data":{"file":"abc.image","url":"https://example.com/a.png"}},
+             {"type":"text","data":{"text":"顺便看看蛋组"}}]""";
+
+    private JsonNode segments;
+
+    @Setup
+    public void setup() throws Exception {
+        segments = new ObjectMapper().readTree(JSON_MESSAGE);
+    }
+
+    @Benchmark
+    public String plainTextFromCq() {
+        return MessageUtil.extractPlainText(CQ_MESSAGE);
+    }
+
+    @Benchmark
+    public String plainTextFromSegments() {
+        return MessageUtil.extractPlainText(segments);
+    }
+
+    @Benchmark
+    public List<Long> atsFromSegments() {
+        return MessageUtil.extractAts(segments);
+    }
+}
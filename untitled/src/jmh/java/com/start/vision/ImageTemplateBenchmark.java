@@ -0,0 +1,55 @@
+package com.start.vision;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各 {@link ImageTemplate} 的渲染耗时，以及渲染后 PNG + Base64 编码的耗时。
+ * CP 图不带头像 URL，避免把网络下载计入结果。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageTemplateBenchmark {
+
+    @Param({"cp", "profession"})
+    public String template;
+
+    private ImageTemplate<?> imageTemplate;
+    private Object data;
+    private BufferedImage rendered;
+    private final ImageRenderer renderer = ImageRenderer.getInstance();
+
+    @Setup
+    public void setup() {
+        if ("cp".equals(template)) {
+            imageTemplate = new CpResultTemplate();
+            data = new CpResultData("小雨", "阿乐", "");
+        } else {
+            imageTemplate = new ProfessionCardTemplate();
+            data = new ProfessionData("10001", "星辉术士", 4, "传说", "以星光为刃，守护夜空下的每一位旅人。",
+                    "SSR", 8760);
+        }
+        rendered = imageTemplate.render(data);
+    }
+
+    @Benchmark
+    public BufferedImage render() {
+        return imageTemplate.render(data);
+    }
+
+    @Benchmark
+    public String encodePngBase64() {
+        return renderer.toBase64(rendered, "png");
+    }
+
+    @Benchmark
+    public String renderToBase64() {
+        return renderer.renderToBase64(imageTemplate, data);
+    }
+}
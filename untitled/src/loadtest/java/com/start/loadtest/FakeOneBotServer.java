@@ -0,0 +1,231 @@
+package com.start.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.start.util.LatencyHistogram;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 假 NapCat：说 OneBot v11 正向 WebSocket 协议的本地服务端。
+ * <p>
+ * 向机器人推送群消息事件，并应答带 echo 的 API 调用（发消息、成员列表、成员信息等）。
+ * 回复延迟按群计算：@机器人 的消息进入该群的等待队列，机器人下一次在该群发言时，
+ * 队列里所有等待的消息都以"到这次发言为止"的时长计入直方图（合并回复也算应答）。
+ * </p>
+ */
+public class FakeOneBotServer extends WebSocketServer {
+    private static final Logger logger = LoggerFactory.getLogger(FakeOneBotServer.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final long botQq;
+    private final int membersPerGroup;
+    private final CountDownLatch connected = new CountDownLatch(1);
+    private volatile WebSocket client;
+
+    private final AtomicInteger messageIds = new AtomicInteger(1000);
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong groupMessagesReceived = new AtomicLong();
+    private final AtomicLong privateMessagesReceived = new AtomicLong();
+    /** action → 调用次数 */
+    private final Map<String, AtomicLong> apiCalls = new ConcurrentHashMap<>();
+
+    /** 群号 → 等待回复的 @ 消息发出时间（nanoTime） */
+    private final Map<Long, ConcurrentLinkedDeque<Long>> awaitingReply = new ConcurrentHashMap<>();
+    private final LatencyHistogram replyLatency = new LatencyHistogram();
+
+    public FakeOneBotServer(int port, long botQq, int membersPerGroup) {
+        super(new InetSocketAddress("127.0.0.1", port));
+        this.botQq = botQq;
+        this.membersPerGroup = membersPerGroup;
+        setReuseAddr(true);
+    }
+
+    /** 等待机器人连上 */
+    public boolean awaitClient(long timeoutMs) throws InterruptedException {
+        return connected.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // ================== 推送事件 ==================
+
+    /**
+     * 推送一条群消息事件
+     *
+     * @param mention 是否 @机器人（计入回复延迟）
+     */
+    public void pushGroupMessage(long groupId, long userId, String text, boolean mention) {
+        WebSocket ws = client;
+        if (ws == null || !ws.isOpen()) return;
+
+        ObjectNode event = MAPPER.createObjectNode();
+        event.put("time", System.currentTimeMillis() / 1000);
+        event.put("self_id", botQq);
+        event.put("post_type", "message");
+        event.put("message_type", "group");
+        event.put("sub_type", "normal");
+        event.put("message_id", messageIds.incrementAndGet());
+        event.put("group_id", groupId);
+        event.put("user_id", userId);
+        ArrayNode message = event.putArray("message");
+        StringBuilder raw = new StringBuilder();
+        if (mention) {
+            message.addObject().put("type", "at").putObject("data").put("qq", String.valueOf(botQq));
+            raw.append("[CQ:at,qq=").append(botQq).append("] ");
+        }
+        message.addObject().put("type", "text").putObject("data").put("text", text);
+        raw.append(text);
+        event.put("raw_message", raw.toString());
+        event.put("font", 0);
+        ObjectNode sender = event.putObject("sender");
+        sender.put("user_id", userId);
+        sender.put("nickname", "压测用户" + userId);
+        sender.put("card", "");
+        sender.put("role", "member");
+
+        if (mention) {
+            awaitingReply.computeIfAbsent(groupId, g -> new ConcurrentLinkedDeque<>()).add(System.nanoTime());
+        }
+        ws.send(event.toString());
+        eventsSent.incrementAndGet();
+    }
+
+    // ================== API 应答 ==================
+
+    @Override
+    public void onMessage(WebSocket conn, String text) {
+        JsonNode req;
+        try {
+            req = MAPPER.readTree(text);
+        } catch (Exception e) {
+            logger.warn("无法解析机器人发来的帧: {}", text);
+            return;
+        }
+        String action = req.path("action").asText();
+        JsonNode params = req.path("params");
+        apiCalls.computeIfAbsent(action, a -> new AtomicLong()).incrementAndGet();
+
+        ObjectNode resp = MAPPER.createObjectNode();
+        resp.put("status", "ok");
+        resp.put("retcode", 0);
+        switch (action) {
+            case "send_group_msg", "send_msg" -> {
+                if (params.has("group_id")) onGroupReply(params.path("group_id").asLong());
+                else privateMessagesReceived.incrementAndGet();
+                resp.putObject("data").put("message_id", messageIds.incrementAndGet());
+            }
+            case "send_private_msg" -> {
+                privateMessagesReceived.incrementAndGet();
+                resp.putObject("data").put("message_id", messageIds.incrementAndGet());
+            }
+            case "get_group_member_list" -> {
+                long groupId = params.path("group_id").asLong();
+                ArrayNode data = resp.putArray("data");
+                for (int i = 0; i < membersPerGroup; i++) {
+                    data.add(member(groupId, LoadTest.userId(i)));
+                }
+            }
+            case "get_group_member_info" ->
+                    resp.set("data", member(params.path("group_id").asLong(), params.path("user_id").asLong()));
+            case "get_login_info" -> {
+                ObjectNode data = resp.putObject("data");
+                data.put("user_id", botQq);
+                data.put("nickname", "糖果熊");
+            }
+            default -> resp.putNull("data");
+        }
+        if (req.has("echo")) resp.set("echo", req.get("echo"));
+        conn.send(resp.toString());
+    }
+
+    private ObjectNode member(long groupId, long userId) {
+        ObjectNode m = MAPPER.createObjectNode();
+        m.put("group_id", groupId);
+        m.put("user_id", userId);
+        m.put("nickname", "压测用户" + userId);
+        m.put("card", "");
+        m.put("role", "member");
+        m.put("avatar_url", "https://q1.qlogo.cn/g?b=qq&nk=" + userId + "&s=640");
+        return m;
+    }
+
+    private void onGroupReply(long groupId) {
+        groupMessagesReceived.incrementAndGet();
+        ConcurrentLinkedDeque<Long> waiting = awaitingReply.get(groupId);
+        if (waiting == null) return;
+        long now = System.nanoTime();
+        Long sentAt;
+        while ((sentAt = waiting.poll()) != null) {
+            replyLatency.record(TimeUnit.NANOSECONDS.toMillis(now - sentAt));
+        }
+    }
+
+    // ================== 连接 ==================
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        logger.info("🔌 机器人已连接假 NapCat: {}", conn.getRemoteSocketAddress());
+        client = conn;
+        connected.countDown();
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        logger.info("🔌 机器人断开: code={}, reason={}", code, reason);
+        if (client == conn) client = null;
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        logger.error("假 NapCat 异常", ex);
+    }
+
+    @Override
+    public void onStart() {
+        logger.info("🧪 假 NapCat 已启动: ws://{}", getAddress());
+    }
+
+    // ================== 统计 ==================
+
+    public long getEventsSent() {
+        return eventsSent.get();
+    }
+
+    public long getGroupMessagesReceived() {
+        return groupMessagesReceived.get();
+    }
+
+    public long getPrivateMessagesReceived() {
+        return privateMessagesReceived.get();
+    }
+
+    public LatencyHistogram.Snapshot getReplyLatency() {
+        return replyLatency.snapshot();
+    }
+
+    /** 仍在等待回复的 @ 消息数 */
+    public int getUnanswered() {
+        return awaitingReply.values().stream().mapToInt(ConcurrentLinkedDeque::size).sum();
+    }
+
+    /** 按 action 名排序的调用次数 */
+    public Map<String, Long> getApiCalls() {
+        Map<String, Long> map = new TreeMap<>();
+        apiCalls.forEach((k, v) -> map.put(k, v.get()));
+        return map;
+    }
+}
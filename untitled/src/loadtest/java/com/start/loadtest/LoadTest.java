@@ -0,0 +1,261 @@
+package com.start.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.start.Main;
+import com.start.config.BotConfig;
+import com.start.config.DatabaseConfig;
+import com.start.service.GroupSerialExecutor;
+import com.start.service.OutboundScheduler;
+import com.start.util.LatencyHistogram;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.io.BufferedReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线压测：在同一进程里启动假 NapCat（{@link FakeOneBotServer}）和 LLM 桩（{@link StubLlmServer}），
+ * 把 {@link Main} 连到假 NapCat 上，按设定速率回放群消息，最后输出回复延迟、群队列丢弃和连接池饱和情况。
+ * <p>
+ * 机器人照常读取 application.properties，但数据库必须用 --db-url 指向一次性测试库（会建表、写统计）；
+ * database.* 与 bailian.base-url / agent.base-url 通过 -Dcandybear.* 覆盖，其他配置同样可以这样覆盖
+ * （例如 -Dcandybear.outbound.global-per-minute=600 放开发送限速）。
+ * 压测代码在 src/loadtest/java，不打进机器人 jar。
+ * </p>
+ * 用法：{@code mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--db-url=jdbc:mysql://127.0.0.1:3307/candybear_loadtest --rate=5"}
+ * <ul>
+ *     <li>--db-url（必填）/ --db-user / --db-password：压测用的一次性数据库</li>
+ *     <li>--ws-port / --llm-port：假 NapCat 与 LLM 桩端口（默认 5800 / 5801）</li>
+ *     <li>--rate：每秒消息数；--duration-s：回放时长；--drain-s：回放结束后等待回复的最长时间</li>
+ *     <li>--users：每群成员数；--mention-ratio：@机器人 的消息比例</li>
+ *     <li>--llm-latency-ms / --llm-jitter-ms：模型耗时；--tool-call-ratio / --tool-name：返回 tool_calls 的概率和工具名</li>
+ *     <li>--trace：回放文件（JSON Lines，字段 offset_ms / group_id / user_id / text / mention），不给则生成合成流量</li>
+ *     <li>--seed：合成流量随机种子</li>
+ * </ul>
+ */
+public class LoadTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String[] CHATTER = {"哈哈哈哈", "今天好困", "有人一起打三角洲吗", "笑死", "作业写完了没",
+            "远行商人今天卖什么", "幸运值", "晚上吃什么", "这个怎么弄", "确实"};
+    private static final String[] QUESTIONS = {"你在干嘛", "你喜欢什么", "今天上学累不累", "你住在哪", "推荐个番"};
+
+    /** 一条待回放的消息 */
+    record TraceEvent(long offsetMs, long groupId, long userId, String text, boolean mention) {}
+
+    /** 第 i 个压测用户的 QQ 号 */
+    static long userId(int i) {
+        return 20_000_000L + i;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parseArgs(args);
+        int wsPort = Integer.parseInt(opts.getOrDefault("ws-port", "5800"));
+        int llmPort = Integer.parseInt(opts.getOrDefault("llm-port", "5801"));
+        double rate = Double.parseDouble(opts.getOrDefault("rate", "5"));
+        long durationS = Long.parseLong(opts.getOrDefault("duration-s", "60"));
+        long drainS = Long.parseLong(opts.getOrDefault("drain-s", "30"));
+        int users = Integer.parseInt(opts.getOrDefault("users", "50"));
+        double mentionRatio = Double.parseDouble(opts.getOrDefault("mention-ratio", "0.3"));
+        long llmLatency = Long.parseLong(opts.getOrDefault("llm-latency-ms", "800"));
+        long llmJitter = Long.parseLong(opts.getOrDefault("llm-jitter-ms", "400"));
+        double toolRatio = Double.parseDouble(opts.getOrDefault("tool-call-ratio", "0"));
+        String toolName = opts.getOrDefault("tool-name", "query_knowledge");
+        long seed = Long.parseLong(opts.getOrDefault("seed", "42"));
+
+        String dbUrl = opts.get("db-url");
+        if (dbUrl == null || dbUrl.isBlank()) {
+            System.err.println("❌ 请用 --db-url 指定一次性测试库，压测不连接正式库");
+            System.exit(1);
+        }
+
+        // 1. 测试库与 LLM 桩，必须在 BotConfig / DatabaseConfig 加载前改好地址
+        System.setProperty(BotConfig.OVERRIDE_PREFIX + "database.url", dbUrl);
+        if (opts.containsKey("db-user")) System.setProperty(BotConfig.OVERRIDE_PREFIX + "database.user", opts.get("db-user"));
+        if (opts.containsKey("db-password")) System.setProperty(BotConfig.OVERRIDE_PREFIX + "database.password", opts.get("db-password"));
+        StubLlmServer llm = new StubLlmServer(llmPort, llmLatency, llmJitter, toolRatio, toolName);
+        llm.start();
+        System.setProperty(BotConfig.OVERRIDE_PREFIX + "bailian.base-url", llm.getBaseUrl());
+        System.setProperty(BotConfig.OVERRIDE_PREFIX + "agent.base-url", llm.getBaseUrl());
+
+        List<Long> groups = new ArrayList<>(BotConfig.getAllowedGroups());
+        if (groups.isEmpty()) {
+            System.err.println("❌ allowed.groups 为空，机器人会丢弃所有群消息，请先配置白名单群");
+            System.exit(1);
+        }
+
+        List<TraceEvent> trace = opts.containsKey("trace")
+                ? readTrace(Path.of(opts.get("trace")))
+                : synthesize(groups, users, rate, durationS, mentionRatio, seed);
+
+        // 2. 假 NapCat + 机器人
+        FakeOneBotServer napcat = new FakeOneBotServer(wsPort, BotConfig.getBotQq(), users);
+        napcat.start();
+        Main bot = new Main(new URI("ws://127.0.0.1:" + wsPort));
+        bot.init();
+        // 与正式启动一致：关键步骤（知识库、建表）就绪后再连接
+        bot.getStartup().awaitCritical(BotConfig.getStartupCriticalTimeoutMs());
+        bot.connect();
+        if (!napcat.awaitClient(30_000)) {
+            System.err.println("❌ 机器人 30 秒内未连上假 NapCat");
+            System.exit(1);
+        }
+
+        // 3. 采样：群队列统计（邮箱回收后保留最后一次快照）、连接池
+        Map<String, GroupSerialExecutor.GroupStats> groupStats = new ConcurrentHashMap<>();
+        PoolSampler pool = new PoolSampler();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LoadTest-Sampler");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleAtFixedRate(() -> {
+            groupStats.putAll(bot.getGroupExecutor().getGroupStats());
+            pool.sample();
+        }, 0, 200, TimeUnit.MILLISECONDS);
+
+        // 4. 回放
+        System.out.printf("▶ 回放 %d 条消息（%d 个群）%n", trace.size(), groups.size());
+        long start = System.nanoTime();
+        for (TraceEvent e : trace) {
+            long waitNanos = TimeUnit.MILLISECONDS.toNanos(e.offsetMs()) - (System.nanoTime() - start);
+            if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+            napcat.pushGroupMessage(e.groupId(), e.userId(), e.text(), e.mention());
+        }
+        long drainDeadline = System.currentTimeMillis() + drainS * 1000;
+        while (napcat.getUnanswered() > 0 && System.currentTimeMillis() < drainDeadline) {
+            Thread.sleep(200);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+        groupStats.putAll(bot.getGroupExecutor().getGroupStats());
+
+        report(elapsedMs, napcat, llm, groupStats, bot.getOutbound().getStats(), pool);
+        System.exit(0);
+    }
+
+    // ================== 流量 ==================
+
+    /** 泊松到达的合成流量：群和用户均匀随机，按比例 @机器人 */
+    static List<TraceEvent> synthesize(List<Long> groups, int users, double rate, long durationS,
+                                       double mentionRatio, long seed) {
+        Random random = new Random(seed);
+        List<TraceEvent> events = new ArrayList<>();
+        double t = 0;
+        long endMs = durationS * 1000;
+        while (true) {
+            t += -Math.log(1 - random.nextDouble()) / rate * 1000;
+            if (t >= endMs) break;
+            boolean mention = random.nextDouble() < mentionRatio;
+            String text = mention ? QUESTIONS[random.nextInt(QUESTIONS.length)] : CHATTER[random.nextInt(CHATTER.length)];
+            events.add(new TraceEvent((long) t, groups.get(random.nextInt(groups.size())),
+                    userId(random.nextInt(users)), text, mention));
+        }
+        return events;
+    }
+
+    static List<TraceEvent> readTrace(Path file) throws Exception {
+        List<TraceEvent> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JsonNode n = MAPPER.readTree(line);
+                events.add(new TraceEvent(n.path("offset_ms").asLong(), n.path("group_id").asLong(),
+                        n.path("user_id").asLong(), n.path("text").asText(), n.path("mention").asBoolean(false)));
+            }
+        }
+        events.sort((a, b) -> Long.compare(a.offsetMs(), b.offsetMs()));
+        return events;
+    }
+
+    // ================== 连接池采样 ==================
+
+    /** Hikari 连接池饱和度：活跃连接峰值、等待线程峰值、有线程在等连接的采样占比 */
+    static final class PoolSampler {
+        int samples;
+        int saturatedSamples;
+        int maxActive;
+        int maxWaiting;
+        int total;
+
+        void sample() {
+            try {
+                HikariPoolMXBean mx = DatabaseConfig.getDataSource().getHikariPoolMXBean();
+                if (mx == null) return;
+                samples++;
+                maxActive = Math.max(maxActive, mx.getActiveConnections());
+                int waiting = mx.getThreadsAwaitingConnection();
+                maxWaiting = Math.max(maxWaiting, waiting);
+                if (waiting > 0) saturatedSamples++;
+                total = mx.getTotalConnections();
+            } catch (Exception ignored) {
+                // 连接池不可用时不影响压测本身
+            }
+        }
+    }
+
+    // ================== 报告 ==================
+
+    private static void report(long elapsedMs, FakeOneBotServer napcat, StubLlmServer llm,
+                               Map<String, GroupSerialExecutor.GroupStats> groupStats,
+                               List<OutboundScheduler.PriorityStats> outbound, PoolSampler pool) {
+        LatencyHistogram.Snapshot reply = napcat.getReplyLatency();
+        System.out.println("==================== 压测结果 ====================");
+        System.out.printf("耗时 %.1fs | 推送事件 %d | 机器人群发言 %d | 私聊 %d%n",
+                elapsedMs / 1000.0, napcat.getEventsSent(), napcat.getGroupMessagesReceived(),
+                napcat.getPrivateMessagesReceived());
+        System.out.printf("回复延迟(ms) n=%d avg=%d p50=%d p95=%d p99=%d max=%d | 未回复 %d%n",
+                reply.count(), reply.avgMs(), reply.p50Ms(), reply.p95Ms(), reply.p99Ms(), reply.maxMs(),
+                napcat.getUnanswered());
+
+        LatencyHistogram.Snapshot serve = llm.getServeLatency();
+        System.out.printf("LLM 桩 请求 %d | tool_calls %d | 最大并发 %d | 服务耗时 p50=%d p99=%d%n",
+                llm.getRequests(), llm.getToolCalls(), llm.getMaxInFlight(), serve.p50Ms(), serve.p99Ms());
+
+        long submitted = 0, executed = 0, overflow = 0, expired = 0, coalesced = 0, maxWait = 0;
+        for (GroupSerialExecutor.GroupStats s : groupStats.values()) {
+            submitted += s.submitted();
+            executed += s.executed();
+            overflow += s.droppedOverflow();
+            expired += s.droppedExpired();
+            coalesced += s.coalesced();
+            maxWait = Math.max(maxWait, s.maxWaitMs());
+        }
+        System.out.printf("群队列 提交 %d | 执行 %d | 溢出丢弃 %d | 超时丢弃 %d | 合并 %d | 最长排队 %dms%n",
+                submitted, executed, overflow, expired, coalesced, maxWait);
+
+        for (OutboundScheduler.PriorityStats s : outbound) {
+            System.out.printf("发送 %-9s 入队 %d | 发出 %d | 合并 %d | 丢弃 %d | 排队 p95=%dms%n",
+                    s.priority(), s.enqueued(), s.sent(), s.merged(), s.dropped(), s.queueTime().p95Ms());
+        }
+
+        System.out.printf("连接池 总连接 %d | 活跃峰值 %d | 等待线程峰值 %d | 饱和采样 %d/%d%n",
+                pool.total, pool.maxActive, pool.maxWaiting, pool.saturatedSamples, pool.samples);
+        System.out.println("OneBot API 调用: " + napcat.getApiCalls());
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(2, eq), arg.substring(eq + 1));
+            else opts.put(arg.substring(2), "true");
+        }
+        return opts;
+    }
+}
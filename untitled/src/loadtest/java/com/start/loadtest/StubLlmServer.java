@@ -0,0 +1,228 @@
+package com.start.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.start.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地 OpenAI 兼容聊天补全桩（{@code POST .../chat/completions}）。
+ * <p>
+ * 每个请求先睡 {@code latencyMs ± jitterMs} 模拟模型耗时，再返回固定话术；
+ * 请求带了名为 {@code toolName} 的工具且上一条不是工具结果时，按 {@code toolCallRatio} 的概率返回一次 tool_calls。
+ * {@code stream: true} 时以 SSE 分块返回，与 BaiLianService 的流式解析对应。
+ * </p>
+ */
+public class StubLlmServer {
+    private static final Logger logger = LoggerFactory.getLogger(StubLlmServer.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String[] REPLIES = {
+            "真的假的",
+            "笑死 我也是|---|下次一起",
+            "确实，今天好累。",
+            "不知道诶，你问问小雨？|---|她数学比我好多了",
+            "离谱！展开说说",
+    };
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double toolCallRatio;
+    private final String toolName;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong toolCalls = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final LatencyHistogram serveLatency = new LatencyHistogram();
+
+    public StubLlmServer(int port, long latencyMs, long jitterMs, double toolCallRatio, String toolName)
+            throws IOException {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.toolCallRatio = toolCallRatio;
+        this.toolName = toolName;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "StubLlm-Worker");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(workers);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("🧪 LLM 桩已启动: {}", getBaseUrl());
+    }
+
+    public void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    /** 供 bailian.base-url / agent.base-url 使用的完整地址 */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        int now = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(now, Math::max);
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith("/chat/completions")) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] raw = exchange.getRequestBody().readAllBytes();
+            JsonNode body = MAPPER.readTree(raw);
+            requests.incrementAndGet();
+
+            long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1) : 0);
+            if (delay > 0) Thread.sleep(delay);
+
+            boolean callTool = shouldCallTool(body);
+            if (callTool) toolCalls.incrementAndGet();
+            String content = callTool ? null : REPLIES[ThreadLocalRandom.current().nextInt(REPLIES.length)];
+            int promptTokens = raw.length / 3;
+
+            if (body.path("stream").asBoolean(false)) {
+                writeStream(exchange, body, content, promptTokens);
+            } else {
+                writeJson(exchange, body, content, promptTokens);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            serveLatency.record((System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private boolean shouldCallTool(JsonNode body) {
+        if (toolCallRatio <= 0 || toolName == null || toolName.isEmpty()) return false;
+        JsonNode messages = body.path("messages");
+        if (messages.size() > 0 && "tool".equals(messages.get(messages.size() - 1).path("role").asText())) return false;
+        boolean offered = false;
+        for (JsonNode tool : body.path("tools")) {
+            if (toolName.equals(tool.path("function").path("name").asText())) {
+                offered = true;
+                break;
+            }
+        }
+        return offered && ThreadLocalRandom.current().nextDouble() < toolCallRatio;
+    }
+
+    private ObjectNode toolCall() {
+        ObjectNode call = MAPPER.createObjectNode();
+        call.put("id", "call_" + requests.get());
+        call.put("type", "function");
+        ObjectNode fn = call.putObject("function");
+        fn.put("name", toolName);
+        fn.put("arguments", "{\"keyword\":\"糖果熊 爱好\"}");
+        return call;
+    }
+
+    private void writeJson(HttpExchange exchange, JsonNode body, String content, int promptTokens) throws IOException {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("id", "stub-" + requests.get());
+        root.put("object", "chat.completion");
+        root.put("model", body.path("model").asText("stub"));
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        if (content != null) {
+            message.put("content", content);
+            choice.put("finish_reason", "stop");
+        } else {
+            message.putNull("content");
+            message.putArray("tool_calls").add(toolCall());
+            choice.put("finish_reason", "tool_calls");
+        }
+        ObjectNode usage = root.putObject("usage");
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", content != null ? content.length() : 20);
+        usage.put("total_tokens", promptTokens + (content != null ? content.length() : 20));
+
+        byte[] out = MAPPER.writeValueAsBytes(root);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, out.length);
+        exchange.getResponseBody().write(out);
+    }
+
+    private void writeStream(HttpExchange exchange, JsonNode body, String content, int promptTokens) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream os = exchange.getResponseBody();
+        String model = body.path("model").asText("stub");
+        if (content != null) {
+            // 按 4 个字一块切分，模拟逐字输出
+            for (int i = 0; i < content.length(); i += 4) {
+                ObjectNode delta = MAPPER.createObjectNode();
+                delta.put("content", content.substring(i, Math.min(content.length(), i + 4)));
+                writeChunk(os, model, delta, null);
+            }
+            writeChunk(os, model, MAPPER.createObjectNode(), "stop");
+        } else {
+            ObjectNode call = toolCall();
+            call.put("index", 0);
+            ObjectNode delta = MAPPER.createObjectNode();
+            delta.putArray("tool_calls").add(call);
+            writeChunk(os, model, delta, null);
+            writeChunk(os, model, MAPPER.createObjectNode(), "tool_calls");
+        }
+        os.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+
+    private void writeChunk(OutputStream os, String model, ObjectNode delta, String finishReason) throws IOException {
+        ObjectNode chunk = MAPPER.createObjectNode();
+        chunk.put("id", "stub-" + requests.get());
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("model", model);
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.set("delta", delta);
+        if (finishReason != null) choice.put("finish_reason", finishReason);
+        else choice.putNull("finish_reason");
+        os.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+
+    // ================== 统计 ==================
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getToolCalls() {
+        return toolCalls.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public LatencyHistogram.Snapshot getServeLatency() {
+        return serveLatency.snapshot();
+    }
+}
@@ -0,0 +1,904 @@
+package com.start;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.start.config.BotConfig;
+import com.start.config.DatabaseConfig;
+import com.start.handler.CPTracker;
+import com.start.handler.HandlerRegistry;
+import com.start.metrics.MetricsRegistry;
+import com.start.metrics.MetricsServer;
+import com.start.repository.GroupMessageStatsRepository;
+import com.start.repository.GroupMoodRepository;
+import com.start.repository.LongTermMemoryRepository;
+import com.start.repository.MessageRepository;
+import com.start.repository.RecurringTaskRepository;
+import com.start.repository.SchedulerJobRepository;
+import com.start.model.LongTermMemory;
+import com.start.model.MessageEvent;
+import com.start.model.RecurringTask;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import com.start.repository.CandyBearLifeRepository;
+import com.start.repository.CandyBearScheduleRepository;
+import com.start.repository.EggGroupDataCenter;
+import com.start.repository.UserAffinityRepository;
+import com.start.repository.UserAliasRepository;
+import com.start.repository.UserProfileRepository;
+import com.start.scheduler.JobScheduler;
+import com.start.scheduler.Schedule;
+import com.start.service.*;
+import com.start.util.ReadThroughCache;
+import com.start.util.TextAnalysis;
+import com.start.vision.ImageRenderer;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.handshake.ServerHandshake;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * 主机器人入口类，负责 WebSocket 连接、事件分发、服务初始化及消息处理。
+ * 该类继承自 WebSocket 客户端（假设为 org.java_websocket.client.WebSocketClient 子类），
+ * 并实现了 OneBot 协议的事件监听与响应机制。
+ */
+public class Main extends WebSocketClient implements ConnectionSupervisor.Transport {
+
+    // ===== 日志与工具 =====
+
+    /** 日志记录器，用于输出调试、信息及错误日志。 */
+    private static final Logger logger = LoggerFactory.getLogger(Main.class);
+
+    /** JSON 序列化/反序列化工具，用于解析 OneBot 事件和构造 API 请求。 */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // ===== 白名单配置 =====
+
+    /** 允许交互的群聊 ID 集合，由 BotConfig 提供。 */
+    private static final Set<Long> ALLOWED_GROUPS = BotConfig.getAllowedGroups();
+
+    /** 允许私聊的用户 ID 集合（若启用私聊白名单）。 */
+    private static final Set<Long> ALLOWED_PRIVATE_USERS = BotConfig.getAllowedPrivateUsers();
+
+    // ===== 后台任务 =====
+
+    /** 定时事件检查任务名，工具写入新事件后按此名提前触发。 */
+    public static final String EVENT_CHECKER_JOB = "event-checker";
+
+    /** 周期任务检查任务名，工具新建周期任务后按此名提前触发。 */
+    public static final String RECURRING_TASKS_JOB = "recurring-tasks";
+
+    /** 到期检查的兜底间隔：即使没有已知的到期时间也定期检查一次。 */
+    private static final long DUE_CHECK_FALLBACK_MS = 10 * 60 * 1000;
+
+    /** 两次到期检查的最小间隔，触发失败的条目不会导致反复重试。 */
+    private static final long DUE_CHECK_MIN_INTERVAL_MS = 60 * 1000;
+
+    // ===== 核心服务实例（依赖注入） =====
+
+    /** 用户相关操作服务（如查询、更新用户状态等）。 */
+    private final UserService userService;
+
+    /** 消息持久化与查询服务。 */
+    private final MessageService messageService;
+
+    /** 对话上下文管理服务，用于维护多轮对话状态。 */
+    private ConversationService conversationService;
+
+    /** 人格化回复生成服务，根据用户历史调整语气与风格。 */
+    private PersonalityService personalityService;
+
+    /** AI 知识库与向量检索服务。 */
+    private final AIDatabaseService aiDatabaseService;
+
+    /** 百炼大模型调用服务（阿里云 DashScope）。 */
+    private final BaiLianService baiLianService;
+
+    /** TTS 语音合成服务。 */
+    private final TtsService ttsService;
+
+    /** 用户亲密度存储仓库，用于个性化推荐与互动。 */
+    private final UserAffinityRepository userAffinityRepo = new UserAffinityRepository();
+
+    /** 长期记忆存储仓库，用于定时事件触发。 */
+    private final LongTermMemoryRepository longTermMemoryRepo = new LongTermMemoryRepository(DatabaseConfig.getDataSource());
+
+    /** 周期任务存储仓库，用于工具联动（定时取出 prompt 发给 LLM 自由执行）。 */
+    private final RecurringTaskRepository recurringTaskRepo = new RecurringTaskRepository(DatabaseConfig.getDataSource());
+
+    /** 调度器任务状态仓库，另提供用户周期任务的最早触发时间。 */
+    private final SchedulerJobRepository schedulerJobRepo = new SchedulerJobRepository(DatabaseConfig.getDataSource());
+
+    /** 关键词知识库服务，支持基于关键词的快速问答匹配。 */
+    private final KeywordKnowledgeService keywordKnowledgeService;
+
+    /** 智能代理服务，整合大模型、知识库与用户画像。 */
+    private final AgentService agentService;
+
+    // ===== 事件处理器与辅助组件 =====
+
+    /** 事件处理器注册中心，用于动态绑定不同消息类型的处理逻辑。 */
+    private HandlerRegistry handlerRegistry;
+
+    /** 防刷检测器，防止高频消息攻击或滥用。 */
+    private SpamDetector spamDetector;
+
+    /** 用户画像服务，定期分析用户行为并更新画像标签。 */
+    private UserPortraitService portraitService;
+
+    /** 糖果熊分群情绪系统，持久化到 group_mood 表。 */
+    private final BotMoodService moodService;
+
+    /** 封装 OneBot WebSocket API 调用的服务，支持异步请求。 */
+    private final OneBotWsService oneBotWsService;
+
+    /** 每群串行执行器，AI 与 Agent 任务按群排队。 */
+    private final GroupSerialExecutor groupExecutor;
+
+    /** 蛋组数据中心，HandlerRegistry 与 BaiLianService 共用一份。 */
+    private final EggGroupDataCenter eggGroupDataCenter;
+
+    /** 启动编排：互不依赖的初始化步骤并行执行，关键步骤就绪后才开始连接。 */
+    private final StartupOrchestrator startup;
+
+    // ===== 异步请求管理 =====
+
+    /**
+     * 在途的 OneBot API 请求，通过 echo 字段关联请求与响应，超时和断线由它统一清理。
+     */
+    private final PendingRequestTable pendingRequests = new PendingRequestTable();
+
+    /**
+     * 事件接入流水线：WebSocket 线程只做解析和过滤，业务处理在工作通道中按群串行执行，
+     * 避免慢数据库调用阻塞后续帧（包括 echo 响应）。
+     */
+    private final EventIngestionPipeline<MessageEvent> ingestion = new EventIngestionPipeline<>(
+            "Ingest",
+            BotConfig.getIngestLanes(),
+            BotConfig.getIngestCapacity(),
+            EventIngestionPipeline.OverflowPolicy.parse(BotConfig.getIngestOverflowPolicy()),
+            this::processMessageEvent);
+
+    /**
+     * 出站调度器：所有群聊 / 私聊消息经它限速、排队后由 Outbound-Sender 线程发出。
+     */
+    private final OutboundScheduler outbound = new OutboundScheduler(this::deliverOutgoing);
+
+    /**
+     * 连接监管：断线后退避重连，断线期间暂存出站消息和只读请求，重连后按顺序补发。
+     */
+    private final ConnectionSupervisor connection = new ConnectionSupervisor(this, pendingRequests, outbound);
+
+    /**
+     * 帧解码器：流式扫描顶层字段，非消息事件、非白名单来源和无人等待的 API 响应不建树直接丢弃。
+     */
+    private final OneBotFrameDecoder frameDecoder = new OneBotFrameDecoder(new OneBotFrameDecoder.Filter() {
+        @Override
+        public boolean acceptEcho(String echo) {
+            return pendingRequests.contains(echo);
+        }
+
+        @Override
+        public boolean acceptGroup(long groupId) {
+            if (ALLOWED_GROUPS.contains(groupId)) return true;
+            logger.debug("🚫 忽略非白名单群消息 | group_id={}", groupId);
+            return false;
+        }
+
+        @Override
+        public boolean acceptPrivate(long userId) {
+            if (!BotConfig.isPrivateWhitelistEnabled() || ALLOWED_PRIVATE_USERS.contains(userId)) return true;
+            logger.debug("🚫 忽略非白名单私聊 | user_id={}", userId);
+            return false;
+        }
+
+        @Override
+        public boolean acceptNotice(String noticeType) {
+            // 群成员变动，用于增量更新成员目录
+            return "group_increase".equals(noticeType) || "group_decrease".equals(noticeType)
+                    || "group_card".equals(noticeType);
+        }
+    });
+
+
+    // ===== 构造函数：初始化核心服务 =====
+
+    /**
+     * 构造 Main 实例并初始化所有依赖服务。
+     *
+     * @param serverUri WebSocket 服务器 URI
+     */
+    public Main(URI serverUri) {
+        this(serverUri, new StartupOrchestrator());
+    }
+
+    /**
+     * 构造 Main 实例；耗时的加载（知识库、建表、远程蛋组数据）注册为启动步骤并行执行，构造本身不等待。
+     *
+     * @param serverUri WebSocket 服务器 URI
+     * @param startup   启动编排器，main 中已注册了数据库与预热步骤
+     */
+    public Main(URI serverUri, StartupOrchestrator startup) {
+        super(serverUri);
+        this.startup = startup;
+        // 初始化数据库连接池（已由启动步骤完成时直接返回）
+        DatabaseConfig.initConnectionPool();
+
+        // 初始化 WebSocket API 封装服务（传入当前 Main 实例以支持发送请求）
+        this.oneBotWsService = new OneBotWsService(this);
+
+        // 初始化基础服务
+        this.userService = new UserService();
+        this.messageService = new MessageService();
+        this.conversationService = new ConversationService();
+        this.personalityService = new PersonalityService();
+        this.aiDatabaseService = new AIDatabaseService();
+
+        // 初始化知识库服务（需数据源），知识和黑名单由启动步骤加载
+        this.keywordKnowledgeService = new KeywordKnowledgeService(DatabaseConfig.getDataSource(), false);
+
+        // 初始化糖果熊分群情绪系统（需数据源）
+        this.moodService = new BotMoodService(new GroupMoodRepository(DatabaseConfig.getDataSource()));
+
+        // 初始化 TTS 语音服务
+        this.ttsService = new TtsService();
+
+        // 初始化大模型服务
+        this.baiLianService = new BaiLianService(this.keywordKnowledgeService, this.userAffinityRepo, this.ttsService);
+        this.baiLianService.setMoodService(this.moodService);
+        this.baiLianService.setBotInstance(this);
+        // 只读本地缓存，远程更新由启动步骤在后台进行
+        this.eggGroupDataCenter = new EggGroupDataCenter();
+        this.baiLianService.setEggGroupDataCenter(this.eggGroupDataCenter);
+        this.agentService = new AgentService(this.baiLianService, this.keywordKnowledgeService, this.userAffinityRepo);
+
+        // 初始化每群串行执行器（私聊4线程，排队30秒超时）
+        this.groupExecutor = new GroupSerialExecutor(4, 30_000);
+
+        // 初始化服务器管理服务
+        ServerAdminService shellService = new ServerAdminService();
+
+        // 初始化事件处理器注册中心
+        this.handlerRegistry = new HandlerRegistry(this.agentService, this.baiLianService, groupExecutor, this, shellService,
+                this.eggGroupDataCenter);
+
+        // 设置 DashScope API Key（来自配置文件，不使用环境变量）
+        if (BotConfig.getBaiLianApiKey() != null && !BotConfig.getBaiLianApiKey().isBlank()) {
+            System.setProperty("dashscope.api-key", BotConfig.getBaiLianApiKey());
+        }
+
+        // 关键路径：开始收消息前必须就绪
+        startup.step("knowledge", true, keywordKnowledgeService::load);
+        startup.step("merchant-tables", true, handlerRegistry::initStorage);
+        // 后台：逐个蛋组请求远程 API，期间查询使用本地缓存
+        startup.step("egg-groups", false, eggGroupDataCenter::refreshFromRemote);
+
+        startMetrics();
+    }
+
+    /**
+     * 把各组件已有的统计注册为指标采集器，并按配置启动 Prometheus 抓取端点
+     */
+    private void startMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.register("handlers", sink -> {
+            for (HandlerRegistry.HandlerStats h : handlerRegistry.getStats()) {
+                sink.counter("bot_handler_match_calls_total", "Handler match 调用次数", h.matchCalls(), "handler", h.name());
+                sink.counter("bot_handler_hits_total", "Handler 命中并处理的次数", h.hits(), "handler", h.name());
+                sink.histogram("bot_handler_duration_seconds", "Handler handle 耗时", h.handle(), "handler", h.name());
+            }
+        });
+        metrics.register("group_executor", sink -> {
+            for (GroupSerialExecutor.GroupStats g : groupExecutor.getGroupStats().values()) {
+                sink.gauge("bot_group_queue_depth", "群串行队列当前排队任务数", g.queueDepth(), "group", g.groupId());
+                sink.counter("bot_group_tasks_dropped_total", "群串行队列丢弃的任务数", g.droppedOverflow(),
+                        "group", g.groupId(), "reason", "overflow");
+                sink.counter("bot_group_tasks_dropped_total", "群串行队列丢弃的任务数", g.droppedExpired(),
+                        "group", g.groupId(), "reason", "expired");
+            }
+            sink.gauge("bot_group_mailboxes", "存活的群邮箱数", groupExecutor.getActiveMailboxCount());
+        });
+        metrics.register("onebot_api", sink -> {
+            pendingRequests.getStats().forEach((action, a) -> {
+                sink.histogram("bot_onebot_api_duration_seconds", "OneBot API 往返耗时", a.latency(), "action", action);
+                sink.counter("bot_onebot_api_failures_total", "OneBot API 失败次数", a.failures(), "action", action);
+                sink.counter("bot_onebot_api_timeouts_total", "OneBot API 超时次数", a.timeouts(), "action", action);
+            });
+            sink.gauge("bot_onebot_api_in_flight", "等待响应的 OneBot API 请求数", pendingRequests.size());
+        });
+        metrics.register("ingestion", sink -> {
+            OneBotFrameDecoder.DecoderStats d = frameDecoder.getStats();
+            sink.counter("bot_frames_total", "收到的 OneBot 帧", d.apiResponses(), "kind", "api_response");
+            sink.counter("bot_frames_total", "收到的 OneBot 帧", d.messages(), "kind", "message");
+            sink.counter("bot_frames_total", "收到的 OneBot 帧", d.notices(), "kind", "notice");
+            sink.counter("bot_frames_total", "收到的 OneBot 帧", d.dropped(), "kind", "dropped");
+            sink.counter("bot_frames_total", "收到的 OneBot 帧", d.errors(), "kind", "error");
+            for (EventIngestionPipeline.LaneStats l : ingestion.getStats()) {
+                String lane = String.valueOf(l.lane());
+                sink.gauge("bot_ingestion_queue_depth", "入站事件通道当前深度", l.depth(), "lane", lane);
+                sink.counter("bot_ingestion_dropped_total", "入站事件通道丢弃数", l.dropped(), "lane", lane);
+            }
+            sink.gauge("bot_outbound_paused", "出站发送是否因断线暂停", outbound.isPaused() ? 1 : 0);
+            for (OutboundScheduler.PriorityStats o : outbound.getStats()) {
+                String p = o.priority().name();
+                sink.counter("bot_outbound_sent_total", "发出的消息数", o.sent(), "priority", p);
+                sink.counter("bot_outbound_dropped_total", "发送队列丢弃的消息数", o.dropped(), "priority", p);
+                sink.gauge("bot_outbound_queued", "发送队列当前排队数", o.queued(), "priority", p);
+                sink.histogram("bot_outbound_queue_seconds", "消息在发送队列中的等待时长", o.queueTime(), "priority", p);
+            }
+        });
+        metrics.register("websocket", sink -> {
+            ConnectionSupervisor.Stats c = connection.getStats();
+            sink.gauge("bot_ws_connected", "WebSocket 是否已连接", c.connected() ? 1 : 0);
+            sink.gauge("bot_ws_state_seconds", "当前连接状态已持续的时长", c.stateMs() / 1000.0);
+            sink.counter("bot_ws_connects_total", "WebSocket 连接成功次数", c.connects());
+            sink.counter("bot_ws_disconnects_total", "WebSocket 断开次数", c.disconnects());
+            sink.counter("bot_ws_reconnect_attempts_total", "重连尝试次数", c.attempts() - c.failedAttempts(), "result", "success");
+            sink.counter("bot_ws_reconnect_attempts_total", "重连尝试次数", c.failedAttempts(), "result", "failure");
+            sink.histogram("bot_ws_outage_seconds", "断线到重连成功的时长", c.outages());
+            sink.counter("bot_ws_requests_replayed_total", "重连后重发的只读请求数", c.replayed());
+            sink.counter("bot_ws_requests_failed_fast_total", "因断线立即失败的请求数", c.failedFast());
+        });
+        metrics.register("text_analysis", sink -> {
+            TextAnalysis.CacheStats t = TextAnalysis.getCacheStats();
+            sink.counter("bot_text_analysis_total", "消息文本分析次数", t.hits(), "result", "hit");
+            sink.counter("bot_text_analysis_total", "消息文本分析次数", t.misses(), "result", "miss");
+            sink.gauge("bot_text_analysis_cache_size", "文本分析缓存条数", t.size());
+        });
+        metrics.register("read_cache", sink -> {
+            List<ReadThroughCache.Stats> caches = new ArrayList<>(UserAliasRepository.getCacheStats());
+            caches.add(UserProfileRepository.getCacheStats());
+            caches.add(UserAffinityRepository.getCacheStats());
+            for (ReadThroughCache.Stats c : caches) {
+                sink.counter("bot_cache_requests_total", "读缓存查询次数", c.hits(), "cache", c.name(), "result", "hit");
+                sink.counter("bot_cache_requests_total", "读缓存查询次数", c.misses(), "cache", c.name(), "result", "miss");
+                sink.counter("bot_cache_evictions_total", "读缓存因容量或过期淘汰的条数", c.evictions(), "cache", c.name());
+                sink.gauge("bot_cache_size", "读缓存条数", c.size(), "cache", c.name());
+            }
+        });
+        metrics.register("llm_http", sink -> LlmClient.getInstance().getStats().forEach((ep, e) -> {
+            String endpoint = ep.name().toLowerCase();
+            sink.counter("bot_llm_http_requests_total", "LLM HTTP 逻辑请求数", e.requests(), "endpoint", endpoint);
+            sink.counter("bot_llm_http_failures_total", "LLM HTTP 最终失败数", e.failures(), "endpoint", endpoint);
+            sink.counter("bot_llm_http_retries_total", "LLM HTTP 重试次数", e.retries(), "endpoint", endpoint);
+            sink.gauge("bot_llm_http_in_flight", "进行中的 LLM HTTP 请求", e.inFlight(), "endpoint", endpoint);
+            sink.gauge("bot_llm_http_queued", "等待并发额度的 LLM 请求", e.queued(), "endpoint", endpoint);
+        }));
+        metrics.register("db_pool", sink -> {
+            var pool = DatabaseConfig.getDataSource().getHikariPoolMXBean();
+            if (pool == null) return;
+            sink.gauge("bot_db_pool_connections", "连接池连接数", pool.getActiveConnections(), "state", "active");
+            sink.gauge("bot_db_pool_connections", "连接池连接数", pool.getIdleConnections(), "state", "idle");
+            sink.gauge("bot_db_pool_pending_threads", "等待连接的线程数", pool.getThreadsAwaitingConnection());
+        });
+        metrics.register("startup", sink -> {
+            for (StartupOrchestrator.StepStats st : startup.getStats()) {
+                if (st.durationMs() >= 0) {
+                    sink.gauge("bot_startup_step_seconds", "启动步骤耗时", st.durationMs() / 1000.0, "step", st.name());
+                }
+                sink.gauge("bot_startup_step_ready", "启动步骤是否就绪", st.state() == StartupOrchestrator.State.READY ? 1 : 0,
+                        "step", st.name());
+            }
+        });
+
+        metrics.register("portrait", sink -> {
+            // 画像服务在 init() 中创建
+            UserPortraitService portrait = this.portraitService;
+            if (portrait == null) return;
+            UserPortraitService.PortraitStats p = portrait.getStats();
+            sink.counter("bot_portrait_users_total", "画像更新的用户数", p.updated(), "result", "updated");
+            sink.counter("bot_portrait_users_total", "画像更新的用户数", p.failed(), "result", "failed");
+            sink.counter("bot_portrait_llm_requests_total", "画像批量分析的大模型请求数", p.llmRequests());
+            sink.gauge("bot_portrait_backlog", "上一轮开始时待更新画像的用户数", p.lastBacklog());
+            sink.gauge("bot_portrait_last_run_seconds", "上一轮画像更新耗时", p.lastRunMs() / 1000.0);
+        });
+        metrics.register("jobs", sink -> {
+            for (JobScheduler.JobStats j : JobScheduler.getInstance().getStats()) {
+                sink.counter("bot_job_runs_total", "后台任务运行次数", j.runs(), "job", j.name());
+                sink.counter("bot_job_failures_total", "后台任务失败次数", j.failures(), "job", j.name());
+                sink.counter("bot_job_misfires_total", "后台任务错过触发的次数", j.misfires(), "job", j.name());
+                sink.gauge("bot_job_running", "正在执行的后台任务数", j.running(), "job", j.name());
+                sink.histogram("bot_job_duration_seconds", "后台任务执行耗时", j.duration(), "job", j.name());
+            }
+        });
+
+        int port = BotConfig.getMetricsPort();
+        if (port <= 0) return;
+        try {
+            new MetricsServer(BotConfig.getMetricsHost(), port, metrics).start();
+        } catch (Exception e) {
+            logger.warn("⚠️ 指标端点启动失败（{}:{}）: {}", BotConfig.getMetricsHost(), port, e.getMessage());
+        }
+    }
+
+    // ===== 初始化方法：启动后台任务与绑定服务 =====
+
+    /**
+     * 初始化防刷、画像、代理等高级功能，并启动定时任务。
+     * <p>
+     * 人生引擎补全、画像首次更新、知识种子等慢步骤注册到启动编排器在后台执行，不阻塞连接；
+     * 依赖它们的定时线程在对应步骤结束后才启动。
+     * </p>
+     */
+    public void init() {
+        // 初始化防刷检测器
+        this.spamDetector = new SpamDetector(this);
+        logger.info("🛡️ SpamDetector 初始化完成");
+
+        logger.info("🧠 BaiLianService 已绑定 KeywordKnowledgeService");
+
+        // 写入糖果熊背景知识种子数据（需知识库已加载）
+        startup.step("seed-knowledge", false, keywordKnowledgeService::seedCandyBearKnowledge, "knowledge");
+
+        // 初始化糖果熊人生引擎（AI 驱动的连续生命线）
+        CandyBearLifeRepository lifeRepo = new CandyBearLifeRepository(DatabaseConfig.getDataSource());
+        CandyBearScheduleRepository scheduleRepo = new CandyBearScheduleRepository(DatabaseConfig.getDataSource());
+        CandyBearLifeEngine lifeEngine = new CandyBearLifeEngine(lifeRepo, scheduleRepo, this.baiLianService);
+        this.baiLianService.setLifeEngine(lifeEngine);
+        // 补全章节、日记、周记可能要调用多次大模型，放到后台
+        startup.step("life-engine", false, lifeEngine::onStartup);
+
+        JobScheduler jobs = JobScheduler.getInstance();
+        jobs.setRepository(schedulerJobRepo);
+
+        // 每天凌晨 3 点生成昨日日记 + 周日生成周记；停机期间错过的由 onStartup 补全，这里直接跳过
+        // 启动补全结束（无论成败）后才注册，避免与补全同时生成日记
+        startup.whenReady("life-engine").whenComplete((v, t) -> {
+            jobs.schedule("life-daily", Schedule.cron("0 3 * * *"), JobScheduler.MisfirePolicy.SKIP, 60_000, true, () -> {
+                lifeEngine.dailyTick();
+                logger.info("📅 糖果熊人生引擎 tick 完成");
+            });
+            logger.info("📅 糖果熊人生引擎已启动（四层架构：章节→周记→日记→工具查询 + LifeState + 日程表）");
+        });
+
+        logger.info("🤖 Agent 已启用");
+
+        // 初始化用户画像服务
+        this.portraitService = new UserPortraitService(this.baiLianService, new MessageRepository());
+
+        // 立即执行一次画像更新（后台进行，不阻塞连接）
+        startup.step("portrait", false, this.portraitService::runUpdateTask);
+
+        // 每 10 分钟更新一次用户画像；首次更新结束后再注册，避免两次更新重叠
+        startup.whenReady("portrait").whenComplete((v, t) -> {
+            jobs.schedule("portrait-update", Schedule.fixedDelay(10 * 60 * 1000), JobScheduler.MisfirePolicy.SKIP, 0, false,
+                    this.portraitService::runUpdateTask);
+            logger.info("👤 用户画像系统已启动");
+        });
+
+        // 蛋组数据每周日凌晨 3 点从远程更新，重启不会重复拉取
+        jobs.schedule("egg-groups-weekly", Schedule.cron("0 3 * * 7"), JobScheduler.MisfirePolicy.SKIP, 10 * 60 * 1000, true,
+                eggGroupDataCenter::refreshFromRemote);
+
+        // 初始化定时提醒服务
+        ReminderService reminderService = ReminderService.getInstance();
+        reminderService.setBotInstance(this); // 注入 Main 实例
+        reminderService.setEnabled(true); // 默认开启，可通过命令控制
+        logger.info("⏰ 私聊提醒服务已初始化");
+
+        // 定时事件与周期任务：按数据中最早的到期时间唤醒，新建时由工具调用提前检查，固定间隔只作兜底
+        jobs.schedule(EVENT_CHECKER_JOB, Schedule.fixedDelay(DUE_CHECK_FALLBACK_MS), JobScheduler.MisfirePolicy.SKIP, 0, false,
+                this::fireDueEvents);
+        jobs.schedule(RECURRING_TASKS_JOB, Schedule.fixedDelay(DUE_CHECK_FALLBACK_MS), JobScheduler.MisfirePolicy.SKIP, 0, false,
+                this::fireDueRecurringTasks);
+        // 启动后稍等知识库等就绪再做第一次检查
+        jobs.runNoLaterThan(EVENT_CHECKER_JOB, System.currentTimeMillis() + DUE_CHECK_MIN_INTERVAL_MS);
+        jobs.runNoLaterThan(RECURRING_TASKS_JOB, System.currentTimeMillis() + DUE_CHECK_MIN_INTERVAL_MS);
+        logger.info("📅 定时事件检查器已启动");
+        logger.info("🔁 周期任务调度器已启动");
+    }
+
+    /** 触发到期的定时事件，并按最早的待触发事件安排下次检查 */
+    private void fireDueEvents() {
+        try {
+            List<LongTermMemory> dueEvents = longTermMemoryRepo.findDueEvents();
+            for (LongTermMemory event : dueEvents) {
+                try {
+                    String prompt = "你之前记下了一个定时事件：\"" + event.getContent()
+                            + "\"\n涉及用户：" + event.getUserId()
+                            + "\n现在时间到了，请自然地提醒或祝福。";
+                    String reply = baiLianService.generate(
+                            "event_" + event.getId(),
+                            event.getUserId(),
+                            prompt,
+                            event.getGroupId(),
+                            "糖果熊"
+                    );
+                    if (reply != null && !reply.trim().isEmpty()) {
+                        sendGroupReply(Long.parseLong(event.getGroupId()), reply, OutboundScheduler.Priority.NOTIFY);
+                    }
+                    longTermMemoryRepo.markTriggered(event.getId());
+                    logger.info("📅 定时事件已触发: {} -> {}", event.getContent(), event.getGroupId());
+                } catch (Exception e) {
+                    logger.error("❌ 定时事件触发失败 id={}: {}", event.getId(), e.getMessage());
+                }
+            }
+            wakeAt(EVENT_CHECKER_JOB, longTermMemoryRepo.findEarliestPendingTrigger());
+        } catch (Exception e) {
+            logger.error("❌ 定时事件检查异常", e);
+        }
+    }
+
+    /** 取出到期的 recurring_tasks，把 prompt 发给 LLM 自由执行，并按最早的下次触发安排下次检查 */
+    private void fireDueRecurringTasks() {
+        try {
+            recurringTaskRepo.expireOldTasks();
+            List<RecurringTask> dueTasks = recurringTaskRepo.findDueTasks();
+            for (RecurringTask task : dueTasks) {
+                try {
+                    logger.info("🔁 周期任务触发: {} (id={})", task.getTaskName(), task.getId());
+                    String sessionId = "recurring_" + task.getId() + "_" + System.currentTimeMillis();
+                    String reply = baiLianService.generate(
+                            sessionId,
+                            task.getUserId(),
+                            task.getTriggerPrompt(),
+                            task.getGroupId(),
+                            "糖果熊"
+                    );
+                    if (reply != null && !reply.trim().isEmpty() && task.getGroupId() != null) {
+                        sendGroupReply(Long.parseLong(task.getGroupId()), reply, OutboundScheduler.Priority.NOTIFY);
+                    }
+
+                    // 计算下次触发时间
+                    LocalDateTime nextFire = Schedule.nextFire(task.getCronExpr(), LocalDateTime.now());
+                    recurringTaskRepo.markFired(task.getId(), nextFire);
+                } catch (Exception e) {
+                    logger.error("❌ 周期任务执行失败 id={}: {}", task.getId(), e.getMessage());
+                }
+            }
+            wakeAt(RECURRING_TASKS_JOB, schedulerJobRepo.findEarliestUserTaskFire());
+        } catch (Exception e) {
+            logger.error("❌ 周期任务调度异常", e);
+        }
+    }
+
+    /**
+     * 让任务不晚于 {@code dueAt} 再跑一次；触发失败的条目会一直处于到期状态，
+     * 所以至少间隔 {@link #DUE_CHECK_MIN_INTERVAL_MS}，避免反复空转
+     */
+    private static void wakeAt(String job, LocalDateTime dueAt) {
+        if (dueAt == null) return;
+        long dueMs = dueAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        JobScheduler.getInstance().runNoLaterThan(job,
+                Math.max(dueMs, System.currentTimeMillis() + DUE_CHECK_MIN_INTERVAL_MS));
+    }
+
+    // ===== WebSocket 生命周期回调 =====
+
+    @Override
+    public void onOpen(ServerHandshake handshakedata) {
+        logger.info("✅ 已连接 NapCat WebSocket");
+        connection.onConnected();
+        // 异步拉取预加载群的成员昵称写入数据库
+        new Thread(() -> seedGroupNicknames()).start();
+    }
+
+    private void seedGroupNicknames() {
+        try { Thread.sleep(3000); } catch (InterruptedException e) { return; } // 等连接稳定
+        for (Long groupId : BotConfig.getAllowedGroups()) {
+            String gid = String.valueOf(groupId);
+            try {
+                // 走成员目录，顺便为其他调用方预热缓存
+                var members = oneBotWsService.getGroupMemberDisplayNamesAsync(groupId).get();
+                if (!members.isEmpty()) {
+                    int count = 0;
+                    for (var m : members.entrySet()) {
+                        String uid = m.getKey();
+                        String name = m.getValue();
+                        // 目录里没有名片和昵称的成员显示名就是 QQ 号
+                        if (!name.equals(uid) && !"未知用户".equals(name)) {
+                            this.userService.getOrCreateUser(uid, name);
+                            count++;
+                        }
+                    }
+                    logger.info("📋 群 {} 昵称已写入: {} 人", gid, count);
+                }
+            } catch (Exception e) { logger.warn("群 {} 昵称拉取失败: {}", gid, e.getMessage()); }
+        }
+    }
+
+    /**
+     * 第一阶段（WebSocket 读线程）：解码、完成 echo 响应、过滤非消息事件和非白名单来源，
+     * 通过的事件交给 {@link #ingestion} 的工作通道处理，读线程不碰数据库和业务逻辑。
+     */
+    @Override
+    public void onMessage(String message) {
+        logger.debug("📡 原始事件: {}", message);
+        OneBotFrameDecoder.Frame frame;
+        try {
+            frame = frameDecoder.decode(message);
+        } catch (Exception e) {
+            logger.error("❌ 解析事件失败", e);
+            return;
+        }
+        dispatchFrame(frame);
+    }
+
+    /**
+     * 二进制帧（UTF-8 JSON）直接按字节解码，不先转成 String
+     */
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        OneBotFrameDecoder.Frame frame;
+        try {
+            frame = frameDecoder.decode(bytes);
+        } catch (Exception e) {
+            logger.error("❌ 解析事件失败", e);
+            return;
+        }
+        dispatchFrame(frame);
+    }
+
+    private void dispatchFrame(OneBotFrameDecoder.Frame frame) {
+        switch (frame.kind()) {
+            case API_RESPONSE -> {
+                // ✅ 异步调用返回；等待者可能恰好超时移除，此时直接丢弃
+                pendingRequests.complete(frame.echo(), frame.json());
+            }
+            case MESSAGE -> {
+                MessageEvent msg = frame.message();
+                if (msg.isPrivate()) logger.debug("💬 接受私聊 | user_id={}", msg.userId());
+                // 同群/同用户进同一通道，保证顺序
+                ingestion.submit(msg.isGroup() ? msg.groupId() : msg.userId(), msg);
+            }
+            case NOTICE -> {
+                if (oneBotWsService != null) oneBotWsService.onNotice(frame.json());
+            }
+            default -> { }
+        }
+    }
+
+    /**
+     * 第二阶段（接入工作线程）：统计、昵称、CP 追踪、防刷检测与 Handler 分发。
+     */
+    private void processMessageEvent(MessageEvent event) {
+        long selfId = event.selfId();
+        long userId = event.userId();
+
+        try {
+            // 记录群消息统计+昵称（每条都计）
+            if (event.isGroup()) {
+                String gid = String.valueOf(event.groupId());
+                String uid = String.valueOf(userId);
+                GroupMessageStatsRepository.recordMessage(gid, uid);
+                // 更新用户昵称（从群名片/QQ昵称）
+                String displayName = event.displayName();
+                if (!displayName.isEmpty() && !"未知用户".equals(displayName)) {
+                    this.userService.getOrCreateUser(uid, displayName);
+                }
+                // 记录 @ 互动 → CP 追踪
+                for (Long atQq : event.ats()) {
+                    if (atQq != selfId) {
+                        CPTracker.recordInteraction(gid, uid, String.valueOf(atQq));
+                    }
+                }
+            }
+            String rawMessage = event.rawMessage();
+            if (event.isPrivate()) {
+                // 👇 关键：通知提醒服务收到回复
+                ReminderService.getInstance().onPrivateMessageReceived(userId);
+            }
+
+            // 执行防刷检测（仅群聊）
+            if (event.isGroup()) {
+                long groupId = event.groupId();
+                if (this.spamDetector != null) {
+                    this.spamDetector.checkAndInterrupt(String.valueOf(groupId), userId, rawMessage);
+                } else {
+                    logger.warn("⚠️ SpamDetector 未初始化，跳过防刷检测");
+                }
+            }
+
+            // 分发事件给注册的处理器
+            this.handlerRegistry.dispatch(event, this);
+
+        } catch (Exception e) {
+            logger.error("❌ 处理消息失败", e);
+            try {
+                String fallback = "出了点小问题，等下再试～";
+                long groupId = event.groupId();
+                if (event.isGroup() && groupId > 0) {
+                    sendGroupReply(groupId, fallback);
+                } else if (event.isPrivate() && userId > 0) {
+                    sendPrivateReply(userId, fallback);
+                }
+            } catch (Exception ignored) {}
+        }
+    }
+
+    @Override
+    public void onClose(int code, String reason, boolean remote) {
+        connection.onDisconnected(code, reason, remote);
+    }
+
+    @Override
+    public void onError(Exception ex) {
+        logger.error("🔥 WebSocket 发生错误", ex);
+    }
+
+    // ===== OneBot API 调用封装 =====
+
+    /**
+     * 通过 WebSocket 异步调用 OneBot API。
+     *
+     * @param action API 动作名（如 send_group_msg）
+     * @param params 参数对象
+     * @return 返回一个 CompletableFuture，可在后续处理响应；失败或超时时结果为 null
+     */
+    public CompletableFuture<JsonNode> callOneBotApi(String action, JsonNode params) {
+        return callOneBotApi(action, params, BotConfig.getOneBotApiTimeoutMs());
+    }
+
+    /**
+     * 同上，指定超时（群成员列表等大响应用 {@link BotConfig#getOneBotApiHeavyTimeoutMs()}）
+     */
+    public CompletableFuture<JsonNode> callOneBotApi(String action, JsonNode params, long timeoutMs) {
+        PendingRequestTable.Registration reg = pendingRequests.register(action, timeoutMs);
+        String echo = reg.echo();
+
+        ObjectNode request = MAPPER.createObjectNode();
+        request.put("action", action);
+        request.set("params", params);
+        request.put("echo", echo);
+
+        connection.sendRequest(action, echo, request.toString(), reg.future());
+        logger.debug("📤 发送 OneBot API 请求: action={}, echo={}", action, echo);
+
+        return reg.future()
+                .exceptionally(t -> {
+                    logger.warn("⏰ OneBot API 调用失败或超时: action={}, echo={}", action, echo, t);
+                    return null;
+                });
+    }
+
+    // ===== 消息发送便捷方法 =====
+
+    /**
+     * 根据原始消息类型（群/私聊）自动选择发送方式。
+     */
+    public void sendReply(MessageEvent msg, String reply) {
+        sendReply(msg.json(), reply);
+    }
+
+    public void sendReply(JsonNode msg, String reply) {
+        if ("group".equals(msg.path("message_type").asText())) {
+            sendGroupReply(msg.path("group_id").asLong(), reply);
+        } else {
+            sendPrivateReply(msg.path("user_id").asLong(), reply);
+        }
+    }
+
+    public void sendPrivateReply(long userId, String reply) {
+        sendPrivateReply(userId, 0, reply);
+    }
+
+    /** 带 group_id 的私聊，非好友需要 group_id 建立临时会话 */
+    public void sendPrivateReply(long userId, long groupId, String reply) {
+        sendPrivateReply(userId, groupId, reply, OutboundScheduler.Priority.REPLY);
+    }
+
+    public void sendPrivateReply(long userId, long groupId, String reply, OutboundScheduler.Priority priority) {
+        logger.debug("📤 私聊入队 [{}]: {}", priority, reply);
+        outbound.enqueuePrivate(userId, groupId, reply, priority);
+    }
+
+    public void sendGroupReply(long groupId, String reply) {
+        sendGroupReply(groupId, reply, OutboundScheduler.Priority.REPLY);
+    }
+
+    public void sendGroupReply(long groupId, String reply, OutboundScheduler.Priority priority) {
+        logger.debug("📤 群聊入队 [{}]: {}", priority, reply);
+        outbound.enqueueGroup(groupId, reply, priority);
+    }
+
+    /**
+     * 出站调度器的发送端（Outbound-Sender 线程）：组装 OneBot 请求写入 WebSocket，群聊同时记入上下文。
+     *
+     * @return 连接不可用时返回 false，消息回到出站队列等重连后再发
+     */
+    private boolean deliverOutgoing(OutboundScheduler.Outgoing out) {
+        if (!connection.isConnected()) return false;
+        String traceId = "send_" + System.currentTimeMillis() + "_" + ThreadLocalRandom.current().nextInt(1000);
+        String reply = out.text();
+        try {
+            ObjectNode action = MAPPER.createObjectNode();
+            ObjectNode params;
+            if (out.kind() == OutboundScheduler.Kind.GROUP) {
+                action.put("action", "send_group_msg");
+                params = action.putObject("params");
+                params.put("group_id", out.targetId());
+            } else {
+                action.put("action", "send_private_msg");
+                params = action.putObject("params");
+                params.put("user_id", out.targetId());
+                if (out.viaGroupId() > 0) params.put("group_id", out.viaGroupId());
+            }
+            params.put("message", reply);
+            this.send(action.toString());
+            logger.debug("📤 [{}] 已发送 {} {}: {}", traceId, out.kind(), out.targetId(), reply);
+        } catch (WebsocketNotConnectedException e) {
+            return false;
+        } catch (Exception e) {
+            logger.error("❌ 发送消息失败: {} {}", out.kind(), out.targetId(), e);
+            return true;
+        }
+        if (out.kind() == OutboundScheduler.Kind.GROUP && this.baiLianService != null) {
+            String groupId = String.valueOf(out.targetId());
+            this.baiLianService.recordGroupContext(groupId, "candybear", "糖果熊", reply, "bot_reply");
+            this.baiLianService.getBotMemory().record(groupId, BotMemoryService.EntryType.SAID, null,
+                    reply.length() > 100 ? reply.substring(0, 100) + "..." : reply);
+        }
+        return true;
+    }
+
+    // ===== Getter 方法 =====
+
+    public BaiLianService getBaiLianService() { return this.baiLianService; }
+
+    public OneBotWsService getOneBotWsService() {
+        return oneBotWsService;
+    }
+
+    public GroupSerialExecutor getGroupExecutor() {
+        return groupExecutor;
+    }
+
+    public PendingRequestTable getPendingRequests() {
+        return pendingRequests;
+    }
+
+    public OutboundScheduler getOutbound() {
+        return outbound;
+    }
+
+    public ConnectionSupervisor getConnectionSupervisor() {
+        return connection;
+    }
+
+    public StartupOrchestrator getStartup() {
+        return startup;
+    }
+
+    public OneBotFrameDecoder getFrameDecoder() {
+        return frameDecoder;
+    }
+
+    public EventIngestionPipeline<MessageEvent> getIngestion() {
+        return ingestion;
+    }
+
+    // ===== 程序入口 =====
+
+    /**
+     * 主方法：创建机器人实例，连接 WebSocket 并初始化服务。
+     */
+    public static void main(String[] args) throws Exception {
+        StartupOrchestrator startup = new StartupOrchestrator();
+        // 数据库初始化与 HanLP 词典、字体预热并行；Main 构造需要数据库，会等 db 步骤释放初始化锁
+        startup.step("db", true, DatabaseConfig::initConnectionPool);
+        startup.step("hanlp", false, TextAnalysis::warmUp);
+        startup.step("fonts", false, () -> ImageRenderer.getInstance().warmUp());
+
+        Main bot = new Main(new URI(BotConfig.getWsUrl()), startup);
+        bot.init();
+        // 关键步骤就绪即开始收消息，后台步骤继续执行
+        startup.awaitCritical(BotConfig.getStartupCriticalTimeoutMs());
+        bot.connect();
+        // 保持主线程运行；断线期间由连接监管重连，不能以 isClosed() 为准
+        while (!bot.getConnectionSupervisor().isStopped()) {
+            Thread.sleep(1000);
+        }
+    }
+
+}
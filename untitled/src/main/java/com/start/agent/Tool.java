@@ -0,0 +1,42 @@
+package com.start.agent;
+
+import java.util.Map;
+
+public interface Tool {
+    String getName();
+    String getDescription();
+    Map<String, Object> getParameters(); // JSON Schema
+
+    /**
+     * 返回符合百炼 API 要求的 function spec
+     */
+    default Map<String, Object> getFunctionSpec() {
+        return Map.of(
+                "type", "function",
+                "function", Map.of(
+                        "name", getName(),
+                        "description", getDescription(),
+                        "parameters", getParameters()
+                )
+        );
+    }
+
+    String execute(Map<String, Object> args);
+
+    /**
+     * 是否必须顺序执行。
+     * <p>
+     * 同一轮的多个工具调用默认并发执行；会发消息、写数据或依赖前一个调用结果的工具
+     * 应返回 true，执行时作为屏障：等前面的调用全部完成后单独执行，之后的调用再继续。
+     */
+    default boolean isSequential() {
+        return false;
+    }
+
+    /**
+     * 单次执行超时（毫秒），返回 0 表示使用 {@code tool.timeout-ms} 默认值。
+     */
+    default long getTimeoutMs() {
+        return 0;
+    }
+}
\ No newline at end of file
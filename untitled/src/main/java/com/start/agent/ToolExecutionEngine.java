@@ -0,0 +1,240 @@
+package com.start.agent;
+
+import com.start.config.BotConfig;
+import com.start.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工具执行引擎：把模型同一轮返回的多个 tool_calls 并发执行。
+ * <p>
+ * 规则：
+ * <ul>
+ *     <li>相邻的普通工具（{@link Tool#isSequential()} 为 false）一起提交，并发执行</li>
+ *     <li>顺序工具作为屏障：等前面的调用全部结束后单独执行，后面的调用再继续。
+ *     超时被取消但没有响应中断、仍在运行的调用也算"未结束"：下一段最多等它一个超时时长，
+ *     仍未退出则下一段不执行、直接返回失败结果</li>
+ *     <li>每个调用有独立超时（{@link Tool#getTimeoutMs()}，默认 {@code tool.timeout-ms}），从开始执行算起，
+ *     超时即中断取消；在线程池里排队的时间单独统计，排队超过同样时长仍未开始也会取消</li>
+ *     <li>结果列表与输入顺序一一对应，保证 tool 消息和 tool_call_id 对齐</li>
+ * </ul>
+ * 工具抛出的异常和超时都转换成文字结果返回给模型，不会中断整轮对话。
+ */
+public class ToolExecutionEngine {
+    private static final Logger logger = LoggerFactory.getLogger(ToolExecutionEngine.class);
+
+    /** 一次待执行的工具调用 */
+    public record Invocation(Tool tool, Map<String, Object> args) {}
+
+    /**
+     * 执行结果
+     *
+     * @param content   返回给模型的文本
+     * @param success   是否正常完成（超时、异常为 false）
+     * @param elapsedMs 执行耗时（不含排队）
+     * @param queuedMs  提交到开始执行前的排队时长
+     */
+    public record Outcome(String content, boolean success, long elapsedMs, long queuedMs) {}
+
+    private static final ToolExecutionEngine INSTANCE = new ToolExecutionEngine(
+            BotConfig.getToolExecutorThreads(), BotConfig.getToolTimeoutMs());
+
+    private final ThreadPoolExecutor pool;
+    private final long defaultTimeoutMs;
+
+    public static ToolExecutionEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param threads          工作线程上限（空闲 60 秒回收）
+     * @param defaultTimeoutMs 工具未声明超时时使用的默认值
+     */
+    public ToolExecutionEngine(int threads, long defaultTimeoutMs) {
+        int n = Math.max(1, threads);
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "Tool-Worker-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+        this.defaultTimeoutMs = defaultTimeoutMs > 0 ? defaultTimeoutMs : 20_000;
+    }
+
+    /**
+     * 执行一轮工具调用，返回与输入顺序一致的结果。
+     */
+    public List<Outcome> executeAll(List<Invocation> invocations) {
+        Outcome[] outcomes = new Outcome[invocations.size()];
+        // 超时后已取消、但工作线程还没退出的调用（不响应中断的 JDBC / HTTP 阻塞）
+        List<Pending> stray = new ArrayList<>();
+        int i = 0;
+        while (i < invocations.size()) {
+            // 本段：一个顺序工具，或到下一个顺序工具之前的所有普通工具
+            int end = i + 1;
+            if (!invocations.get(i).tool().isSequential()) {
+                while (end < invocations.size() && !invocations.get(end).tool().isSequential()) end++;
+            }
+            List<Invocation> step = invocations.subList(i, end);
+
+            // 屏障：上一段超时的调用还在跑时先等它退出，等不到就不执行本段，避免和它并行
+            if (!awaitStray(stray, maxTimeoutMs(step))) {
+                logger.warn("⏱️ 之前超时的 {} 个工具调用仍未退出，跳过后续 {} 个调用", stray.size(), step.size());
+                for (int j = i; j < end; j++) {
+                    outcomes[j] = new Outcome("前一个工具仍在运行，为保证执行顺序未执行该工具", false, 0, 0);
+                }
+                i = end;
+                continue;
+            }
+
+            List<Pending> batch = new ArrayList<>(step.size());
+            for (Invocation inv : step) {
+                batch.add(submit(inv));
+            }
+            if (batch.size() > 1) {
+                logger.debug("🔧 并发执行 {} 个工具调用", batch.size());
+            }
+            for (int j = i; j < end; j++) {
+                Pending p = batch.get(j - i);
+                outcomes[j] = await(p, invocations.get(j));
+                if (p.state().get() == RUNNING && !p.finished().isDone()) stray.add(p);
+            }
+            i = end;
+        }
+        return List.of(outcomes);
+    }
+
+    private long maxTimeoutMs(List<Invocation> step) {
+        long max = 0;
+        for (Invocation inv : step) max = Math.max(max, timeoutMs(inv));
+        return max;
+    }
+
+    private long timeoutMs(Invocation inv) {
+        return inv.tool().getTimeoutMs() > 0 ? inv.tool().getTimeoutMs() : defaultTimeoutMs;
+    }
+
+    /** 等待超时未退出的调用结束，最多 waitMs；全部结束返回 true */
+    private static boolean awaitStray(List<Pending> stray, long waitMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        for (Iterator<Pending> it = stray.iterator(); it.hasNext(); ) {
+            Pending p = it.next();
+            try {
+                p.finished().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                it.remove();
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                it.remove(); // finished 不会异常完成
+            }
+        }
+        return true;
+    }
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+
+    /**
+     * @param state        QUEUED → RUNNING（工作线程开始执行）或 QUEUED → ABANDONED（排队超时放弃），只变一次
+     * @param startedNanos 开始执行的时间，state 为 RUNNING 时有效
+     * @param finished     工作线程真正退出时完成，被取消后仍在阻塞的调用以此判断
+     */
+    private record Pending(Future<String> future, long submitNanos, AtomicInteger state, AtomicLong startedNanos,
+                           long timeoutNanos, CompletableFuture<Void> finished) {}
+
+    private Pending submit(Invocation inv) {
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        AtomicLong started = new AtomicLong();
+        CompletableFuture<Void> finished = new CompletableFuture<>();
+        long submit = System.nanoTime();
+        Future<String> future = pool.submit(() -> {
+            started.set(System.nanoTime());
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                finished.complete(null);
+                throw new CancellationException("排队超时，已放弃");
+            }
+            try {
+                return inv.tool().execute(inv.args());
+            } finally {
+                finished.complete(null);
+            }
+        });
+        return new Pending(future, submit, state, started, TimeUnit.MILLISECONDS.toNanos(timeoutMs(inv)), finished);
+    }
+
+    private Outcome await(Pending p, Invocation inv) {
+        Outcome outcome = awaitOutcome(p, inv);
+        String name = inv.tool().getName();
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.histogram("bot_tool_duration_seconds", "工具执行耗时", "tool", name).record(outcome.elapsedMs());
+        metrics.histogram("bot_tool_queue_seconds", "工具调用在线程池排队的时长", "tool", name).record(outcome.queuedMs());
+        if (!outcome.success()) metrics.counter("bot_tool_failures_total", "工具执行失败/超时次数", "tool", name).inc();
+        return outcome;
+    }
+
+    private Outcome awaitOutcome(Pending p, Invocation inv) {
+        String name = inv.tool().getName();
+        try {
+            while (true) {
+                boolean running = p.state().get() == RUNNING;
+                // 已开始：从开始执行算超时；还在排队：排队时长同样以超时为上限
+                long deadline = (running ? p.startedNanos().get() : p.submitNanos()) + p.timeoutNanos();
+                try {
+                    String result = p.future().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    return outcome(result != null ? result : "", true, p);
+                } catch (TimeoutException e) {
+                    if (!running) {
+                        if (p.state().compareAndSet(QUEUED, ABANDONED)) {
+                            p.future().cancel(false);
+                            logger.warn("⏱️ 工具 {} 排队 {}ms 仍未开始，已取消", name, outcome("", false, p).queuedMs());
+                            return outcome("工具繁忙，排队超时，已取消", false, p);
+                        }
+                        continue; // 等待期间开始执行了，按开始时间重新计时
+                    }
+                    // 中断不一定能让工具停下，仍在运行的调用由 executeAll 在下一段之前等待
+                    p.future().cancel(true);
+                    Outcome timedOut = outcome("工具执行超时，已取消", false, p);
+                    logger.warn("⏱️ 工具 {} 执行超时 ({}ms，排队 {}ms)，已取消", name, timedOut.elapsedMs(), timedOut.queuedMs());
+                    return timedOut;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.warn("工具 {} 执行失败", name, cause);
+            return outcome("工具执行失败: " + cause.getMessage(), false, p);
+        } catch (InterruptedException e) {
+            p.future().cancel(true);
+            Thread.currentThread().interrupt();
+            return outcome("工具执行被中断", false, p);
+        } catch (CancellationException e) {
+            return outcome("工具执行已取消", false, p);
+        }
+    }
+
+    private static Outcome outcome(String content, boolean success, Pending p) {
+        long now = System.nanoTime();
+        boolean started = p.state().get() == RUNNING;
+        long startedAt = started ? p.startedNanos().get() : now;
+        long elapsed = started ? now - startedAt : 0;
+        long queued = startedAt - p.submitNanos();
+        return new Outcome(content, success, TimeUnit.NANOSECONDS.toMillis(elapsed), TimeUnit.NANOSECONDS.toMillis(queued));
+    }
+
+    /** 当前正在执行的工具数 */
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+}
@@ -0,0 +1,563 @@
+package com.start.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public class BotConfig {
+    private static final Logger logger = LoggerFactory.getLogger(BotConfig.class);
+
+    private static long botQq;
+    private static long adminQq;
+    private static String botName;
+    private static boolean privateWhitelistEnabled = false;
+    private static Set<Long> ALLOWED_GROUPS = Collections.emptySet();
+    private static Set<Long> ALLOWED_PRIVATE_USERS = Collections.emptySet();
+    private static Set<Long> PRIVATE_BLACKLIST = Collections.emptySet();
+    private static String oneBotHttpBaseUrl;
+    private static String oneBotAccessToken;
+    private static String wsBaseUrl;
+    private static String wsUrl;
+
+    private static String baiLianApiKey;
+    private static String baiLianBaseUrl;
+    private static String baiLianChatModel;
+    private static int baiLianTimeoutMs;
+    private static int baiLianMaxRetries;
+
+    private static String agentApiKey;
+    private static String agentBaseUrl;
+    private static String agentModel;
+    private static int agentTimeoutMs;
+    private static int agentMaxRetries;
+
+    private static String ttsBaseUrl;
+    private static String ttsDefaultVoice;
+    private static String ttsAudioFormat;
+    private static String ttsOutputDir;
+    private static int ttsTimeoutMs;
+    private static int ttsMaxRetries;
+
+    private static String merchantApiBaseUrl;
+    private static String merchantApiKey;
+    private static boolean merchantNotifyEnabled;
+    private static Set<Long> merchantNotifyGroups;
+    private static Set<Long> merchantNotifyQqs;
+    private static Set<String> merchantHighValueItems;
+
+    private static int httpConnectTimeoutMs;
+    private static String webSearchUrl;
+    private static String webSearchBackend;
+
+    private static String groupExecutorMode;
+    private static int groupExecutorWorkers;
+    private static int groupExecutorMailboxCapacity;
+    private static long groupExecutorIdleTimeoutMs;
+
+    private static int ingestLanes;
+    private static int ingestCapacity;
+    private static String ingestOverflowPolicy;
+
+    private static long statsFlushIntervalMs;
+    private static int statsFlushBatchSize;
+
+    private static int toolExecutorThreads;
+    private static long toolTimeoutMs;
+
+    private static boolean baiLianStreamEnabled;
+
+    private static int llmChatMaxConcurrency;
+    private static int llmAgentMaxConcurrency;
+    private static long llmRetryBaseMs;
+    private static long llmRetryMaxMs;
+    private static boolean llmHedgeEnabled;
+    private static long llmHedgeDelayMs;
+
+    private static int sessionMaxMessages;
+    private static int sessionMaxTokens;
+    private static int sessionMaxSessions;
+    private static long sessionMaxTotalTokens;
+    private static long sessionIdleTimeoutMs;
+    private static String sessionSpillDir;
+
+    private static int outboundGlobalPerMinute;
+    private static int outboundGlobalBurst;
+    private static int outboundTargetPerMinute;
+    private static int outboundTargetBurst;
+    private static int outboundTargetCapacity;
+    private static int outboundMergeBacklog;
+    private static int outboundMergeMaxChars;
+    private static long outboundProactiveTtlMs;
+
+    private static long oneBotApiTimeoutMs;
+    private static long oneBotApiHeavyTimeoutMs;
+
+    private static String metricsHost;
+    private static int metricsPort;
+
+    private static long startupCriticalTimeoutMs;
+
+    private static long wsReconnectBaseMs;
+    private static long wsReconnectMaxMs;
+
+    private static int portraitBatchSize;
+    private static int portraitConcurrency;
+    private static int portraitMaxUsersPerRun;
+
+    private static int cacheMaxEntries;
+    private static long cacheTtlMs;
+
+    /** 覆盖配置的 JVM 系统属性前缀：-Dcandybear.bailian.base-url=... 覆盖 bailian.base-url */
+    public static final String OVERRIDE_PREFIX = "candybear.";
+
+    private static final Pattern ENV_PATTERN = Pattern.compile("\\$\\{([^:}]+)(?::([^}]*))?\\}");
+
+    static {
+        try (InputStream is = BotConfig.class.getClassLoader().getResourceAsStream("application.properties")) {
+            if (is == null) {
+                throw new RuntimeException("❌ 未找到 application.properties");
+            }
+
+            Properties props = new Properties();
+            // 👇 关键：用 UTF-8 显式解码！
+            props.load(new InputStreamReader(is, StandardCharsets.UTF_8));
+            applyOverrides(props);
+
+            // 读取配置
+            String qqStr = props.getProperty("bot.qq");
+            if (qqStr == null || qqStr.trim().isEmpty()) {
+                throw new RuntimeException("❌ 请配置 bot.qq");
+            }
+            botQq = Long.parseLong(resolve(qqStr.trim()));
+            adminQq = Long.parseLong(resolve(props.getProperty("admin.qq", "0").trim()));
+            oneBotHttpBaseUrl = resolve(props.getProperty("onebot.http-base-url", "http://127.0.0.1:5700").trim());
+            wsBaseUrl = resolve(props.getProperty("ws.base.url", "ws://127.0.0.1:5700").trim());
+            wsUrl = resolve(props.getProperty("ws.url", wsBaseUrl).trim());
+            oneBotAccessToken = resolve(props.getProperty("onebot.access-token", "").trim());
+            botName = props.getProperty("bot.name", "糖果熊").trim();
+            String enabledStr = resolve(props.getProperty("private.whitelist.enabled", "false").trim());
+            privateWhitelistEnabled = Boolean.parseBoolean(enabledStr);
+            ALLOWED_GROUPS = parseLongSet(resolve(props.getProperty("allowed.groups", "")));
+            ALLOWED_PRIVATE_USERS = parseLongSet(resolve(props.getProperty("allowed.private.users", "")));
+            PRIVATE_BLACKLIST = parseLongSet(resolve(props.getProperty("private.blacklist", "")));
+
+            baiLianApiKey = resolve(props.getProperty("bailian.api-key", resolve(props.getProperty("dashscope.api-key", ""))).trim());
+            baiLianBaseUrl = resolve(props.getProperty("bailian.base-url", "https://api.meai.cloud/v1/chat/completions").trim());
+            baiLianChatModel = resolve(props.getProperty("bailian.chat-model", "glm-5.1").trim());
+            baiLianTimeoutMs = parseInt(resolve(props.getProperty("bailian.timeout-ms", "90000")), 90000);
+            baiLianMaxRetries = parseInt(resolve(props.getProperty("bailian.max-retries", "2")), 2);
+
+            agentApiKey = resolve(props.getProperty("agent.api-key", "").trim());
+            agentBaseUrl = resolve(props.getProperty("agent.base-url", "https://api.deepseek.com/v1/chat/completions").trim());
+            agentModel = resolve(props.getProperty("agent.model", "gemini-3-flash").trim());
+            agentTimeoutMs = parseInt(resolve(props.getProperty("agent.timeout-ms", "90000")), 90000);
+            agentMaxRetries = parseInt(resolve(props.getProperty("agent.max-retries", "2")), 2);
+
+            ttsBaseUrl = resolve(props.getProperty("tts.base-url", "http://127.0.0.1:8765").trim());
+            ttsDefaultVoice = resolve(props.getProperty("tts.default-voice", "tangguoxiong").trim());
+            ttsAudioFormat = resolve(props.getProperty("tts.audio-format", "mp3").trim());
+            ttsTimeoutMs = parseInt(resolve(props.getProperty("tts.timeout-ms", "30000")), 30000);
+            ttsOutputDir = resolve(props.getProperty("tts.output-dir", "/opt/qq-bot/tts/output").trim());
+            ttsMaxRetries = parseInt(resolve(props.getProperty("tts.max-retries", "2")), 2);
+
+            merchantApiBaseUrl = resolve(props.getProperty("merchant.api.base-url", "https://wegame.shallow.ink"));
+            merchantApiKey = resolve(props.getProperty("merchant.api.key", ""));
+            merchantNotifyEnabled = Boolean.parseBoolean(resolve(props.getProperty("merchant.notify.enabled", "true")));
+            merchantNotifyGroups = parseLongSet(resolve(props.getProperty("merchant.notify.groups", "")));
+            if (merchantNotifyGroups.isEmpty()) {
+                merchantNotifyGroups = ALLOWED_GROUPS;
+            }
+            merchantNotifyQqs = parseLongSet(resolve(props.getProperty("merchant.notify.qqs", "")));
+            merchantHighValueItems = parseStringSet(resolve(props.getProperty("merchant.high-value-items", "国王球,炫彩精灵蛋,首领血脉,棱镜球")));
+
+            httpConnectTimeoutMs = parseInt(resolve(props.getProperty("http.connect-timeout-ms", "10000")), 10000);
+            webSearchUrl = resolve(props.getProperty("web.search.url", "https://html.duckduckgo.com/html/"));
+            webSearchBackend = resolve(props.getProperty("web.search.backend", "bing"));
+
+            groupExecutorMode = resolve(props.getProperty("group.executor.mode", "mailbox").trim());
+            groupExecutorWorkers = parseInt(resolve(props.getProperty("group.executor.workers", "16")), 16);
+            groupExecutorMailboxCapacity = parseInt(resolve(props.getProperty("group.executor.mailbox-capacity", "32")), 32);
+            groupExecutorIdleTimeoutMs = parseInt(resolve(props.getProperty("group.executor.idle-timeout-ms", "600000")), 600000);
+
+            ingestLanes = parseInt(resolve(props.getProperty("ingest.lanes", "4")), 4);
+            ingestCapacity = parseInt(resolve(props.getProperty("ingest.capacity", "1024")), 1024);
+            ingestOverflowPolicy = resolve(props.getProperty("ingest.overflow-policy", "drop_oldest").trim());
+
+            statsFlushIntervalMs = parseInt(resolve(props.getProperty("stats.flush-interval-ms", "2000")), 2000);
+            statsFlushBatchSize = parseInt(resolve(props.getProperty("stats.flush-batch-size", "500")), 500);
+
+            toolExecutorThreads = parseInt(resolve(props.getProperty("tool.executor.threads", "32")), 32);
+            toolTimeoutMs = parseInt(resolve(props.getProperty("tool.timeout-ms", "20000")), 20000);
+
+            baiLianStreamEnabled = Boolean.parseBoolean(resolve(props.getProperty("bailian.stream", "true")));
+
+            llmChatMaxConcurrency = parseInt(resolve(props.getProperty("llm.chat.max-concurrency", "8")), 8);
+            llmAgentMaxConcurrency = parseInt(resolve(props.getProperty("llm.agent.max-concurrency", "4")), 4);
+            llmRetryBaseMs = parseInt(resolve(props.getProperty("llm.retry.base-ms", "500")), 500);
+            llmRetryMaxMs = parseInt(resolve(props.getProperty("llm.retry.max-ms", "8000")), 8000);
+            // 对冲会为慢请求再发一份计费请求，默认关闭，按需开启
+            llmHedgeEnabled = Boolean.parseBoolean(resolve(props.getProperty("llm.hedge.enabled", "false")));
+            // 0 = 按端点 P95 自适应
+            llmHedgeDelayMs = parseInt(resolve(props.getProperty("llm.hedge.delay-ms", "0")), 0);
+
+            sessionMaxMessages = parseInt(resolve(props.getProperty("session.max-messages", "12")), 12);
+            sessionMaxTokens = parseInt(resolve(props.getProperty("session.max-tokens", "4000")), 4000);
+            sessionMaxSessions = parseInt(resolve(props.getProperty("session.max-sessions", "5000")), 5000);
+            sessionMaxTotalTokens = parseInt(resolve(props.getProperty("session.max-total-tokens", "4000000")), 4000000);
+            sessionIdleTimeoutMs = parseInt(resolve(props.getProperty("session.idle-timeout-ms", "21600000")), 21600000);
+            // 为空则淘汰的会话直接丢弃
+            sessionSpillDir = resolve(props.getProperty("session.spill-dir", "").trim());
+
+            outboundGlobalPerMinute = parseInt(resolve(props.getProperty("outbound.global-per-minute", "60")), 60);
+            outboundGlobalBurst = parseInt(resolve(props.getProperty("outbound.global-burst", "10")), 10);
+            outboundTargetPerMinute = parseInt(resolve(props.getProperty("outbound.target-per-minute", "20")), 20);
+            outboundTargetBurst = parseInt(resolve(props.getProperty("outbound.target-burst", "5")), 5);
+            outboundTargetCapacity = parseInt(resolve(props.getProperty("outbound.target-capacity", "50")), 50);
+            // 某个群积压达到该条数后开始合并相邻气泡
+            outboundMergeBacklog = parseInt(resolve(props.getProperty("outbound.merge-backlog", "3")), 3);
+            outboundMergeMaxChars = parseInt(resolve(props.getProperty("outbound.merge-max-chars", "400")), 400);
+            outboundProactiveTtlMs = parseInt(resolve(props.getProperty("outbound.proactive-ttl-ms", "60000")), 60000);
+
+            oneBotApiTimeoutMs = parseInt(resolve(props.getProperty("onebot.api.timeout-ms", "10000")), 10000);
+            // 群成员列表等大响应
+            oneBotApiHeavyTimeoutMs = parseInt(resolve(props.getProperty("onebot.api.heavy-timeout-ms", "30000")), 30000);
+
+            // Prometheus 抓取端点，默认关闭；设置正数端口后才监听
+            metricsHost = resolve(props.getProperty("metrics.host", "127.0.0.1")).trim();
+            metricsPort = parseInt(resolve(props.getProperty("metrics.port", "0")), 0);
+
+            // 启动时等待关键步骤（数据库、知识库、建表）的最长时间，超时后照常连接
+            startupCriticalTimeoutMs = parseInt(resolve(props.getProperty("startup.critical-timeout-ms", "60000")), 60000);
+
+            // 断线重连的指数退避：首次间隔与封顶间隔
+            wsReconnectBaseMs = parseInt(resolve(props.getProperty("ws.reconnect-base-ms", "1000")), 1000);
+            wsReconnectMaxMs = parseInt(resolve(props.getProperty("ws.reconnect-max-ms", "60000")), 60000);
+
+            // 画像更新：每次大模型请求打包的用户数、并发请求数、每轮最多处理的用户数（按活跃度与陈旧度排序取前 N）
+            portraitBatchSize = parseInt(resolve(props.getProperty("portrait.batch-size", "5")), 5);
+            portraitConcurrency = parseInt(resolve(props.getProperty("portrait.concurrency", "3")), 3);
+            portraitMaxUsersPerRun = parseInt(resolve(props.getProperty("portrait.max-users-per-run", "200")), 200);
+
+            // 画像、好感度、别称读缓存：每个缓存的条目上限与过期时间（写操作会主动失效，TTL 只兜底库外修改）
+            cacheMaxEntries = parseInt(resolve(props.getProperty("cache.max-entries", "2048")), 2048);
+            cacheTtlMs = parseInt(resolve(props.getProperty("cache.ttl-ms", "600000")), 600000);
+
+            logger.info("🤖 机器人 QQ: {}, 名字: {}", botQq, botName);
+            logger.info("✅ WebSocket 地址: {}", wsUrl);
+            logger.info("✅ OneBot HTTP 地址: {}", oneBotHttpBaseUrl);
+            logger.info("✅ 白名单群: {}", ALLOWED_GROUPS);
+            logger.info("🔒 私聊白名单开关: {}", privateWhitelistEnabled ? "ON" : "OFF");
+            if (privateWhitelistEnabled) {
+                logger.info("✅ 私聊白名单用户: {}", ALLOWED_PRIVATE_USERS);
+            } else {
+                logger.info("✅ 所有私聊消息将被允许");
+            }
+            logger.info("🔊 TTS 服务: {} (voice={}, format={})", ttsBaseUrl, ttsDefaultVoice, ttsAudioFormat);
+        } catch (Exception e) {
+            logger.error("❌ 加载配置失败", e);
+            throw new RuntimeException("配置加载失败，请检查 application.properties", e);
+        }
+    }
+
+    /**
+     * 用带 {@link #OVERRIDE_PREFIX} 前缀的 JVM 系统属性覆盖配置，压测等场景用来把地址指向本地桩。
+     * 只认这个前缀，java.* / user.* 等无关系统属性不会混进配置。
+     */
+    public static void applyOverrides(Properties props) {
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith(OVERRIDE_PREFIX) && key.length() > OVERRIDE_PREFIX.length()) {
+                props.setProperty(key.substring(OVERRIDE_PREFIX.length()), System.getProperty(key));
+            }
+        }
+    }
+
+    private static String resolve(String value) {
+        if (value == null) return null;
+        Matcher m = ENV_PATTERN.matcher(value.trim());
+        if (m.matches()) {
+            String envName = m.group(1);
+            String envValue = System.getenv(envName);
+            if (envValue != null && !envValue.isBlank()) {
+                return envValue;
+            }
+            String defaultValue = m.group(2);
+            if (defaultValue != null) {
+                return defaultValue;
+            }
+            logger.warn("环境变量 {} 未设置，将使用原始占位符", envName);
+        }
+        return value;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static Set<Long> parseLongSet(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(Long::parseLong)
+                .collect(Collectors.toSet());
+    }
+
+    private static long parseLongSafe(String value) {
+        if (value == null || value.trim().isEmpty()) return 0;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Set<String> parseStringSet(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    public static long getBotQq() {
+        return botQq;
+    }
+
+    public static long getAdminQq() {
+        return adminQq;
+    }
+
+    public static String getBotName() {
+        return botName;
+    }
+
+    public static boolean isPrivateWhitelistEnabled() {
+        return privateWhitelistEnabled;
+    }
+
+    public static Set<Long> getAllowedGroups() {
+        return ALLOWED_GROUPS;
+    }
+
+    public static Set<Long> getAllowedPrivateUsers() {
+        return ALLOWED_PRIVATE_USERS;
+    }
+    public static Set<Long> getPrivateBlacklist() {
+        return PRIVATE_BLACKLIST;
+    }
+
+    public static String getOneBotHttpBaseUrl() {
+        return oneBotHttpBaseUrl;
+    }
+
+    public static String getOneBotAccessToken() {
+        return oneBotAccessToken;
+    }
+
+    public static String getWsBaseUrl() {
+        return wsBaseUrl;
+    }
+
+    public static String getWsUrl() {
+        return wsUrl;
+    }
+
+    public static String getBaiLianApiKey() {
+        return baiLianApiKey;
+    }
+
+    public static String getBaiLianBaseUrl() {
+        return baiLianBaseUrl;
+    }
+
+    public static String getBaiLianChatModel() {
+        return baiLianChatModel;
+    }
+
+    public static int getBaiLianTimeoutMs() {
+        return baiLianTimeoutMs;
+    }
+
+    public static int getBaiLianMaxRetries() {
+        return baiLianMaxRetries;
+    }
+
+    public static String getAgentApiKey() {
+        return agentApiKey;
+    }
+
+    public static String getAgentBaseUrl() {
+        return agentBaseUrl;
+    }
+
+    public static String getAgentModel() {
+        return agentModel;
+    }
+
+    public static int getAgentTimeoutMs() {
+        return agentTimeoutMs;
+    }
+
+    public static int getAgentMaxRetries() {
+        return agentMaxRetries;
+    }
+
+    public static String getTtsBaseUrl() {
+        return ttsBaseUrl;
+    }
+
+    public static String getTtsDefaultVoice() {
+        return ttsDefaultVoice;
+    }
+
+    public static String getTtsAudioFormat() {
+        return ttsAudioFormat;
+    }
+
+    public static String getTtsOutputDir() {
+        return ttsOutputDir;
+    }
+
+    public static int getTtsTimeoutMs() {
+        return ttsTimeoutMs;
+    }
+
+    public static int getTtsMaxRetries() {
+        return ttsMaxRetries;
+    }
+
+    public static int getHttpConnectTimeoutMs() {
+        return httpConnectTimeoutMs;
+    }
+
+    public static String getWebSearchUrl() {
+        return webSearchUrl;
+    }
+
+    public static String getWebSearchBackend() {
+        return webSearchBackend;
+    }
+
+    public static String getGroupExecutorMode() { return groupExecutorMode; }
+
+    public static int getGroupExecutorWorkers() { return groupExecutorWorkers; }
+
+    public static int getGroupExecutorMailboxCapacity() { return groupExecutorMailboxCapacity; }
+
+    public static long getGroupExecutorIdleTimeoutMs() { return groupExecutorIdleTimeoutMs; }
+
+    public static int getIngestLanes() { return ingestLanes; }
+
+    public static int getIngestCapacity() { return ingestCapacity; }
+
+    public static String getIngestOverflowPolicy() { return ingestOverflowPolicy; }
+
+    public static long getStatsFlushIntervalMs() { return statsFlushIntervalMs; }
+
+    public static int getStatsFlushBatchSize() { return statsFlushBatchSize; }
+
+    public static int getToolExecutorThreads() { return toolExecutorThreads; }
+
+    public static long getToolTimeoutMs() { return toolTimeoutMs; }
+
+    public static boolean isBaiLianStreamEnabled() { return baiLianStreamEnabled; }
+
+    public static int getLlmChatMaxConcurrency() { return llmChatMaxConcurrency; }
+
+    public static int getLlmAgentMaxConcurrency() { return llmAgentMaxConcurrency; }
+
+    public static long getLlmRetryBaseMs() { return llmRetryBaseMs; }
+
+    public static long getLlmRetryMaxMs() { return llmRetryMaxMs; }
+
+    public static boolean isLlmHedgeEnabled() { return llmHedgeEnabled; }
+
+    public static long getLlmHedgeDelayMs() { return llmHedgeDelayMs; }
+
+    public static int getSessionMaxMessages() { return sessionMaxMessages; }
+
+    public static int getSessionMaxTokens() { return sessionMaxTokens; }
+
+    public static int getSessionMaxSessions() { return sessionMaxSessions; }
+
+    public static long getSessionMaxTotalTokens() { return sessionMaxTotalTokens; }
+
+    public static long getSessionIdleTimeoutMs() { return sessionIdleTimeoutMs; }
+
+    public static String getSessionSpillDir() { return sessionSpillDir; }
+
+    public static int getOutboundGlobalPerMinute() { return outboundGlobalPerMinute; }
+
+    public static int getOutboundGlobalBurst() { return outboundGlobalBurst; }
+
+    public static int getOutboundTargetPerMinute() { return outboundTargetPerMinute; }
+
+    public static int getOutboundTargetBurst() { return outboundTargetBurst; }
+
+    public static int getOutboundTargetCapacity() { return outboundTargetCapacity; }
+
+    public static int getOutboundMergeBacklog() { return outboundMergeBacklog; }
+
+    public static int getOutboundMergeMaxChars() { return outboundMergeMaxChars; }
+
+    public static long getOutboundProactiveTtlMs() { return outboundProactiveTtlMs; }
+
+    public static long getOneBotApiTimeoutMs() { return oneBotApiTimeoutMs; }
+
+    public static long getOneBotApiHeavyTimeoutMs() { return oneBotApiHeavyTimeoutMs; }
+
+    public static String getMetricsHost() { return metricsHost; }
+
+    public static int getMetricsPort() { return metricsPort; }
+
+    public static long getStartupCriticalTimeoutMs() { return startupCriticalTimeoutMs; }
+
+    public static long getWsReconnectBaseMs() { return wsReconnectBaseMs; }
+
+    public static long getWsReconnectMaxMs() { return wsReconnectMaxMs; }
+
+    public static int getPortraitBatchSize() { return portraitBatchSize; }
+
+    public static int getPortraitConcurrency() { return portraitConcurrency; }
+
+    public static int getPortraitMaxUsersPerRun() { return portraitMaxUsersPerRun; }
+
+    public static int getCacheMaxEntries() { return cacheMaxEntries; }
+
+    public static long getCacheTtlMs() { return cacheTtlMs; }
+
+    public static String getMerchantApiBaseUrl() { return merchantApiBaseUrl; }
+
+    public static String getMerchantApiKey() { return merchantApiKey; }
+
+    public static boolean isMerchantNotifyEnabled() { return merchantNotifyEnabled; }
+
+    public static Set<Long> getMerchantNotifyGroups() { return merchantNotifyGroups; }
+
+    public static Set<Long> getMerchantNotifyQqs() { return merchantNotifyQqs; }
+
+    public static Set<String> getMerchantHighValueItems() { return merchantHighValueItems; }
+
+    public static String getAt(long userId) {
+        return "[CQ:at,qq=" + userId + "]";
+    }
+
+}
\ No newline at end of file
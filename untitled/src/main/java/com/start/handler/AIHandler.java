@@ -0,0 +1,326 @@
+package com.start.handler;
+
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.start.Main;
+import com.start.config.BotConfig;
+import com.start.model.MessageEvent;
+import com.start.scheduler.JobScheduler;
+import com.start.service.BaiLianService;
+import com.start.service.OutboundScheduler.Priority;
+import com.start.service.StreamingReply;
+import com.start.service.GroupSerialExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * AIHandler  ai模块入口
+ */
+public class AIHandler implements MessageHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(AIHandler.class);
+    private static final long MAX_QUEUE_MS = 30_000; // 排队超过30秒则丢弃
+    /** 等一条回复的气泡全部入队的上限，防止定时器异常时邮箱一直不放 */
+    private static final long MAX_DELIVERY_MS = 60_000;
+
+    private final BaiLianService aiService;
+    private final GroupSerialExecutor groupExecutor;
+    private final Random random = new Random();
+    private final ConcurrentHashMap<String, Long> lastReactionTime = new ConcurrentHashMap<>();
+    private static final long USER_REACTION_COOLDOWN_MS = 2000;
+
+    public AIHandler(BaiLianService aiService, GroupSerialExecutor groupExecutor) {
+        this.aiService = aiService;
+        this.groupExecutor = groupExecutor;
+    }
+
+    @Override
+    public boolean match(MessageEvent msg) {
+        if (msg.isPrivate()) {
+            String raw = msg.rawMessage().trim();
+            if (raw.isEmpty()) return false;
+            if (raw.startsWith("!") &&
+                    !raw.startsWith("!ai ") &&
+                    !raw.startsWith("！ai ") &&
+                    !raw.startsWith("#ai ")) {
+                return false;
+            }
+            return true;
+        } else if (msg.isGroup()) {
+            return true;
+        }
+        return false;
+    }
+
+    /** 群聊消息和私聊非命令消息都交给 AI，放在所有 Handler 之后 */
+    @Override
+    public boolean isFallback() {
+        return true;
+    }
+
+    @Override
+    public void handle(MessageEvent msg, Main bot) {
+        long userId = msg.userId();
+        long groupId = msg.groupId();
+        List<Long> ats = msg.ats();
+        String nickname = msg.nickname();
+        if (userId == msg.selfId()) return;
+
+        String plainText = msg.plainText().trim();
+        String rawMessage = msg.rawMessage();
+        String senderNick = msg.displayName();
+
+        // 私聊
+        if (msg.isPrivate()) {
+            handlePrivateMessage(bot, msg, userId, rawMessage, plainText, nickname);
+            return;
+        }
+
+        // 群聊：先记录原始消息到上下文（接入通道线程，同群串行，无竞争）
+        aiService.recordPublicGroupMessage(
+                String.valueOf(groupId),
+                String.valueOf(userId),
+                senderNick,
+                plainText
+        );
+
+        String gid = String.valueOf(groupId);
+
+        // 明确触发（#ai / !ai / @）
+        if (isExplicitTrigger(msg, rawMessage)) {
+            aiService.cancelPendingAwait(gid, String.valueOf(userId));
+            handleExplicitAIRequest(bot, msg, userId, groupId, rawMessage, plainText, nickname);
+            return;
+        }
+
+        // 主动插话判断（接入通道线程，同群串行，无竞争）
+        Optional<BaiLianService.Reaction> reaction = aiService.shouldReactToGroupMessage(
+                gid,
+                String.valueOf(userId),
+                senderNick,
+                plainText,
+                ats
+        );
+
+        if (reaction.isPresent()) {
+            // 同一用户2秒内冷却，避免连续短消息触发多次回复
+            String userKey = gid + "_" + userId;
+            long now = System.currentTimeMillis();
+            Long last = lastReactionTime.get(userKey);
+            if (last != null && now - last < USER_REACTION_COOLDOWN_MS) {
+                return;
+            }
+            lastReactionTime.put(userKey, now);
+
+            BaiLianService.Reaction r = reaction.get();
+            if (r.needsAI) {
+                // 同一用户的主动插话在队列里只保留最新一条
+                groupExecutor.executeBlocking(gid, "reaction_" + userId, () -> {
+                    StreamingReply stream = new StreamingReply(part -> bot.sendGroupReply(groupId, part, Priority.PROACTIVE));
+                    String reply = aiService.generate("group_" + groupId + "_" + userId, String.valueOf(userId), r.prompt, gid, String.valueOf(nickname), ats, stream);
+                    if (!reply.trim().isEmpty() && !isFallbackReply(reply)) {
+                        CompletableFuture<Void> delivered = sendSplitGroupReplies(bot, groupId, reply, stream, Priority.PROACTIVE);
+                        aiService.recordUserInteraction(gid, String.valueOf(userId), reply);
+                        aiService.recordGroupContext(gid, String.valueOf(userId), "糖果熊", reply, "ai_reply");
+                        awaitDelivery(delivered);
+                    } else if (!stream.hasDispatched()) {
+                        bot.sendGroupReply(groupId, "刚刚走神了，再说一遍？", Priority.PROACTIVE);
+                    }
+                }, MAX_QUEUE_MS);
+            } else {
+                // 不需要模型的插话也走群邮箱，免得插进前一条回复的气泡之间
+                groupExecutor.executeBlocking(gid, "reaction_" + userId,
+                        () -> awaitDelivery(sendSplitGroupReplies(bot, groupId, r.text, null, Priority.PROACTIVE)),
+                        MAX_QUEUE_MS);
+            }
+        }
+    }
+
+    private String buildReplyContext(MessageEvent msg, Main bot) {
+        Long replyId = msg.replyId();
+        if (replyId == null) return "";
+        try {
+            var params = new ObjectNode(JsonNodeFactory.instance);
+            params.put("message_id", replyId);
+            var future = bot.callOneBotApi("get_msg", params);
+            var resp = future.get(5, java.util.concurrent.TimeUnit.SECONDS);
+            if (resp != null && resp.has("data")) {
+                String repliedText = resp.path("data").path("raw_message").asText();
+                if (!repliedText.isEmpty()) {
+                    return "（对方正在回复这条消息：\"" + repliedText + "\"）";
+                }
+            }
+        } catch (Exception ignored) {}
+        return "";
+    }
+
+    private void handlePrivateMessage(Main bot, MessageEvent msg, long userId, String rawMessage, String plainText, String nickname) {
+        String prompt = buildReplyContext(msg, bot) + extractPrompt(rawMessage, plainText);
+        String sessionId = "private_" + userId;
+
+        if (isClearCommand(prompt)) {
+            aiService.clearContext(sessionId);
+            bot.sendReply(msg, "已清除我们的聊天记忆！");
+            return;
+        }
+
+        if (prompt.isEmpty()) {
+            bot.sendReply(msg, "想聊什么？直接说就好～");
+            return;
+        }
+
+        replyWithAI(bot, msg, sessionId, String.valueOf(userId), prompt, null, nickname, Collections.emptyList());
+    }
+
+    private void handleExplicitAIRequest(Main bot, MessageEvent msg, long userId, long groupId, String rawMessage, String plainText, String nickname) {
+        String replyCtx = buildReplyContext(msg, bot);
+        String prompt = replyCtx.isEmpty() ? extractPrompt(rawMessage, plainText) : replyCtx + extractPrompt(rawMessage, plainText);
+        String sessionId = "group_" + groupId + "_" + userId;
+
+        if (isClearCommand(prompt)) {
+            aiService.clearContext(sessionId);
+            bot.sendReply(msg, "已清除我们的聊天记忆！");
+            return;
+        }
+
+        if (prompt.isEmpty()) {
+            bot.sendReply(msg, "问点什么吧～");
+            return;
+        }
+
+        replyWithAI(bot, msg, sessionId, String.valueOf(userId), prompt, String.valueOf(groupId), nickname, msg.ats());
+    }
+
+    private boolean isExplicitTrigger(MessageEvent msg, String rawMessage) {
+        return rawMessage.startsWith("#ai ") ||
+                rawMessage.startsWith("!ai ") ||
+                rawMessage.startsWith("！ai ") ||
+                msg.isAt(BotConfig.getBotQq());
+    }
+
+    private String extractPrompt(String rawMessage, String plainText) {
+        if (rawMessage.startsWith("#ai ")) return rawMessage.substring(4).trim();
+        if (rawMessage.startsWith("!ai ")) return rawMessage.substring(4).trim();
+        if (rawMessage.startsWith("！ai ")) return rawMessage.substring(5).trim();
+        return plainText;
+    }
+
+    /** generate 失败或回复为空时返回的兜底文案 */
+    private static boolean isFallbackReply(String reply) {
+        return reply.equals("抱歉，刚才走神了...") || reply.equals("嗯...再问一次吧");
+    }
+
+    private boolean isClearCommand(String prompt) {
+        return "#clear".equals(prompt) || "!clear".equals(prompt) || "！clear".equals(prompt);
+    }
+
+    private void replyWithAI(Main bot, MessageEvent originalMsg, String sessionId, String userId, String prompt, String groupId, String nickname, List<Long> atUserIds) {
+        groupExecutor.executeBlocking(groupId, () -> {
+            // 群聊走流式：首句生成完就先发出去
+            StreamingReply stream = groupId != null
+                    ? new StreamingReply(part -> bot.sendGroupReply(Long.parseLong(groupId), part))
+                    : null;
+            String reply = aiService.generate(sessionId, userId, prompt, groupId, nickname, atUserIds, stream);
+
+            if (reply == null || reply.trim().isEmpty()) {
+                if (stream == null || !stream.hasDispatched()) {
+                    bot.sendReply(originalMsg, "稍等一下，我在走神...");
+                }
+                return;
+            }
+
+            if (groupId != null) {
+                long gId = Long.parseLong(groupId);
+                if (stream.hasDispatched() && isFallbackReply(reply)) {
+                    // 首句已发出后请求失败或没拿到正文，不再补一句兜底
+                    return;
+                }
+                CompletableFuture<Void> delivered = sendSplitGroupReplies(bot, gId, reply, stream, Priority.REPLY);
+
+                aiService.recordUserInteraction(groupId, userId, reply);
+                aiService.recordGroupContext(groupId, userId, originalMsg.displayName(), reply, "ai_reply");
+                awaitDelivery(delivered);
+            } else {
+                awaitDelivery(sendSplitPrivateReplies(bot, originalMsg, reply));
+            }
+        });
+    }
+
+    /**
+     * 将 AI 回复拆分为多条短消息，并逐条发送（带打字延迟）。
+     * 流式模式下首条已提前发出，这里只发剩余部分。
+     *
+     * @return 最后一条入队后完成
+     */
+    private CompletableFuture<Void> sendSplitGroupReplies(Main bot, long groupId, String fullReply, StreamingReply stream, Priority priority) {
+        List<String> parts = aiService.splitRemainingMessages(fullReply, stream);
+        boolean firstSent = stream != null && stream.hasDispatched();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        sendWithTypingDelay(parts, 0, !firstSent, msg -> bot.sendGroupReply(groupId, msg, priority), done);
+        return done;
+    }
+
+    /** 私聊同样拆分，避免一大段砸过去 */
+    private CompletableFuture<Void> sendSplitPrivateReplies(Main bot, MessageEvent originalMsg, String fullReply) {
+        List<String> parts = BaiLianService.splitIntoShortMessages(fullReply);
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        sendWithTypingDelay(parts, 0, true, msg -> bot.sendReply(originalMsg, msg), done);
+        return done;
+    }
+
+    /**
+     * 从第 index 条起逐条发送，每条前等一段打字延迟，全部入队后完成 done。
+     * 延迟交给定时器，发完一条再排下一条，保证同一条回复内的顺序。
+     *
+     * @param quickFirst 第一条是否只等较短的延迟
+     */
+    private void sendWithTypingDelay(List<String> parts, int index, boolean quickFirst, Consumer<String> send,
+                                     CompletableFuture<Void> done) {
+        while (index < parts.size() && parts.get(index).trim().isEmpty()) index++;
+        if (index >= parts.size()) {
+            done.complete(null);
+            return;
+        }
+
+        String msg = parts.get(index).trim();
+        int next = index + 1;
+        int delayMs = (index == 0 && quickFirst) ? (random.nextInt(300) + 200) : (random.nextInt(1000) + 500);
+        JobScheduler.getInstance().scheduleOnce("reply-typing", delayMs, () -> {
+            try {
+                send.accept(msg);
+            } catch (RuntimeException e) {
+                log.warn("回复气泡发送失败", e);
+            }
+            sendWithTypingDelay(parts, next, quickFirst, send, done);
+        });
+    }
+
+    /**
+     * 在群任务里等本条回复的气泡全部入队再返回：邮箱在此之前不取同群的下一个任务，
+     * 两条回复的气泡不会交错。任务跑在 {@link GroupSerialExecutor#executeBlocking} 的独立线程上，不占共享工作线程。
+     */
+    private static void awaitDelivery(CompletableFuture<Void> delivered) {
+        try {
+            delivered.get(MAX_DELIVERY_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("⏱️ 回复气泡 {}ms 内未发完，不再等待", MAX_DELIVERY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+            // 不会以异常完成
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.start.handler;
+
+import com.start.model.MessageEvent;
+import com.start.service.AgentService;
+import com.start.Main;
+import com.start.service.GroupSerialExecutor;
+import com.start.util.MessageUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 智能助手处理器 —— 触发词"请帮我"
+ */
+public class AgentHandler implements MessageHandler {
+
+    private final AgentService agentService;
+    private final GroupSerialExecutor groupExecutor;
+    private static final Logger logger = LoggerFactory.getLogger(AgentHandler.class);
+
+    public AgentHandler(AgentService agentService, GroupSerialExecutor groupExecutor) {
+        this.agentService = agentService;
+        this.groupExecutor = groupExecutor;
+    }
+
+    @Override
+    public boolean match(MessageEvent message) {
+        String raw = message.rawMessage().toLowerCase();
+        if (raw.contains("远行商人")) return false;
+        return raw.contains("请帮我");
+    }
+
+    @Override
+    public TriggerSpec triggers() {
+        return TriggerSpec.of().contains(TriggerSpec.Source.RAW, "请帮我");
+    }
+
+    @Override
+    public void handle(MessageEvent message, Main bot) {
+        logger.debug("触发 Agent：{}", message);
+        String input = message.rawMessage();
+        String userId = String.valueOf(message.userId());
+        String groupId = message.json().has("group_id") ? String.valueOf(message.groupId()) : null;
+        String cleanMessage = MessageUtil.extractPlainText(input);
+
+        groupExecutor.execute(groupId, () -> {
+            try {
+                String reply = agentService.process(cleanMessage, userId, groupId);
+                bot.sendReply(message, reply);
+            } catch (Exception e) {
+                bot.sendReply(message, "处理请求时出错了，请稍后再试～");
+                logger.error("AgentHandler 执行失败", e);
+            }
+        });
+    }
+}
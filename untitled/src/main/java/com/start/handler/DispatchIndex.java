@@ -0,0 +1,116 @@
+package com.start.handler;
+
+import com.start.handler.TriggerSpec.Source;
+import com.start.util.AhoCorasick;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Handler 分发索引：把各 Handler 的 {@link TriggerSpec} 编译成每个文本来源一棵字典树
+ * （精确 + 前缀）、一个 Aho-Corasick 自动机（包含）和一组正则，一次遍历得出候选 Handler 集合。
+ * <p>
+ * 候选集用 long 位图表示，第 i 位对应注册顺序中的第 i 个被索引 Handler，最多 64 个。
+ * 未声明触发条件的 Handler 始终是候选。
+ * </p>
+ */
+final class DispatchIndex {
+
+    private static final class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>();
+        long exactMask;
+        long prefixMask;
+    }
+
+    private static final class SourceIndex {
+        final TrieNode root = new TrieNode();
+        final Map<String, Long> containsMasks = new HashMap<>();
+        AhoCorasick contains = AhoCorasick.of(List.of());
+        final List<Map.Entry<Pattern, Long>> regexes = new ArrayList<>();
+
+        TrieNode insert(String text) {
+            TrieNode node = root;
+            for (int i = 0; i < text.length(); i++) {
+                node = node.children.computeIfAbsent(text.charAt(i), c -> new TrieNode());
+            }
+            return node;
+        }
+
+        long match(String text) {
+            long mask = 0;
+            TrieNode node = root;
+            int i = 0;
+            for (; i < text.length(); i++) {
+                node = node.children.get(text.charAt(i));
+                if (node == null) break;
+                mask |= node.prefixMask;
+            }
+            if (node != null && i == text.length()) mask |= node.exactMask;
+            if (!containsMasks.isEmpty()) {
+                for (String hit : contains.findAll(text)) mask |= containsMasks.get(lower(hit));
+            }
+            for (Map.Entry<Pattern, Long> r : regexes) {
+                if (r.getKey().matcher(text).find()) mask |= r.getValue();
+            }
+            return mask;
+        }
+    }
+
+    private final SourceIndex plain = new SourceIndex();
+    private final SourceIndex raw = new SourceIndex();
+    /** 未声明触发条件的 Handler */
+    private final long alwaysMask;
+
+    DispatchIndex(List<MessageHandler> handlers) {
+        if (handlers.size() > Long.SIZE) {
+            throw new IllegalStateException("分发索引最多支持 " + Long.SIZE + " 个 Handler，当前 " + handlers.size());
+        }
+        long always = 0;
+        for (int i = 0; i < handlers.size(); i++) {
+            long bit = 1L << i;
+            TriggerSpec spec = handlers.get(i).triggers();
+            if (spec == null) {
+                always |= bit;
+                continue;
+            }
+            for (TriggerSpec.Literal l : spec.exact) of(l.source()).insert(l.text().trim()).exactMask |= bit;
+            for (TriggerSpec.Literal l : spec.prefixes) {
+                String p = l.text().trim();
+                if (p.isEmpty()) always |= bit; // 空前缀等于任意文本
+                else of(l.source()).insert(p).prefixMask |= bit;
+            }
+            for (TriggerSpec.Literal l : spec.contains) {
+                if (l.text().isEmpty()) always |= bit;
+                else of(l.source()).containsMasks.merge(lower(l.text()), bit, (a, b) -> a | b);
+            }
+            for (TriggerSpec.Regex r : spec.regexes) {
+                of(r.source()).regexes.add(Map.entry(r.pattern(), bit));
+            }
+        }
+        this.alwaysMask = always;
+        for (SourceIndex s : List.of(plain, raw)) {
+            s.contains = AhoCorasick.of(new ArrayList<>(s.containsMasks.keySet()));
+        }
+    }
+
+    private SourceIndex of(Source source) {
+        return source == Source.PLAIN ? plain : raw;
+    }
+
+    /**
+     * 计算候选 Handler 位图
+     *
+     * @param plainText 去除首尾空白的纯文本
+     * @param rawText   去除首尾空白的 raw_message
+     */
+    long candidates(String plainText, String rawText) {
+        return alwaysMask | plain.match(plainText) | raw.match(rawText);
+    }
+
+    /** 与 {@link AhoCorasick} 一致的逐字符小写 */
+    private static String lower(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) sb.append(Character.toLowerCase(s.charAt(i)));
+        return sb.toString();
+    }
+}
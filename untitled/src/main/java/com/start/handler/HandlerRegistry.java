@@ -0,0 +1,187 @@
+package com.start.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.start.Main;
+import com.start.model.MessageEvent;
+import com.start.repository.EggGroupDataCenter;
+import com.start.repository.MerchantRepository;
+import com.start.service.AgentService;
+import com.start.service.BaiLianService;
+import com.start.service.GroupSerialExecutor;
+import com.start.service.MerchantApiService;
+import com.start.service.ServerAdminService;
+import com.start.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 消息处理注册中心
+ * <p>
+ * 注册完成后按各 Handler 的 {@link MessageHandler#triggers()} 建立 {@link DispatchIndex}：
+ * 每条消息只提取一次纯文本 / raw_message，一次遍历得到候选集合，再按注册顺序只对候选调用 match，
+ * 保持原有的优先级。兜底 Handler（{@link MessageHandler#isFallback()}，如 AIHandler）在最后尝试。
+ * </p>
+ */
+public class HandlerRegistry {
+    private final List<MessageHandler> handlers = new ArrayList<>();
+    private static final Logger logger = LoggerFactory.getLogger(HandlerRegistry.class);
+
+    /** 参与索引的 Handler（注册顺序），与 {@link #fallbacks} 互斥 */
+    private final List<Entry> indexed = new ArrayList<>();
+    private final List<Entry> fallbacks = new ArrayList<>();
+    private DispatchIndex index;
+
+    /** 单个 Handler 的运行统计 */
+    private static final class Entry {
+        final MessageHandler handler;
+        final String name;
+        final AtomicLong matchCalls = new AtomicLong();
+        final AtomicLong matchNanos = new AtomicLong();
+        final AtomicLong hits = new AtomicLong();
+        final LatencyHistogram handleLatency = new LatencyHistogram();
+
+        Entry(MessageHandler handler) {
+            this.handler = handler;
+            this.name = handler.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Handler 统计快照
+     *
+     * @param name           Handler 类名
+     * @param matchCalls     match 调用次数（进入候选的次数）
+     * @param hits           命中并处理的次数
+     * @param avgMatchMicros match 平均耗时（微秒）
+     * @param handle         handle 耗时分布
+     */
+    public record HandlerStats(String name, long matchCalls, long hits, double avgMatchMicros,
+                               LatencyHistogram.Snapshot handle) {}
+
+    private final EggGroupDataCenter dataCenter;
+    private final TravelingMerchantHandler merchantHandler;
+    private final MerchantRepository merchantRepo;
+    private final MerchantApiService merchantApiService;
+    private final AgentService agentService;
+
+    public HandlerRegistry(AgentService agentService, BaiLianService baiLianService, GroupSerialExecutor groupExecutor, Main bot,
+                           ServerAdminService shellService, EggGroupDataCenter dataCenter) {
+        this.agentService = agentService;
+        this.dataCenter = dataCenter;
+
+        // 远行商人：数据库 + API（建表由启动步骤调用 initStorage，与其他初始化并行）
+        MerchantRepository merchantRepo = new MerchantRepository();
+        this.merchantRepo = merchantRepo;
+        this.merchantApiService = new MerchantApiService(merchantRepo);
+        this.merchantHandler = new TravelingMerchantHandler(merchantApiService, merchantRepo, bot);
+
+        // 注入到 BaiLianService 供 Agent Tool 使用
+        baiLianService.setMerchantApiService(merchantApiService);
+        baiLianService.setMerchantRepo(merchantRepo);
+        baiLianService.setShellService(shellService);
+
+        handlers.add(new ShellHandler(shellService));
+        handlers.add(new HelloHandler());
+        handlers.add(new LuckHandler());
+        handlers.add(new JokeHandler());
+        handlers.add(new ReminderHandler());
+        handlers.add(new SanjiaoHandler());
+        handlers.add(new DailyProfessionHandler());
+        handlers.add(new DailyCpHandler());
+        handlers.add(new RankHandler());
+        handlers.add(new EggGroupSearchHandler(dataCenter));
+        handlers.add(new AgentHandler(agentService, groupExecutor));
+        handlers.add(merchantHandler);
+        handlers.add(new AIHandler(baiLianService, groupExecutor));
+
+        buildIndex();
+    }
+
+    /**
+     * 用给定的 Handler（按优先级顺序）构建，不创建任何业务服务；供基准测试和离线压测使用
+     */
+    public HandlerRegistry(List<MessageHandler> handlers) {
+        this.agentService = null;
+        this.dataCenter = null;
+        this.merchantRepo = null;
+        this.merchantApiService = null;
+        this.merchantHandler = null;
+        this.handlers.addAll(handlers);
+        buildIndex();
+    }
+
+    /** 建远行商人相关表（启动时作为独立步骤执行） */
+    public void initStorage() {
+        if (merchantRepo != null) merchantRepo.initTables();
+    }
+
+    private void buildIndex() {
+        List<MessageHandler> toIndex = new ArrayList<>();
+        for (MessageHandler h : handlers) {
+            if (h.isFallback()) {
+                fallbacks.add(new Entry(h));
+            } else {
+                indexed.add(new Entry(h));
+                toIndex.add(h);
+            }
+        }
+        this.index = new DispatchIndex(toIndex);
+        for (Entry e : indexed) {
+            TriggerSpec spec = e.handler.triggers();
+            logger.debug("分发索引: {} -> {}", e.name, spec != null ? spec.describe() : "（未声明，逐条 match）");
+        }
+        logger.info("🧭 Handler 分发索引已建立: 索引 {} 个, 兜底 {} 个", indexed.size(), fallbacks.size());
+    }
+
+    public void dispatch(JsonNode message, Main bot) {
+        dispatch(MessageEvent.of(message), bot);
+    }
+
+    public void dispatch(MessageEvent message, Main bot) {
+        String raw = message.rawMessage().trim();
+        String plain = message.plainText().trim();
+        long candidates = index.candidates(plain, raw);
+
+        for (int i = 0; i < indexed.size(); i++) {
+            if ((candidates & (1L << i)) != 0 && tryHandle(indexed.get(i), message, bot)) return;
+        }
+        for (Entry e : fallbacks) {
+            if (tryHandle(e, message, bot)) return;
+        }
+        logger.debug("未找到匹配的handle");
+    }
+
+    private boolean tryHandle(Entry e, MessageEvent message, Main bot) {
+        long start = System.nanoTime();
+        boolean matched = e.handler.match(message);
+        e.matchNanos.addAndGet(System.nanoTime() - start);
+        e.matchCalls.incrementAndGet();
+        if (!matched) return false;
+
+        e.hits.incrementAndGet();
+        long handleStart = System.nanoTime();
+        try {
+            e.handler.handle(message, bot);
+        } finally {
+            e.handleLatency.record((System.nanoTime() - handleStart) / 1_000_000);
+        }
+        return true;
+    }
+
+    /** 各 Handler 的命中次数与耗时（注册顺序，兜底在后） */
+    public List<HandlerStats> getStats() {
+        List<HandlerStats> list = new ArrayList<>(indexed.size() + fallbacks.size());
+        List<Entry> all = new ArrayList<>(indexed);
+        all.addAll(fallbacks);
+        for (Entry e : all) {
+            long calls = e.matchCalls.get();
+            list.add(new HandlerStats(e.name, calls, e.hits.get(),
+                    calls == 0 ? 0 : e.matchNanos.get() / 1000.0 / calls, e.handleLatency.snapshot()));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,38 @@
+package com.start.handler;
+
+import com.start.Main;
+import com.start.config.BotConfig;
+import com.start.model.MessageEvent;
+
+
+/**
+ * 示例：处理「你好」
+ */
+public class HelloHandler implements MessageHandler {
+    @Override
+    public boolean match(MessageEvent msg) {
+        String messageType = msg.messageType();
+        if ("private".equals(messageType)) {
+            String text = msg.plainText();
+            // 私聊忽略@，必须严格等于"你好"（去除首尾空白后）
+            return "你好".equals(text.trim());
+        } else if ("group".equals(messageType)) {
+            String text = msg.plainText();
+            long botQq = BotConfig.getBotQq();
+            // 群聊必须同时满足：1. 被 @；2. 文本严格等于"你好"（去除首尾空白后）
+            return msg.isAt(botQq) &&
+                    "你好".equals(text.trim());
+        }
+        return false;
+    }
+
+    @Override
+    public TriggerSpec triggers() {
+        return TriggerSpec.of().exact(TriggerSpec.Source.PLAIN, "你好");
+    }
+
+    @Override
+    public void handle(MessageEvent msg, Main bot) {
+        bot.sendReply(msg, "你好！我是糖果熊~");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+// src/main/java/com/start/handler/JokeHandler.java
+package com.start.handler;
+
+import com.start.model.MessageEvent;
+import com.start.service.JokeService;
+import com.start.util.RateLimiter;
+import com.start.Main; // 确保导入 Main
+
+/**
+ * 笑话处理类
+ */
+public class JokeHandler implements MessageHandler {
+
+    @Override
+    public boolean match(MessageEvent message) {
+        String rawMessage = message.rawMessage();
+        return "讲个笑话".equals(rawMessage) ||
+                "来个笑话".equals(rawMessage) ||
+                "/joke".equals(rawMessage);
+    }
+
+    @Override
+    public TriggerSpec triggers() {
+        return TriggerSpec.of().exact(TriggerSpec.Source.RAW, "讲个笑话", "来个笑话", "/joke");
+    }
+
+    @Override
+    public void handle(MessageEvent message, Main bot) {
+        long userId = message.userId();
+        long groupId = message.groupId(); // 群聊时有值，私聊为0
+        boolean isGroup = groupId != 0;
+
+
+        // 📦 获取笑话
+        String joke = JokeService.fetchRandomJoke();
+
+        // 📤 发送
+        if (isGroup) {
+            bot.sendGroupReply(groupId, joke);
+        } else {
+            bot.sendPrivateReply(userId, joke);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.start.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.start.Main;
+import com.start.model.MessageEvent;
+
+/**
+ * 旧写法 Handler 的适配基类：子类按原始 OneBot JSON 实现 match / handle，
+ * 这里把 {@link MessageEvent} 转成 JSON 交给它们。新 Handler 直接实现 {@link MessageHandler}。
+ */
+public abstract class JsonMessageHandler implements MessageHandler {
+
+    /** 判断当前消息是否由该 Handler 处理 */
+    protected abstract boolean match(JsonNode message);
+
+    /** 执行具体逻辑 */
+    protected abstract void handle(JsonNode message, Main bot);
+
+    @Override
+    public final boolean match(MessageEvent event) {
+        return match(event.json());
+    }
+
+    @Override
+    public final void handle(MessageEvent event, Main bot) {
+        handle(event.json(), bot);
+    }
+}
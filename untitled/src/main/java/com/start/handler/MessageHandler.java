@@ -0,0 +1,37 @@
+package com.start.handler;
+
+import com.start.Main;
+import com.start.model.MessageEvent;
+
+/**
+ * 消息处理器接口
+ * <p>
+ * {@link HandlerRegistry} 以 {@link MessageEvent} 调用 Handler，纯文本、@ 列表等在同一条消息内只解析一次，
+ * 实现类应直接使用事件上已解析好的字段。仍按原始 JSON 编写的旧 Handler 继承 {@link JsonMessageHandler}。
+ * </p>
+ */
+public interface MessageHandler {
+    /**
+     * 判断当前消息是否由该 Handler 处理
+     */
+    boolean match(MessageEvent event);
+
+    /**
+     * 执行具体逻辑
+     */
+    void handle(MessageEvent event, Main bot);
+
+    /**
+     * 触发声明，供 {@link HandlerRegistry} 建立分发索引；返回 null 表示未声明，每条消息都会调用 {@link #match}
+     */
+    default TriggerSpec triggers() {
+        return null;
+    }
+
+    /**
+     * 是否兜底 Handler：不参与索引，其他 Handler 都未处理时才尝试
+     */
+    default boolean isFallback() {
+        return false;
+    }
+}
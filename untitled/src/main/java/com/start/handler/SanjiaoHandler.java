@@ -0,0 +1,82 @@
+package com.start.handler;
+
+import com.start.Main;
+import com.start.model.MessageEvent;
+import com.start.service.WebScreenshotService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.Base64;
+import java.io.IOException;
+
+/**
+ * 处理三角洲（Sanjiao）相关截图命令的 Handler
+ * 触发关键词：包含 "截图" 且包含 "三角"、"sanjiao"、"kkrb" 等
+ */
+public class SanjiaoHandler implements MessageHandler {
+
+    private final WebScreenshotService screenshotService = new WebScreenshotService();
+
+    @Override
+    public boolean match(MessageEvent message) {
+        String plainText = message.plainText();
+
+        if (plainText == null) {
+            plainText = "";
+        }
+        plainText = plainText.trim();
+        boolean isExactKeyword = "特勤处".equals(plainText) || "脑机".equals(plainText) || "密码".equals(plainText);
+
+        return isExactKeyword;
+    }
+
+    @Override
+    public TriggerSpec triggers() {
+        return TriggerSpec.of().exact(TriggerSpec.Source.PLAIN, "特勤处", "脑机", "密码");
+    }
+
+    @Override
+    public void handle(MessageEvent message, Main bot) {
+        long groupId = message.groupId();
+        String plainText = message.plainText();
+
+        CompletableFuture<String> future = null;
+        String taskName = plainText;
+
+        if ("特勤处".equals(plainText)) {
+            future = screenshotService.takeScreenshot("kkrb-overview");
+        } else if ("脑机".equals(plainText)) {
+            future = screenshotService.takeScreenshot("kkrb-overview-2");
+        } else if ("密码".equals(plainText)) {
+            future = screenshotService.takeScreenshot("kkrb-overview-3");
+        }
+
+        if (future == null) {
+            return;
+        }
+
+        final String finalTaskName = taskName;
+        future.thenCompose(imagePath -> {
+            try {
+                byte[] imageBytes = screenshotService.readAndCleanupImage(imagePath);
+                String base64 = Base64.getEncoder().encodeToString(imageBytes);
+                String cqImage = "[CQ:image,file=base64://" + base64 + "]";
+                bot.sendGroupReply(groupId, cqImage);
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                throw new RuntimeException("读取截图文件失败", e);
+            }
+        }).exceptionally(ex -> {
+            String errorMsg = "❌ " + finalTaskName + "截图失败";
+            Throwable cause = ex.getCause();
+            if (cause != null && cause.getMessage() != null) {
+                String msg = cause.getMessage();
+                if (msg.length() > 100) {
+                    msg = msg.substring(0,100) + "...";
+                }
+                errorMsg += "：" + msg;
+            }
+            bot.sendGroupReply(groupId, errorMsg);
+            return null;
+        });
+    }
+}
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.start.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Handler 的触发声明，由 {@link HandlerRegistry} 编译进分发索引。
+ * <p>
+ * 声明只用于筛选候选：消息文本命中任一声明时才会调用该 Handler 的
+ * {@link MessageHandler#match}，最终是否处理仍由 match 决定（可以有额外条件，如必须 @ 机器人）。
+ * 因此声明必须是 match 条件的超集，宁宽勿窄。
+ * </p>
+ * 匹配文本均已去除首尾空白；{@link Source#PLAIN} 为消息段拼接的纯文本，{@link Source#RAW} 为 raw_message（含 CQ 码）。
+ */
+public final class TriggerSpec {
+
+    /** 匹配的文本来源 */
+    public enum Source { PLAIN, RAW }
+
+    record Literal(Source source, String text) {}
+
+    record Regex(Source source, Pattern pattern) {}
+
+    final List<Literal> exact = new ArrayList<>();
+    final List<Literal> prefixes = new ArrayList<>();
+    /** 子串匹配（忽略大小写） */
+    final List<Literal> contains = new ArrayList<>();
+    /** 正则（find 语义） */
+    final List<Regex> regexes = new ArrayList<>();
+
+    private TriggerSpec() {}
+
+    public static TriggerSpec of() {
+        return new TriggerSpec();
+    }
+
+    /** 文本完全等于其中之一 */
+    public TriggerSpec exact(Source source, String... texts) {
+        return exact(source, List.of(texts));
+    }
+
+    public TriggerSpec exact(Source source, Collection<String> texts) {
+        for (String t : texts) exact.add(new Literal(source, t));
+        return this;
+    }
+
+    /** 文本以其中之一开头 */
+    public TriggerSpec prefix(Source source, String... texts) {
+        for (String t : texts) prefixes.add(new Literal(source, t));
+        return this;
+    }
+
+    /** 文本包含其中之一（忽略大小写） */
+    public TriggerSpec contains(Source source, String... texts) {
+        for (String t : texts) contains.add(new Literal(source, t));
+        return this;
+    }
+
+    /** 文本中能找到该正则 */
+    public TriggerSpec regex(Source source, Pattern pattern) {
+        regexes.add(new Regex(source, pattern));
+        return this;
+    }
+
+    /** 声明的全部字面量（用于日志） */
+    public List<String> describe() {
+        List<String> list = new ArrayList<>();
+        exact.forEach(l -> list.add("=" + l.text()));
+        prefixes.forEach(l -> list.add(l.text() + "*"));
+        contains.forEach(l -> list.add("*" + l.text() + "*"));
+        regexes.forEach(r -> list.add("/" + r.pattern().pattern() + "/"));
+        return Collections.unmodifiableList(list);
+    }
+}
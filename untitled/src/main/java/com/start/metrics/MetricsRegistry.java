@@ -0,0 +1,208 @@
+package com.start.metrics;
+
+import com.start.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内指标注册中心，按 Prometheus 文本格式（0.0.4）导出。
+ * <p>
+ * 两类来源：
+ * <ul>
+ *     <li>自有指标：{@link #counter} / {@link #histogram} 按名字 + 标签返回同一个实例，调用方直接累加或记录</li>
+ *     <li>采集器：{@link #register} 注册的 {@link Collector} 在抓取时把已有的统计（各组件的 getStats）
+ *         转成样本，组件本身不需要依赖这里</li>
+ * </ul>
+ * 直方图沿用 {@link LatencyHistogram} 的毫秒桶，导出时换算成秒（名字应以 {@code _seconds} 结尾）。
+ * 标签以 key, value 交替传入。
+ * 采集器抛异常时跳过它本次的样本，并按采集器名累加 {@code bot_metrics_collector_errors_total}。
+ * </p>
+ */
+public class MetricsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /** 单调递增计数 */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void inc() {
+            value.increment();
+        }
+
+        public void inc(long n) {
+            value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /** 抓取时产出样本 */
+    @FunctionalInterface
+    public interface Collector {
+        void collect(Sink sink);
+    }
+
+    /** 样本输出 */
+    public interface Sink {
+        void counter(String name, String help, double value, String... labels);
+
+        void gauge(String name, String help, double value, String... labels);
+
+        void histogram(String name, String help, LatencyHistogram.Snapshot snapshot, String... labels);
+    }
+
+    private enum Type { COUNTER, HISTOGRAM }
+
+    private record Family(Type type, String help, Map<List<String>, Object> children) {}
+
+    private record NamedCollector(String name, Collector collector) {}
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    private final List<NamedCollector> collectors = new CopyOnWriteArrayList<>();
+
+    // ================== 自有指标 ==================
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) child(name, help, Type.COUNTER, labels);
+    }
+
+    /** 毫秒直方图，导出为秒 */
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) child(name, help, Type.HISTOGRAM, labels);
+    }
+
+    private Object child(String name, String help, Type type, String[] labels) {
+        Family family = families.computeIfAbsent(name, n -> new Family(type, help, new ConcurrentHashMap<>()));
+        if (family.type != type) {
+            throw new IllegalArgumentException("指标 " + name + " 已注册为 " + family.type);
+        }
+        return family.children.computeIfAbsent(Arrays.asList(labels),
+                k -> type == Type.COUNTER ? new Counter() : new LatencyHistogram());
+    }
+
+    /** @param name 采集器名，采集失败计数的 collector 标签 */
+    public void register(String name, Collector collector) {
+        collectors.add(new NamedCollector(name, collector));
+    }
+
+    // ================== 导出 ==================
+
+    /** 生成 Prometheus 文本格式 */
+    public String scrape() {
+        TextSink sink = new TextSink();
+        // 先跑采集器，本次的失败计数能出现在本次输出里
+        for (NamedCollector c : collectors) {
+            try {
+                c.collector().collect(sink);
+            } catch (Exception e) {
+                // 单个采集器失败不影响其他指标
+                counter("bot_metrics_collector_errors_total", "采集器抛出异常的次数", "collector", c.name()).inc();
+                logger.warn("指标采集器 {} 异常", c.name(), e);
+            }
+        }
+        families.forEach((name, family) -> family.children.forEach((labels, value) -> {
+            String[] l = labels.toArray(new String[0]);
+            if (value instanceof Counter c) {
+                sink.counter(name, family.help, c.get(), l);
+            } else {
+                sink.histogram(name, family.help, ((LatencyHistogram) value).snapshot(), l);
+            }
+        }));
+        return sink.render();
+    }
+
+    /** 按指标名分组输出，同名指标只写一次 HELP / TYPE */
+    private static final class TextSink implements Sink {
+        private static final long[] BOUNDS = LatencyHistogram.bucketBounds();
+
+        private record Block(String type, String help, List<String> lines) {}
+
+        private final Map<String, Block> blocks = new TreeMap<>();
+
+        private List<String> lines(String name, String type, String help) {
+            return blocks.computeIfAbsent(name, n -> new Block(type, help, new ArrayList<>())).lines;
+        }
+
+        @Override
+        public void counter(String name, String help, double value, String... labels) {
+            lines(name, "counter", help).add(name + labels(labels, null) + " " + format(value));
+        }
+
+        @Override
+        public void gauge(String name, String help, double value, String... labels) {
+            lines(name, "gauge", help).add(name + labels(labels, null) + " " + format(value));
+        }
+
+        @Override
+        public void histogram(String name, String help, LatencyHistogram.Snapshot s, String... labels) {
+            List<String> out = lines(name, "histogram", help);
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += s.buckets()[i];
+                out.add(name + "_bucket" + labels(labels, format(BOUNDS[i] / 1000.0)) + " " + cumulative);
+            }
+            out.add(name + "_bucket" + labels(labels, "+Inf") + " " + s.count());
+            out.add(name + "_sum" + labels(labels, null) + " " + format(s.sumMs() / 1000.0));
+            out.add(name + "_count" + labels(labels, null) + " " + s.count());
+        }
+
+        String render() {
+            StringBuilder sb = new StringBuilder(4096);
+            blocks.forEach((name, b) -> {
+                sb.append("# HELP ").append(name).append(' ').append(escapeHelp(b.help)).append('\n');
+                sb.append("# TYPE ").append(name).append(' ').append(b.type).append('\n');
+                for (String line : b.lines) sb.append(line).append('\n');
+            });
+            return sb.toString();
+        }
+
+        private static String labels(String[] kv, String le) {
+            if (kv.length == 0 && le == null) return "";
+            StringBuilder sb = new StringBuilder("{");
+            for (int i = 0; i + 1 < kv.length; i += 2) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append(kv[i]).append("=\"").append(escapeLabel(kv[i + 1])).append('"');
+            }
+            if (le != null) {
+                if (sb.length() > 1) sb.append(',');
+                sb.append("le=\"").append(le).append('"');
+            }
+            return sb.append('}').toString();
+        }
+
+        private static String format(double v) {
+            if (v == Math.rint(v) && !Double.isInfinite(v)) return Long.toString((long) v);
+            return BigDecimal.valueOf(v).round(MathContext.DECIMAL64)
+                    .stripTrailingZeros().toPlainString();
+        }
+
+        private static String escapeLabel(String v) {
+            if (v == null) return "";
+            return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+
+        private static String escapeHelp(String v) {
+            return v == null ? "" : v.replace("\\", "\\\\").replace("\n", "\\n");
+        }
+    }
+}
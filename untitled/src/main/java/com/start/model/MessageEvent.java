@@ -0,0 +1,165 @@
+package com.start.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.start.util.MessageUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一条 OneBot 消息事件的不可变视图，每帧解析一次，在 Main、HandlerRegistry 和各 Handler 之间共享。
+ * <p>
+ * 基础字段（类型、群号、QQ、raw_message 等）构造时读取；纯文本、@ 列表、回复 id、显示名、
+ * 图片等需要遍历消息段的字段首次访问时计算并缓存，之后直接返回。
+ * 缓存字段的计算是幂等的，并发首次访问最多重复计算一次，结果一致，因此不加锁。
+ * </p>
+ * 原始 {@link JsonNode} 通过 {@link #json()} 保留，供仍使用 JsonNode 的代码（如 {@code Main.sendReply}）使用，
+ * 调用方不应修改它。
+ */
+public final class MessageEvent {
+
+    private final JsonNode json;
+    private final String postType;
+    private final String messageType;
+    private final String subType;
+    private final long messageId;
+    private final long selfId;
+    private final long userId;
+    private final long groupId;
+    private final long time;
+    private final String rawMessage;
+
+    // 惰性计算并缓存
+    private volatile String plainText;
+    private volatile List<Long> ats;
+    private volatile Long replyId;
+    private volatile boolean replyIdResolved;
+    private volatile String displayName;
+    private volatile List<String> images;
+
+    private MessageEvent(JsonNode json) {
+        this.json = json;
+        this.postType = json.path("post_type").asText();
+        this.messageType = json.path("message_type").asText();
+        this.subType = json.path("sub_type").asText();
+        this.messageId = json.path("message_id").asLong();
+        this.selfId = json.path("self_id").asLong();
+        this.userId = json.path("user_id").asLong();
+        this.groupId = json.path("group_id").asLong();
+        this.time = json.path("time").asLong();
+        this.rawMessage = json.path("raw_message").asText();
+    }
+
+    public static MessageEvent of(JsonNode json) {
+        return new MessageEvent(json);
+    }
+
+    /** 原始事件树（只读） */
+    public JsonNode json() { return json; }
+
+    public String postType() { return postType; }
+
+    public String messageType() { return messageType; }
+
+    public String subType() { return subType; }
+
+    public boolean isGroup() { return "group".equals(messageType); }
+
+    public boolean isPrivate() { return "private".equals(messageType); }
+
+    public long messageId() { return messageId; }
+
+    public long selfId() { return selfId; }
+
+    public long userId() { return userId; }
+
+    /** 群号，私聊为 0 */
+    public long groupId() { return groupId; }
+
+    /** 事件时间（秒） */
+    public long time() { return time; }
+
+    /** raw_message 原文（含 CQ 码，未去空白） */
+    public String rawMessage() { return rawMessage; }
+
+    /** 消息段中的纯文本拼接（未去空白），同 {@link MessageUtil#extractPlainText(JsonNode)} */
+    public String plainText() {
+        String t = plainText;
+        if (t == null) {
+            t = MessageUtil.extractPlainText(json.path("message"));
+            plainText = t;
+        }
+        return t;
+    }
+
+    /** 被 @ 的 QQ 列表（不可修改） */
+    public List<Long> ats() {
+        List<Long> a = ats;
+        if (a == null) {
+            a = Collections.unmodifiableList(MessageUtil.extractAts(json.path("message")));
+            ats = a;
+        }
+        return a;
+    }
+
+    public boolean isAt(long qq) {
+        return ats().contains(qq);
+    }
+
+    /** 引用回复的消息 id，无引用返回 null */
+    public Long replyId() {
+        if (!replyIdResolved) {
+            replyId = MessageUtil.extractReplyId(json.path("message"));
+            replyIdResolved = true;
+        }
+        return replyId;
+    }
+
+    /** 发送者 QQ 昵称 */
+    public String nickname() {
+        return json.path("sender").path("nickname").asText();
+    }
+
+    /** 发送者群名片（可能为空） */
+    public String card() {
+        return json.path("sender").path("card").asText();
+    }
+
+    /** 显示名：群名片优先，否则 QQ 昵称 */
+    public String displayName() {
+        String d = displayName;
+        if (d == null) {
+            String card = card();
+            d = !card.isEmpty() ? card : nickname();
+            displayName = d;
+        }
+        return d;
+    }
+
+    /** 图片消息段的地址（优先 url，否则 file），不可修改 */
+    public List<String> images() {
+        List<String> list = images;
+        if (list == null) {
+            List<String> found = new ArrayList<>();
+            JsonNode message = json.path("message");
+            if (message.isArray()) {
+                for (JsonNode seg : message) {
+                    if (!"image".equals(seg.path("type").asText())) continue;
+                    JsonNode data = seg.path("data");
+                    String url = data.path("url").asText();
+                    if (url.isEmpty()) url = data.path("file").asText();
+                    if (!url.isEmpty()) found.add(url);
+                }
+            }
+            list = Collections.unmodifiableList(found);
+            images = list;
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageEvent{" + messageType + ", group=" + groupId + ", user=" + userId + ", raw=" + rawMessage + '}';
+    }
+}
@@ -0,0 +1,268 @@
+package com.start.repository;
+
+import com.start.config.BotConfig;
+import com.start.config.DatabaseConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 群消息统计：记录每条群消息，支持按日/周/总计查询排行。
+ * <p>
+ * 计数采用写后合并（write-behind）：{@link #recordMessage} 只在内存中按 (群, 用户, 日期) 累加，
+ * 由后台线程每隔 {@code stats.flush-interval-ms} 或积压达到 {@code stats.flush-batch-size} 个键时
+ * 以一条多行 upsert 批量写入，进程退出时再刷一次。
+ * {@link #getMessageRank} 会把尚未落库的增量合并进结果，排行始终精确。
+ * 写库不持有 flushLock：锁只保护 pending → inFlight 的交接和排行取增量快照，
+ * 排行查询与提交撞上时（按 commitSeq 判断）重新计算，不会因为写库而阻塞。
+ * </p>
+ */
+public class GroupMessageStatsRepository {
+    private static final Logger logger = LoggerFactory.getLogger(GroupMessageStatsRepository.class);
+
+    /** 单条 INSERT 最多携带的行数，避免超过 max_allowed_packet */
+    private static final int MAX_ROWS_PER_STATEMENT = 500;
+    private static final int RANK_LIMIT = 15;
+
+    private record CounterKey(String groupId, String userId, LocalDate date) {}
+
+    /** 未落库的增量；ConcurrentHashMap 按桶加锁，merge/remove 原子 */
+    private static final ConcurrentHashMap<CounterKey, Long> pending = new ConcurrentHashMap<>();
+    /** 正在写库、尚未提交的增量（排行查询也要算上） */
+    private static volatile Map<CounterKey, Long> inFlight = Map.of();
+    /** 保护 pending → inFlight 的交接与排行读取增量快照，保证同一增量不会被重复或遗漏计算；不跨数据库 IO */
+    private static final Object flushLock = new Object();
+    /** 串行化刷盘本身（定时刷盘与退出时的刷盘） */
+    private static final Object writeLock = new Object();
+    /** 提交开始时加一（奇数），inFlight 清空后再加一（偶数）；排行查询期间变化说明库内数据与快照可能不一致 */
+    private static final AtomicLong commitSeq = new AtomicLong();
+    /** 排行查询与提交撞上时的最大重算次数 */
+    private static final int RANK_RETRIES = 5;
+    private static final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private static final AtomicInteger pendingKeys = new AtomicInteger();
+
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "MessageStats-Flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        long interval = Math.max(200, BotConfig.getStatsFlushIntervalMs());
+        flusher.scheduleWithFixedDelay(GroupMessageStatsRepository::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            flusher.shutdownNow();
+            flushQuietly();
+        }, "MessageStats-ShutdownFlush"));
+    }
+
+    /** 收到一条群消息时调用，当天计数 +1（只写内存） */
+    public static void recordMessage(String groupId, String userId) {
+        CounterKey key = new CounterKey(groupId, userId, LocalDate.now());
+        if (pending.merge(key, 1L, Long::sum) == 1L
+                && pendingKeys.incrementAndGet() >= BotConfig.getStatsFlushBatchSize()
+                && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    /** 立即把内存中的增量写入数据库 */
+    public static void flush() {
+        synchronized (writeLock) {
+            Map<CounterKey, Long> batch = new HashMap<>();
+            synchronized (flushLock) {
+                if (pending.isEmpty()) return;
+                for (CounterKey key : pending.keySet()) {
+                    Long delta = pending.remove(key);
+                    if (delta != null) {
+                        batch.put(key, delta);
+                        pendingKeys.decrementAndGet();
+                    }
+                }
+                if (batch.isEmpty()) return;
+                inFlight = batch;
+            }
+
+            boolean ok = false;
+            try {
+                writeBatch(batch);
+                ok = true;
+                logger.debug("📊 消息统计已落库: {} 行", batch.size());
+            } catch (SQLException e) {
+                logger.warn("批量写入消息统计失败，{} 行增量保留到下次刷盘", batch.size(), e);
+            } finally {
+                synchronized (flushLock) {
+                    if (!ok) {
+                        // 写失败：增量放回去，下次再刷
+                        batch.forEach((k, v) -> {
+                            if (pending.merge(k, v, Long::sum).equals(v)) pendingKeys.incrementAndGet();
+                        });
+                    }
+                    inFlight = Map.of();
+                    if ((commitSeq.get() & 1) == 1) commitSeq.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("消息统计刷盘异常", e);
+        }
+    }
+
+    private static void writeBatch(Map<CounterKey, Long> batch) throws SQLException {
+        List<Map.Entry<CounterKey, Long>> rows = new ArrayList<>(batch.entrySet());
+        try (Connection c = DatabaseConfig.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                for (int from = 0; from < rows.size(); from += MAX_ROWS_PER_STATEMENT) {
+                    List<Map.Entry<CounterKey, Long>> chunk =
+                            rows.subList(from, Math.min(rows.size(), from + MAX_ROWS_PER_STATEMENT));
+                    StringBuilder sql = new StringBuilder(
+                            "INSERT INTO group_message_stats (group_id, user_id, msg_date, message_count) VALUES ");
+                    for (int i = 0; i < chunk.size(); i++) {
+                        sql.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                    }
+                    sql.append(" ON DUPLICATE KEY UPDATE message_count = message_count + VALUES(message_count)");
+
+                    try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                        int idx = 1;
+                        for (Map.Entry<CounterKey, Long> row : chunk) {
+                            ps.setString(idx++, row.getKey().groupId());
+                            ps.setString(idx++, row.getKey().userId());
+                            ps.setDate(idx++, Date.valueOf(row.getKey().date()));
+                            ps.setLong(idx++, row.getValue());
+                        }
+                        ps.executeUpdate();
+                    }
+                }
+                // 从这里起库内可能已包含本批，排行查询据此重算
+                commitSeq.incrementAndGet();
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /** 按时间维度查询发言排行（合并未落库增量） */
+    public static List<Map.Entry<String, Integer>> getMessageRank(String groupId, String period) {
+        LocalDate today = LocalDate.now();
+        LocalDate since = switch (period) {
+            case "today" -> today;
+            case "week" -> today.minusDays(7);
+            default -> null; // total
+        };
+        String dateFilter = since == null ? "" : "AND msg_date >= ? ";
+
+        List<Map.Entry<String, Integer>> result = List.of();
+        for (int attempt = 0; attempt < RANK_RETRIES; attempt++) {
+            long seq = commitSeq.get();
+            if ((seq & 1) == 1 && attempt < RANK_RETRIES - 1) {
+                // 正在提交，稍等再取快照
+                try { Thread.sleep(2); } catch (InterruptedException e) { Thread.currentThread().interrupt(); break; }
+                continue;
+            }
+            result = computeRank(groupId, since, dateFilter);
+            if (commitSeq.get() == seq) break;
+        }
+        return result;
+    }
+
+    private static List<Map.Entry<String, Integer>> computeRank(String groupId, LocalDate since, String dateFilter) {
+        // 本群未落库增量
+        Map<String, Long> deltas = new HashMap<>();
+        synchronized (flushLock) {
+            for (Map<CounterKey, Long> source : List.of(pending, inFlight)) {
+                source.forEach((k, v) -> {
+                    if (k.groupId().equals(groupId) && (since == null || !k.date().isBefore(since))) {
+                        deltas.merge(k.userId(), v, Long::sum);
+                    }
+                });
+            }
+        }
+
+        Map<String, Long> totals = new HashMap<>();
+        try (Connection c = DatabaseConfig.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "SELECT user_id, SUM(message_count) AS total FROM group_message_stats " +
+                    "WHERE group_id = ? " + dateFilter +
+                    "GROUP BY user_id ORDER BY total DESC LIMIT " + RANK_LIMIT)) {
+                ps.setString(1, groupId);
+                if (since != null) ps.setDate(2, Date.valueOf(since));
+                readTotals(ps, totals);
+            }
+
+            // 有增量但不在前 15 的用户，补查他们的库内总数，保证合并后排名精确
+            List<String> missing = deltas.keySet().stream().filter(u -> !totals.containsKey(u)).toList();
+            if (!missing.isEmpty()) {
+                String placeholders = String.join(", ", Collections.nCopies(missing.size(), "?"));
+                try (PreparedStatement ps = c.prepareStatement(
+                        "SELECT user_id, SUM(message_count) AS total FROM group_message_stats " +
+                        "WHERE group_id = ? " + dateFilter +
+                        "AND user_id IN (" + placeholders + ") GROUP BY user_id")) {
+                    int idx = 1;
+                    ps.setString(idx++, groupId);
+                    if (since != null) ps.setDate(idx++, Date.valueOf(since));
+                    for (String uid : missing) ps.setString(idx++, uid);
+                    readTotals(ps, totals);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("查询发言排行失败", e);
+        }
+
+        deltas.forEach((uid, d) -> totals.merge(uid, d, Long::sum));
+        return totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(RANK_LIMIT)
+                .map(e -> Map.entry(e.getKey(), (int) Math.min(Integer.MAX_VALUE, e.getValue())))
+                .toList();
+    }
+
+    private static void readTotals(PreparedStatement ps, Map<String, Long> totals) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                totals.put(rs.getString("user_id"), rs.getLong("total"));
+            }
+        }
+    }
+
+    /** 当前未落库的 (群, 用户, 日期) 键数 */
+    public static int getPendingCount() {
+        return pending.size();
+    }
+
+    /** 获取时间描述 */
+    public static String getPeriodLabel(String period) {
+        return switch (period) {
+            case "today" -> "今日";
+            case "week" -> "本周";
+            default -> "总";
+        };
+    }
+}
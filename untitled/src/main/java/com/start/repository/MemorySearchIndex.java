@@ -0,0 +1,319 @@
+package com.start.repository;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.seg.common.Term;
+import com.start.model.LongTermMemory;
+import com.start.scheduler.JobScheduler;
+import com.start.util.InvertedIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 长期记忆的本地全文检索索引。
+ * <p>
+ * 记忆内容和 keywords 列用 HanLP 分词后写入按群划分的 {@link InvertedIndex}（私聊记忆归到空群号），
+ * 多关键词查询一次遍历倒排表完成：先按 BM25 取候选，再综合重要性、时间衰减和召回次数排序。
+ * 只索引未触发（triggered = FALSE）的记忆，与原先 SQL 的过滤条件一致。
+ * </p>
+ * 全进程共享一份索引（{@link #get}），首次使用时在后台线程全量加载；加载完成前
+ * {@link #isReady()} 为 false，调用方应退回 SQL 查询。加载期间的写入会在加载完成后重放。
+ * 加载失败时由同一实例按退避重试（仓库持有的引用一直有效）；两次尝试之间的写入直接丢弃，
+ * 下一次全量加载会从库里读到它们。
+ */
+public class MemorySearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(MemorySearchIndex.class);
+
+    /** BM25 召回的候选数（至少为 limit 的若干倍），候选再按综合分排序 */
+    private static final int MIN_CANDIDATES = 50;
+    private static final int CANDIDATE_FACTOR = 5;
+
+    // 综合排序权重：相关度（归一化到 0~1）为主，重要性、新近度、召回次数做加成
+    private static final double W_RELEVANCE = 1.0;
+    private static final double W_IMPORTANCE = 0.6;
+    private static final double W_RECENCY = 0.4;
+    private static final double W_RECALL = 0.2;
+    /** 新近度按天指数衰减的时间常数 */
+    private static final double RECENCY_DAYS = 30.0;
+    /** 加载失败后的重试间隔：从 5 秒起翻倍，最长 10 分钟 */
+    private static final long RETRY_BASE_MS = 5_000;
+    private static final long RETRY_MAX_MS = 600_000;
+
+    private static volatile MemorySearchIndex instance;
+
+    private final DataSource dataSource;
+    /** 群号（私聊为空串）→ 该群记忆的倒排索引 */
+    private final Map<String, InvertedIndex<LongTermMemory>> byGroup = new HashMap<>();
+    /** id → 记忆，用于按 id 更新/删除 */
+    private final Map<Long, LongTermMemory> byId = new HashMap<>();
+    private volatile boolean ready;
+    /** 加载期间发生的写入，加载完成后按顺序重放 */
+    private final List<Runnable> pendingOps = new ArrayList<>();
+    /** 是否有加载正在进行（this 保护）；首次加载在创建后立即开始 */
+    private boolean loading = true;
+    /** 连续失败的加载次数，决定下次重试的间隔 */
+    private int failedLoads;
+
+    private MemorySearchIndex(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /** 获取共享索引，首次调用时启动后台加载 */
+    public static MemorySearchIndex get(DataSource dataSource) {
+        MemorySearchIndex idx = instance;
+        if (idx == null) {
+            synchronized (MemorySearchIndex.class) {
+                idx = instance;
+                if (idx == null) {
+                    idx = new MemorySearchIndex(dataSource);
+                    instance = idx;
+                    MemorySearchIndex loading = idx;
+                    Thread t = new Thread(loading::load, "LTM-Index-Loader");
+                    t.setDaemon(true);
+                    t.start();
+                }
+            }
+        }
+        return idx;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void load() {
+        synchronized (this) {
+            loading = true;
+        }
+        long start = System.currentTimeMillis();
+        String sql = "SELECT * FROM long_term_memories WHERE triggered = FALSE";
+        List<LongTermMemory> rows = new ArrayList<>();
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) rows.add(LongTermMemoryRepository.mapRow(rs));
+        } catch (SQLException e) {
+            long delay;
+            synchronized (this) {
+                loading = false;
+                pendingOps.clear();
+                delay = Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(failedLoads++, 10));
+            }
+            logger.error("长期记忆索引加载失败，{} 秒后重试，期间继续使用 SQL 检索", delay / 1000, e);
+            JobScheduler.getInstance().scheduleOnce("ltm-index-load", JobScheduler.Lane.BACKGROUND, delay, this::load);
+            return;
+        }
+
+        synchronized (this) {
+            for (LongTermMemory m : rows) putLocked(m);
+            for (Runnable op : pendingOps) op.run();
+            pendingOps.clear();
+            loading = false;
+            ready = true;
+        }
+        logger.info("🧠 长期记忆索引加载完成：{} 条，{} 个群，耗时 {}ms",
+                byId.size(), byGroup.size(), System.currentTimeMillis() - start);
+    }
+
+    // ================== 同步写入 ==================
+
+    /** 新增（或替换）一条记忆；已触发的记忆不入索引 */
+    public void add(LongTermMemory m) {
+        if (m == null || m.getId() == null) return;
+        LongTermMemory copy = copyOf(m);
+        if (copy.getCreatedAt() == null) copy.setCreatedAt(LocalDateTime.now());
+        mutate(() -> {
+            if (copy.isTriggered()) removeLocked(copy.getId());
+            else putLocked(copy);
+        });
+    }
+
+    public void remove(long id) {
+        mutate(() -> removeLocked(id));
+    }
+
+    /** 召回后更新计数和时间（影响后续排序） */
+    public void markRecalled(long id) {
+        mutate(() -> {
+            LongTermMemory m = byId.get(id);
+            if (m != null) {
+                m.setRecallCount(m.getRecallCount() + 1);
+                m.setLastRecalled(LocalDateTime.now());
+            }
+        });
+    }
+
+    /** 已加载时直接应用；加载中先记下，加载完成后重放；没有加载在进行（等待重试）时丢弃 */
+    private synchronized void mutate(Runnable op) {
+        if (ready) op.run();
+        else if (loading) pendingOps.add(op);
+    }
+
+    private void putLocked(LongTermMemory m) {
+        removeLocked(m.getId());
+        byId.put(m.getId(), m);
+        byGroup.computeIfAbsent(groupKey(m.getGroupId()), k -> new InvertedIndex<>())
+                .put(m.getId(), m, documentTerms(m));
+    }
+
+    private void removeLocked(long id) {
+        LongTermMemory old = byId.remove(id);
+        if (old == null) return;
+        InvertedIndex<LongTermMemory> idx = byGroup.get(groupKey(old.getGroupId()));
+        if (idx != null) idx.remove(id);
+    }
+
+    // ================== 检索 ==================
+
+    /**
+     * 多关键词检索。
+     *
+     * @param userId   只返回该用户的记忆；为 null 时不限用户
+     * @param groupId  群号，为空表示私聊记忆
+     * @param keywords 查询关键词（会按同样的规则分词）
+     * @param limit    返回条数上限
+     * @return 按综合分降序的记忆副本
+     */
+    public List<LongTermMemory> search(String userId, String groupId, Collection<String> keywords, int limit) {
+        if (limit <= 0) return List.of();
+        List<String> terms = new ArrayList<>();
+        for (String kw : keywords) {
+            if (kw != null && !kw.isBlank()) tokenize(kw, terms);
+        }
+        if (terms.isEmpty()) return List.of();
+
+        InvertedIndex<LongTermMemory> idx;
+        synchronized (this) {
+            idx = byGroup.get(groupKey(groupId));
+        }
+        if (idx == null) return List.of();
+
+        int candidates = Math.max(MIN_CANDIDATES, limit * CANDIDATE_FACTOR);
+        List<InvertedIndex.Hit<LongTermMemory>> hits = idx.search(terms, candidates,
+                userId == null ? null : m -> userId.equals(m.getUserId()));
+        if (hits.isEmpty()) return List.of();
+
+        double maxScore = hits.get(0).score();
+        LocalDateTime now = LocalDateTime.now();
+        List<Map.Entry<Double, LongTermMemory>> ranked = new ArrayList<>(hits.size());
+        for (InvertedIndex.Hit<LongTermMemory> hit : hits) {
+            LongTermMemory m = hit.doc();
+            double score = rank(m, maxScore > 0 ? hit.score() / maxScore : 0, now);
+            ranked.add(Map.entry(score, m));
+        }
+        ranked.sort((a, b) -> {
+            int c = Double.compare(b.getKey(), a.getKey());
+            return c != 0 ? c : Long.compare(b.getValue().getId(), a.getValue().getId());
+        });
+
+        List<LongTermMemory> result = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            result.add(copyOf(ranked.get(i).getValue()));
+        }
+        return result;
+    }
+
+    private static double rank(LongTermMemory m, double relevance, LocalDateTime now) {
+        double importance = Math.max(1, Math.min(5, m.getImportance())) / 5.0;
+        double recency = 0;
+        LocalDateTime t = m.getLastRecalled() != null && m.getCreatedAt() != null
+                && m.getLastRecalled().isAfter(m.getCreatedAt()) ? m.getLastRecalled() : m.getCreatedAt();
+        if (t != null) {
+            double days = Math.max(0, Duration.between(t, now).toMinutes() / 1440.0);
+            recency = Math.exp(-days / RECENCY_DAYS);
+        }
+        double recall = Math.min(1.0, Math.log1p(m.getRecallCount()) / Math.log(11));
+        return W_RELEVANCE * relevance + W_IMPORTANCE * importance + W_RECENCY * recency + W_RECALL * recall;
+    }
+
+    // ================== 分词 ==================
+
+    /**
+     * 文档词项：分词结果 + keywords 列；多字中文词再拆出单字，
+     * 使“猫”这类单字查询仍能命中被分成“猫叫”的内容（接近原先 LIKE 的子串语义）。
+     */
+    private static List<String> documentTerms(LongTermMemory m) {
+        List<String> terms = new ArrayList<>();
+        tokenize(m.getContent(), terms);
+        if (m.getKeywords() != null) {
+            for (String kw : m.getKeywords().split("[,，、\\s]+")) {
+                tokenize(kw, terms);
+            }
+        }
+        int n = terms.size();
+        for (int i = 0; i < n; i++) {
+            String w = terms.get(i);
+            if (w.length() < 2 || w.length() > 4 || !isCjk(w)) continue;
+            for (int j = 0; j < w.length(); j++) terms.add(String.valueOf(w.charAt(j)));
+        }
+        return terms;
+    }
+
+    private static boolean isCjk(String w) {
+        for (int i = 0; i < w.length(); i++) {
+            if (Character.UnicodeScript.of(w.charAt(i)) != Character.UnicodeScript.HAN) return false;
+        }
+        return true;
+    }
+
+    /** HanLP 分词，去掉标点和空白，英文转小写；多字关键词额外保留原词，避免被切开后匹配不到 */
+    private static void tokenize(String text, List<String> out) {
+        if (text == null || text.isBlank()) return;
+        String trimmed = text.trim().toLowerCase(Locale.ROOT);
+        List<Term> terms;
+        try {
+            terms = HanLP.segment(trimmed);
+        } catch (Exception e) {
+            out.add(trimmed);
+            return;
+        }
+        int before = out.size();
+        for (Term t : terms) {
+            String w = t.word.trim();
+            if (!w.isEmpty() && hasLetterOrDigit(w)) out.add(w);
+        }
+        if (out.size() - before > 1 && trimmed.length() <= 8 && !trimmed.contains(" ")) {
+            out.add(trimmed);
+        }
+    }
+
+    private static boolean hasLetterOrDigit(String w) {
+        for (int i = 0; i < w.length(); i++) {
+            if (Character.isLetterOrDigit(w.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private static String groupKey(String groupId) {
+        return groupId == null || groupId.isBlank() ? "" : groupId;
+    }
+
+    private static LongTermMemory copyOf(LongTermMemory m) {
+        LongTermMemory c = new LongTermMemory();
+        c.setId(m.getId());
+        c.setUserId(m.getUserId());
+        c.setGroupId(m.getGroupId());
+        c.setSourceMessageId(m.getSourceMessageId());
+        c.setContent(m.getContent());
+        c.setMemoryType(m.getMemoryType());
+        c.setKeywords(m.getKeywords());
+        c.setImportance(m.getImportance());
+        c.setLastRecalled(m.getLastRecalled());
+        c.setRecallCount(m.getRecallCount());
+        c.setTriggerAt(m.getTriggerAt());
+        c.setTriggered(m.isTriggered());
+        c.setCreatedAt(m.getCreatedAt());
+        c.setUpdatedAt(m.getUpdatedAt());
+        return c;
+    }
+
+    /** 已索引的记忆条数 */
+    public synchronized int size() {
+        return byId.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.start.repository;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDateTime;
+
+/**
+ * 调度器任务状态的持久化，复用 recurring_tasks 表。
+ * <p>
+ * 系统任务（人生引擎日结、蛋组周更新等）每个占一行：user_id 固定为 {@link #SYSTEM_USER}，task_name 为任务名，
+ * enabled = FALSE 使其不会被周期任务轮询当作用户任务执行，expire_days 设得足够大不会过期。
+ * 只用 last_fired_at / next_fire_at 两列记录进度，重启后据此决定补跑还是跳过，不会丢也不会重复触发。
+ * </p>
+ * 另外提供用户周期任务的最早触发时间查询，调度器按它唤醒，而不是每分钟查一次到期任务。
+ */
+public class SchedulerJobRepository {
+
+    /** 系统任务行的 user_id，与用户创建的周期任务区分 */
+    public static final String SYSTEM_USER = "__scheduler__";
+    private static final int NEVER_EXPIRE_DAYS = 36500;
+
+    private final DataSource dataSource;
+
+    public SchedulerJobRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * 读取任务保存的下次触发时间；没有记录时插入一行并返回 null
+     *
+     * @param schedule 规则描述，写入 cron_expr（规则变了也同步更新）
+     */
+    public LocalDateTime loadNextFire(String jobName, String schedule) throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT next_fire_at, cron_expr FROM recurring_tasks WHERE user_id = ? AND task_name = ? LIMIT 1")) {
+                ps.setString(1, SYSTEM_USER);
+                ps.setString(2, jobName);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        Timestamp next = rs.getTimestamp("next_fire_at");
+                        if (!schedule.equals(rs.getString("cron_expr"))) {
+                            updateSchedule(conn, jobName, schedule);
+                            // 规则变了，旧的下次触发时间作废
+                            return null;
+                        }
+                        return next != null ? next.toLocalDateTime() : null;
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO recurring_tasks (user_id, group_id, task_name, cron_expr, trigger_prompt, expire_days, enabled) " +
+                            "VALUES (?, NULL, ?, ?, '', ?, FALSE)")) {
+                ps.setString(1, SYSTEM_USER);
+                ps.setString(2, jobName);
+                ps.setString(3, schedule);
+                ps.setInt(4, NEVER_EXPIRE_DAYS);
+                ps.executeUpdate();
+            }
+            return null;
+        }
+    }
+
+    private void updateSchedule(Connection conn, String jobName, String schedule) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "UPDATE recurring_tasks SET cron_expr = ?, next_fire_at = NULL WHERE user_id = ? AND task_name = ?")) {
+            ps.setString(1, schedule);
+            ps.setString(2, SYSTEM_USER);
+            ps.setString(3, jobName);
+            ps.executeUpdate();
+        }
+    }
+
+    /** 记录一次触发；lastFired 为 null 时只更新下次触发时间 */
+    public void saveFire(String jobName, LocalDateTime lastFired, LocalDateTime nextFire) throws SQLException {
+        String sql = lastFired != null
+                ? "UPDATE recurring_tasks SET next_fire_at = ?, last_fired_at = ? WHERE user_id = ? AND task_name = ?"
+                : "UPDATE recurring_tasks SET next_fire_at = ? WHERE user_id = ? AND task_name = ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (nextFire != null) ps.setTimestamp(i++, Timestamp.valueOf(nextFire));
+            else ps.setNull(i++, Types.TIMESTAMP);
+            if (lastFired != null) ps.setTimestamp(i++, Timestamp.valueOf(lastFired));
+            ps.setString(i++, SYSTEM_USER);
+            ps.setString(i, jobName);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 已启用的用户周期任务中最早的下次触发时间；next_fire_at 为空的任务视为立即到期，没有任务返回 null
+     */
+    public LocalDateTime findEarliestUserTaskFire() throws SQLException {
+        String sql = "SELECT MIN(COALESCE(next_fire_at, NOW())) FROM recurring_tasks WHERE enabled = TRUE AND user_id <> ?";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, SYSTEM_USER);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                Timestamp ts = rs.getTimestamp(1);
+                return ts != null ? ts.toLocalDateTime() : null;
+            }
+        }
+    }
+}
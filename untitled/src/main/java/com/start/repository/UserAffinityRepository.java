@@ -0,0 +1,189 @@
+package com.start.repository;
+
+
+import com.start.config.BotConfig;
+import com.start.config.DatabaseConfig;
+import com.start.model.UserAffinity;
+import com.start.util.ReadThroughCache;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * UserAffinity 数据库操作类
+ */
+public class UserAffinityRepository {
+
+    /** 单条查询缓存，与画像相同按 (user_id, group_id) 缓存、保存时失效 */
+    private static final ReadThroughCache<Key, Optional<UserAffinity>> CACHE =
+            new ReadThroughCache<>("user_affinity", BotConfig.getCacheMaxEntries(), BotConfig.getCacheTtlMs());
+
+    private record Key(String userId, String groupId) {}
+
+    public Optional<UserAffinity> findByUserIdAndGroupId(String userId, String groupId) throws SQLException {
+        return CACHE.get(new Key(userId, groupId), () -> load(userId, groupId));
+    }
+
+    public static ReadThroughCache.Stats getCacheStats() {
+        return CACHE.getStats();
+    }
+
+    private Optional<UserAffinity> load(String userId, String groupId) throws SQLException {
+        String sql = "SELECT * FROM user_affinity WHERE user_id = ? AND group_id " +
+                (groupId == null ? "IS NULL" : "= ?");
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, userId);
+            if (groupId != null) {
+                ps.setString(2, groupId);
+            }
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                return Optional.of(map(rs));
+            }
+            return Optional.empty();
+        }
+    }
+
+    /** 一次取出多个用户在所有群（含私聊）的好感度，调用方按 group_id 自行筛选 */
+    public List<UserAffinity> findByUserIds(Collection<String> userIds) throws SQLException {
+        List<UserAffinity> list = new ArrayList<>();
+        if (userIds.isEmpty()) return list;
+        String sql = "SELECT * FROM user_affinity WHERE user_id IN (" + "?,".repeat(userIds.size() - 1) + "?)";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (String userId : userIds) ps.setString(i++, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(map(rs));
+            }
+        }
+        return list;
+    }
+
+    private static UserAffinity map(ResultSet rs) throws SQLException {
+        UserAffinity affinity = new UserAffinity();
+        affinity.setId(rs.getLong("id"));
+        affinity.setUserId(rs.getString("user_id"));
+        affinity.setGroupId(rs.getString("group_id"));
+        affinity.setAffinityScore(rs.getInt("affinity_score"));
+        affinity.setLastUpdatedMessageId(rs.getLong("last_updated_message_id"));
+        affinity.setMessageCountSnapshot(rs.getInt("message_count_snapshot"));
+        affinity.setReasonLog(rs.getString("reason_log"));
+        affinity.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        affinity.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        return affinity;
+    }
+
+    public void saveOrUpdate(UserAffinity affinity) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            String updateSql = "UPDATE user_affinity SET affinity_score = ?, last_updated_message_id = ?, message_count_snapshot = ?, reason_log = ?, updated_at = NOW() " +
+                    "WHERE user_id = ? AND group_id " + (affinity.getGroupId() == null ? "IS NULL" : "= ?");
+            try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                ps.setInt(1, affinity.getAffinityScore());
+                ps.setLong(2, affinity.getLastUpdatedMessageId());
+                ps.setInt(3, affinity.getMessageCountSnapshot());
+                ps.setString(4, affinity.getReasonLog());
+                ps.setString(5, affinity.getUserId());
+                if (affinity.getGroupId() != null) {
+                    ps.setString(6, affinity.getGroupId());
+                }
+                if (ps.executeUpdate() == 0) {
+                    String insertSql = "INSERT INTO user_affinity (user_id, group_id, affinity_score, last_updated_message_id, message_count_snapshot, reason_log) VALUES (?, ?, ?, ?, ?, ?)";
+                    try (PreparedStatement ins = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                        ins.setString(1, affinity.getUserId());
+                        ins.setString(2, affinity.getGroupId());
+                        ins.setInt(3, affinity.getAffinityScore());
+                        ins.setLong(4, affinity.getLastUpdatedMessageId());
+                        ins.setInt(5, affinity.getMessageCountSnapshot());
+                        ins.setString(6, affinity.getReasonLog());
+                        ins.executeUpdate();
+                        ResultSet keys = ins.getGeneratedKeys();
+                        if (keys.next()) {
+                            affinity.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            conn.commit();
+        } finally {
+            // 提交失败时同样失效，下次查询重新读库
+            CACHE.invalidate(new Key(affinity.getUserId(), affinity.getGroupId()));
+        }
+    }
+
+    /**
+     * 批量保存：同一事务内先批量 UPDATE，没有命中的再批量 INSERT，语义与逐条 {@link #saveOrUpdate} 相同
+     */
+    public void saveOrUpdateAll(List<UserAffinity> affinities) throws SQLException {
+        if (affinities.isEmpty()) return;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                saveOrUpdateAll(conn, affinities);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            invalidateAll(affinities);
+        }
+    }
+
+    /**
+     * 在调用方的事务里批量写入，不提交也不失效缓存；
+     * 调用方提交或回滚后必须调用 {@link #invalidateAll}
+     */
+    public void saveOrUpdateAll(Connection conn, List<UserAffinity> affinities) throws SQLException {
+        List<UserAffinity> missing = new ArrayList<>();
+        // group_id 为 NULL 时 WHERE 条件不同，按两条语句分别批量
+        for (boolean nullGroup : new boolean[]{false, true}) {
+            List<UserAffinity> part = new ArrayList<>();
+            for (UserAffinity a : affinities) {
+                if ((a.getGroupId() == null) == nullGroup) part.add(a);
+            }
+            if (part.isEmpty()) continue;
+            String updateSql = "UPDATE user_affinity SET affinity_score = ?, last_updated_message_id = ?, message_count_snapshot = ?, reason_log = ?, updated_at = NOW() " +
+                    "WHERE user_id = ? AND group_id " + (nullGroup ? "IS NULL" : "= ?");
+            try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                for (UserAffinity a : part) {
+                    ps.setInt(1, a.getAffinityScore());
+                    ps.setLong(2, a.getLastUpdatedMessageId());
+                    ps.setInt(3, a.getMessageCountSnapshot());
+                    ps.setString(4, a.getReasonLog());
+                    ps.setString(5, a.getUserId());
+                    if (!nullGroup) ps.setString(6, a.getGroupId());
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) missing.add(part.get(i));
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            String insertSql = "INSERT INTO user_affinity (user_id, group_id, affinity_score, last_updated_message_id, message_count_snapshot, reason_log) VALUES (?, ?, ?, ?, ?, ?)";
+            try (PreparedStatement ins = conn.prepareStatement(insertSql)) {
+                for (UserAffinity a : missing) {
+                    ins.setString(1, a.getUserId());
+                    ins.setString(2, a.getGroupId());
+                    ins.setInt(3, a.getAffinityScore());
+                    ins.setLong(4, a.getLastUpdatedMessageId());
+                    ins.setInt(5, a.getMessageCountSnapshot());
+                    ins.setString(6, a.getReasonLog());
+                    ins.addBatch();
+                }
+                ins.executeBatch();
+            }
+        }
+    }
+
+    public void invalidateAll(List<UserAffinity> affinities) {
+        for (UserAffinity a : affinities) CACHE.invalidate(new Key(a.getUserId(), a.getGroupId()));
+    }
+}
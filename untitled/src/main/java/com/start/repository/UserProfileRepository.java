@@ -0,0 +1,187 @@
+package com.start.repository;
+
+
+import com.start.config.BotConfig;
+import com.start.config.DatabaseConfig;
+import com.start.model.UserProfile;
+import com.start.util.ReadThroughCache;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * 用户资料仓库
+ */
+public class UserProfileRepository {
+
+    /**
+     * 按 (user_id, group_id) 缓存单条查询，没有记录也缓存；所有实例共享，任一实例的写入都会失效对应条目
+     */
+    private static final ReadThroughCache<Key, Optional<UserProfile>> CACHE =
+            new ReadThroughCache<>("user_profile", BotConfig.getCacheMaxEntries(), BotConfig.getCacheTtlMs());
+
+    private record Key(String userId, String groupId) {}
+
+    public Optional<UserProfile> findByUserIdAndGroupId(String userId, String groupId) throws SQLException {
+        return CACHE.get(new Key(userId, groupId), () -> load(userId, groupId));
+    }
+
+    public static ReadThroughCache.Stats getCacheStats() {
+        return CACHE.getStats();
+    }
+
+    private Optional<UserProfile> load(String userId, String groupId) throws SQLException {
+        String sql = "SELECT * FROM user_profiles WHERE user_id = ? AND group_id " +
+                (groupId == null ? "IS NULL" : "= ?");
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, userId);
+            if (groupId != null) {
+                ps.setString(2, groupId);
+            }
+            ResultSet rs = ps.executeQuery();
+            if (rs.next()) {
+                return Optional.of(map(rs));
+            }
+            return Optional.empty();
+        }
+    }
+
+    /** 一次取出多个用户在所有群（含私聊）的画像，调用方按 group_id 自行筛选 */
+    public List<UserProfile> findByUserIds(Collection<String> userIds) throws SQLException {
+        List<UserProfile> list = new ArrayList<>();
+        if (userIds.isEmpty()) return list;
+        String sql = "SELECT * FROM user_profiles WHERE user_id IN (" + "?,".repeat(userIds.size() - 1) + "?)";
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (String userId : userIds) ps.setString(i++, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) list.add(map(rs));
+            }
+        }
+        return list;
+    }
+
+    private static UserProfile map(ResultSet rs) throws SQLException {
+        UserProfile profile = new UserProfile();
+        profile.setId(rs.getLong("id"));
+        profile.setUserId(rs.getString("user_id"));
+        profile.setGroupId(rs.getString("group_id"));
+        profile.setProfileText(rs.getString("profile_text"));
+        profile.setMessageCountSnapshot(rs.getInt("message_count_snapshot"));
+        profile.setLastMessageId(rs.getLong("last_message_id"));
+        profile.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        profile.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        return profile;
+    }
+
+    public void saveOrUpdate(UserProfile profile) throws SQLException {
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            String updateSql = "UPDATE user_profiles SET profile_text = ?, message_count_snapshot = ?, last_message_id = ?, updated_at = NOW() " +
+                    "WHERE user_id = ? AND group_id " + (profile.getGroupId() == null ? "IS NULL" : "= ?");
+            try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                ps.setString(1, profile.getProfileText());
+                ps.setInt(2, profile.getMessageCountSnapshot());
+                ps.setLong(3, profile.getLastMessageId());
+                ps.setString(4, profile.getUserId());
+                if (profile.getGroupId() != null) {
+                    ps.setString(5, profile.getGroupId());
+                }
+                if (ps.executeUpdate() == 0) {
+                    String insertSql = "INSERT INTO user_profiles (user_id, group_id, profile_text, message_count_snapshot, last_message_id) VALUES (?, ?, ?, ?, ?)";
+                    try (PreparedStatement ins = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+                        ins.setString(1, profile.getUserId());
+                        ins.setString(2, profile.getGroupId());
+                        ins.setString(3, profile.getProfileText());
+                        ins.setInt(4, profile.getMessageCountSnapshot());
+                        ins.setLong(5, profile.getLastMessageId());
+                        ins.executeUpdate();
+                        ResultSet keys = ins.getGeneratedKeys();
+                        if (keys.next()) {
+                            profile.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            conn.commit();
+        } finally {
+            // 提交失败时同样失效，下次查询重新读库
+            CACHE.invalidate(new Key(profile.getUserId(), profile.getGroupId()));
+        }
+    }
+
+    /**
+     * 批量保存：同一事务内先批量 UPDATE，没有命中的再批量 INSERT，语义与逐条 {@link #saveOrUpdate} 相同
+     */
+    public void saveOrUpdateAll(List<UserProfile> profiles) throws SQLException {
+        if (profiles.isEmpty()) return;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                saveOrUpdateAll(conn, profiles);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            invalidateAll(profiles);
+        }
+    }
+
+    /**
+     * 在调用方的事务里批量写入，不提交也不失效缓存；
+     * 调用方提交或回滚后必须调用 {@link #invalidateAll}
+     */
+    public void saveOrUpdateAll(Connection conn, List<UserProfile> profiles) throws SQLException {
+        List<UserProfile> missing = new ArrayList<>();
+        // group_id 为 NULL 时 WHERE 条件不同，按两条语句分别批量
+        for (boolean nullGroup : new boolean[]{false, true}) {
+            List<UserProfile> part = new ArrayList<>();
+            for (UserProfile p : profiles) {
+                if ((p.getGroupId() == null) == nullGroup) part.add(p);
+            }
+            if (part.isEmpty()) continue;
+            String updateSql = "UPDATE user_profiles SET profile_text = ?, message_count_snapshot = ?, last_message_id = ?, updated_at = NOW() " +
+                    "WHERE user_id = ? AND group_id " + (nullGroup ? "IS NULL" : "= ?");
+            try (PreparedStatement ps = conn.prepareStatement(updateSql)) {
+                for (UserProfile p : part) {
+                    ps.setString(1, p.getProfileText());
+                    ps.setInt(2, p.getMessageCountSnapshot());
+                    ps.setLong(3, p.getLastMessageId());
+                    ps.setString(4, p.getUserId());
+                    if (!nullGroup) ps.setString(5, p.getGroupId());
+                    ps.addBatch();
+                }
+                int[] counts = ps.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) missing.add(part.get(i));
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            String insertSql = "INSERT INTO user_profiles (user_id, group_id, profile_text, message_count_snapshot, last_message_id) VALUES (?, ?, ?, ?, ?)";
+            try (PreparedStatement ins = conn.prepareStatement(insertSql)) {
+                for (UserProfile p : missing) {
+                    ins.setString(1, p.getUserId());
+                    ins.setString(2, p.getGroupId());
+                    ins.setString(3, p.getProfileText());
+                    ins.setInt(4, p.getMessageCountSnapshot());
+                    ins.setLong(5, p.getLastMessageId());
+                    ins.addBatch();
+                }
+                ins.executeBatch();
+            }
+        }
+    }
+
+    public void invalidateAll(List<UserProfile> profiles) {
+        for (UserProfile p : profiles) CACHE.invalidate(new Key(p.getUserId(), p.getGroupId()));
+    }
+}
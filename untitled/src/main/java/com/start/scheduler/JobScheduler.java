@@ -0,0 +1,459 @@
+package com.start.scheduler;
+
+import com.start.repository.SchedulerJobRepository;
+import com.start.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统一任务调度器：所有定时、周期任务共用一个 Job-Timer 线程驱动的时间轮，到期后按任务所属的 {@link Lane}
+ * 交给对应线程池执行：短任务（提醒、分条发送）与可能跑几分钟的后台任务（画像、事件检查等大模型调用）互不占用。
+ * <p>
+ * 取代原先每个后台任务一个 while(sleep) 线程、提醒服务自带线程池的做法：
+ * <ul>
+ *   <li>同一个任务不会重叠执行，下一次触发在本次结束后才计算；</li>
+ *   <li>错过触发（进程挂起、上次运行太久、重启期间到点）按 {@link MisfirePolicy} 补跑一次或跳过；</li>
+ *   <li>可加随机抖动，避免整点任务同时打数据库；</li>
+ *   <li>持久化任务把下次触发时间写入 recurring_tasks，重启后不丢、不重复；</li>
+ *   <li>{@link Job#runNoLaterThan} 让任务按数据里最早的到期时间醒来，而不是固定间隔轮询。</li>
+ * </ul>
+ * </p>
+ * 时间轮按 {@link System#nanoTime()} 推进，墙上时钟回拨或跳变不会让已排期的任务停摆；
+ * 触发时刻仍以 epoch 毫秒表示，排期时换算成相对当前的延迟。
+ * 每个任务按名称累计运行次数、失败、错过次数与耗时分布，供 /metrics 输出。
+ */
+public class JobScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(JobScheduler.class);
+
+    /** 时间轮精度；定时提醒以秒计，100ms 足够 */
+    static final long TICK_MS = 100;
+
+    /** 快速通道线程数，与原先提醒服务自带的线程池相同 */
+    private static final int QUICK_THREADS = 3;
+
+    /** 执行任务的线程池 */
+    public enum Lane {
+        /** 很快结束的任务：提醒、分条发送等，不能被长任务拖住 */
+        QUICK,
+        /** 可能阻塞较久的后台任务：大模型批处理、全量加载等 */
+        BACKGROUND
+    }
+
+    /** 错过触发时间后的处理方式 */
+    public enum MisfirePolicy {
+        /** 立即补跑一次（多次错过也只补一次） */
+        FIRE_ONCE,
+        /** 跳过错过的触发，等下一个正常时间点 */
+        SKIP
+    }
+
+    /**
+     * @param schedule   触发规则描述，一次性任务为 "once"
+     * @param running    正在执行的实例数
+     * @param nextFireMs 下次触发 epoch 毫秒，分组统计或未排期为 -1
+     */
+    public record JobStats(String name, String schedule, long runs, long failures, long misfires,
+                           int running, long nextFireMs, LatencyHistogram.Snapshot duration) {}
+
+    private static volatile JobScheduler instance;
+
+    public static JobScheduler getInstance() {
+        if (instance == null) {
+            synchronized (JobScheduler.class) {
+                if (instance == null) instance = new JobScheduler();
+            }
+        }
+        return instance;
+    }
+
+    /** 按名称（或分组名）累计的统计 */
+    private static final class Counters {
+        final LongAdder runs = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder misfires = new LongAdder();
+        final AtomicInteger running = new AtomicInteger();
+        final LatencyHistogram duration = new LatencyHistogram();
+        volatile String schedule = "once";
+        /** 具名任务，分组统计为 null */
+        volatile Job named;
+    }
+
+    private record Fire(Job job, long generation, long deadlineTick) {}
+
+    /** 单调时钟原点，时间轮的 tick 从这里算起 */
+    private final long originNanos = System.nanoTime();
+    private final TimerWheel<Fire> wheel = new TimerWheel<>(0);
+    /** 其它线程的排期请求，由 Job-Timer 线程在每个 tick 放进时间轮 */
+    private final Queue<Fire> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, Job> namedJobs = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final ExecutorService quickWorkers;
+    private final Thread timerThread;
+    private volatile boolean running = true;
+    private volatile SchedulerJobRepository repository;
+
+    private JobScheduler() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "Job-Worker-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ((ThreadPoolExecutor) workers).allowCoreThreadTimeOut(true);
+        AtomicInteger quickSeq = new AtomicInteger();
+        this.quickWorkers = new ThreadPoolExecutor(QUICK_THREADS, QUICK_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "Job-Quick-" + quickSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ((ThreadPoolExecutor) quickWorkers).allowCoreThreadTimeOut(true);
+
+        this.timerThread = new Thread(this::timerLoop, "Job-Timer");
+        this.timerThread.setDaemon(true);
+        this.timerThread.start();
+    }
+
+    /** 设置持久化仓库；未设置时持久化任务按普通任务处理 */
+    public void setRepository(SchedulerJobRepository repository) {
+        this.repository = repository;
+    }
+
+    // ================== 注册任务 ==================
+
+    /**
+     * 注册具名周期任务，名称唯一，可用 {@link #runNow(String)} 按名触发；在 {@link Lane#BACKGROUND} 执行
+     *
+     * @param jitterMs   每次触发额外推迟 0~jitterMs 的随机时间
+     * @param persistent 是否把触发进度写入数据库，重启后按上次保存的时间继续
+     */
+    public Job schedule(String name, Schedule schedule, MisfirePolicy policy, long jitterMs,
+                        boolean persistent, Runnable action) {
+        Job job = new Job(name, Lane.BACKGROUND, schedule, policy, jitterMs, persistent && repository != null, action);
+        if (namedJobs.putIfAbsent(name, job) != null) {
+            throw new IllegalArgumentException("任务名重复: " + name);
+        }
+        Counters c = counters(name);
+        c.schedule = schedule.describe();
+        c.named = job;
+
+        long now = System.currentTimeMillis();
+        long first = job.persistent ? restore(job, now) : -1;
+        if (first < 0) first = job.nextAfter(now, now);
+        job.arm(first, first);
+        logger.info("⏰ 已注册任务 {}（{}），首次触发 {}", name, schedule.describe(), format(first));
+        return job;
+    }
+
+    /**
+     * 注册匿名周期任务，统计按 {@code group} 汇总；在 {@link Lane#QUICK} 执行
+     *
+     * @param initialDelayMs 首次触发延迟
+     */
+    public Job repeat(String group, Schedule schedule, long initialDelayMs, Runnable action) {
+        Job job = new Job(group, Lane.QUICK, schedule, MisfirePolicy.FIRE_ONCE, 0, false, action);
+        counters(group).schedule = schedule.describe();
+        long first = System.currentTimeMillis() + Math.max(0, initialDelayMs);
+        job.arm(first, first);
+        return job;
+    }
+
+    /** 一次性短任务，统计按 {@code group} 汇总 */
+    public Job scheduleOnce(String group, long delayMs, Runnable action) {
+        return scheduleOnce(group, Lane.QUICK, delayMs, action);
+    }
+
+    /** 一次性任务，指定执行通道 */
+    public Job scheduleOnce(String group, Lane lane, long delayMs, Runnable action) {
+        Job job = new Job(group, lane, null, MisfirePolicy.FIRE_ONCE, 0, false, action);
+        counters(group);
+        long at = System.currentTimeMillis() + Math.max(0, delayMs);
+        job.arm(at, at);
+        return job;
+    }
+
+    /** 按名立即触发具名任务；任务正在执行时在其结束后再跑一次，未注册则忽略 */
+    public void runNow(String name) {
+        runNoLaterThan(name, System.currentTimeMillis());
+    }
+
+    /** 按名调用 {@link Job#runNoLaterThan}，未注册则忽略 */
+    public void runNoLaterThan(String name, long epochMs) {
+        Job job = namedJobs.get(name);
+        if (job != null) job.runNoLaterThan(epochMs);
+    }
+
+    private Counters counters(String name) {
+        return counters.computeIfAbsent(name, k -> new Counters());
+    }
+
+    /** 读取持久化的下次触发时间，返回 -1 表示需要重新计算 */
+    private long restore(Job job, long now) {
+        try {
+            LocalDateTime saved = repository.loadNextFire(job.name, job.schedule.describe());
+            if (saved == null) return -1;
+            long savedMs = saved.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (savedMs > now) return savedMs;
+            job.counters.misfires.increment();
+            logger.info("⏰ 任务 {} 在停机期间错过了 {} 的触发，按 {} 处理", job.name, saved, job.policy);
+            return job.policy == MisfirePolicy.FIRE_ONCE ? now : job.nextAfter(now, now);
+        } catch (Exception e) {
+            logger.warn("⚠️ 读取任务 {} 的触发进度失败，按当前时间重新计算", job.name, e);
+            return -1;
+        }
+    }
+
+    private void persist(Job job, LocalDateTime lastFired, long nextMs) {
+        if (!job.persistent) return;
+        try {
+            repository.saveFire(job.name, lastFired, nextMs < 0 ? null : toLocal(nextMs));
+        } catch (Exception e) {
+            logger.warn("⚠️ 保存任务 {} 的触发进度失败", job.name, e);
+        }
+    }
+
+    // ================== 调度线程 ==================
+
+    /** 自原点起的单调毫秒数 */
+    private long monotonicMs() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - originNanos);
+    }
+
+    private void timerLoop() {
+        while (running) {
+            long wait = (wheel.currentTick() + 1) * TICK_MS - monotonicMs();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(Math.min(wait, TICK_MS));
+                } catch (InterruptedException e) {
+                    if (!running) return;
+                }
+                continue;
+            }
+            try {
+                wheel.advance(this::drainPending, this::dispatch);
+            } catch (Throwable t) {
+                logger.error("❌ 调度线程异常", t);
+            }
+        }
+    }
+
+    private void drainPending() {
+        Fire f;
+        while ((f = pending.poll()) != null) wheel.add(f.deadlineTick, f);
+    }
+
+    private void dispatch(Fire fire) {
+        Job job = fire.job;
+        if (job.cancelled || job.generation != fire.generation) return;
+        try {
+            (job.lane == Lane.QUICK ? quickWorkers : workers).execute(() -> job.execute(fire.generation));
+        } catch (Exception e) {
+            logger.error("❌ 提交任务 {} 失败", job.name, e);
+        }
+    }
+
+    // ================== 任务句柄 ==================
+
+    /**
+     * 已注册任务的句柄
+     */
+    public final class Job {
+        private final String name;
+        private final Lane lane;
+        private final Schedule schedule;
+        private final MisfirePolicy policy;
+        private final long jitterMs;
+        private final boolean persistent;
+        private final Runnable action;
+        private final Counters counters;
+
+        /** 以下字段由 synchronized(this) 保护 */
+        private long generation;
+        private long nextFireMs = -1;
+        /** 不含抖动的计划触发时刻，作为下次计算的参照 */
+        private long plannedMs = -1;
+        private boolean executing;
+        /** 执行期间收到的提前触发请求，结束后合并 */
+        private long requestedMs = Long.MAX_VALUE;
+        private volatile boolean cancelled;
+
+        private Job(String name, Lane lane, Schedule schedule, MisfirePolicy policy, long jitterMs,
+                    boolean persistent, Runnable action) {
+            this.name = name;
+            this.lane = lane;
+            this.schedule = schedule;
+            this.policy = policy;
+            this.jitterMs = Math.max(0, jitterMs);
+            this.persistent = persistent;
+            this.action = action;
+            this.counters = counters(name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public synchronized long getNextFireMs() {
+            return cancelled ? -1 : nextFireMs;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** 取消后续触发；正在执行的这一次不受影响 */
+        public void cancel() {
+            synchronized (this) {
+                if (cancelled) return;
+                cancelled = true;
+                generation++;
+                nextFireMs = -1;
+            }
+            namedJobs.remove(name, this);
+        }
+
+        /** 立即触发一次 */
+        public void runNow() {
+            runNoLaterThan(System.currentTimeMillis());
+        }
+
+        /**
+         * 保证不晚于指定时刻触发：比当前排期早就提前，否则不变。
+         * 用于按数据中最早的到期时间唤醒，避免固定间隔轮询
+         */
+        public synchronized void runNoLaterThan(long epochMs) {
+            if (cancelled) return;
+            if (executing) {
+                requestedMs = Math.min(requestedMs, epochMs);
+                return;
+            }
+            if (nextFireMs < 0 || epochMs < nextFireMs) arm(epochMs, epochMs);
+        }
+
+        /** 换一个新的代次放进时间轮，旧的排期到期时被忽略 */
+        private synchronized void arm(long fireMs, long planned) {
+            if (cancelled) return;
+            if (fireMs < 0) {
+                nextFireMs = -1;
+                return;
+            }
+            generation++;
+            nextFireMs = fireMs;
+            plannedMs = planned;
+            // epoch 时刻换算成单调时钟上的 tick：只取相对现在的延迟，之后墙上时钟怎么跳都不影响
+            long delay = Math.max(0, fireMs - System.currentTimeMillis());
+            pending.add(new Fire(this, generation, (monotonicMs() + delay + TICK_MS - 1) / TICK_MS));
+        }
+
+        /**
+         * 参照时刻之后的下一次触发（不含抖动）；已过时按错过策略处理
+         */
+        private long nextAfter(long referenceMs, long now) {
+            long next = schedule.next(referenceMs);
+            if (next < 0) return -1;
+            if (next <= now && !schedule.fromCompletion()) {
+                counters.misfires.increment();
+                next = policy == MisfirePolicy.FIRE_ONCE ? now : schedule.next(now);
+            }
+            return next;
+        }
+
+        private long withJitter(long ms) {
+            return ms < 0 || jitterMs == 0 ? ms : ms + ThreadLocalRandom.current().nextLong(jitterMs + 1);
+        }
+
+        private void execute(long gen) {
+            long planned;
+            synchronized (this) {
+                if (cancelled || gen != generation || executing) return;
+                executing = true;
+                planned = plannedMs;
+                nextFireMs = -1;
+            }
+
+            long startMs = System.currentTimeMillis();
+            if (persistent) {
+                // 先记下本次触发再执行：崩溃时宁可少跑一次也不重复
+                persist(this, toLocal(startMs), schedule.fromCompletion() ? -1 : schedule.next(startMs));
+            }
+
+            counters.running.incrementAndGet();
+            long t0 = System.nanoTime();
+            try {
+                action.run();
+            } catch (Throwable t) {
+                counters.failures.increment();
+                logger.error("❌ 任务 {} 执行失败", name, t);
+            } finally {
+                counters.duration.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0));
+                counters.runs.increment();
+                counters.running.decrementAndGet();
+            }
+
+            long endMs = System.currentTimeMillis();
+            long base = schedule == null ? -1
+                    : nextAfter(schedule.fromCompletion() ? endMs : planned, endMs);
+            long fireMs = withJitter(base);
+            synchronized (this) {
+                executing = false;
+                if (requestedMs != Long.MAX_VALUE && (fireMs < 0 || requestedMs < fireMs)) {
+                    fireMs = requestedMs;
+                    // 提前触发不改变周期参照
+                    if (base < 0) base = requestedMs;
+                }
+                requestedMs = Long.MAX_VALUE;
+                arm(fireMs, base);
+            }
+            if (persistent) persist(this, null, base);
+            if (schedule == null && getNextFireMs() < 0) cancel();
+        }
+    }
+
+    // ================== 统计 ==================
+
+    /** 按名称的运行统计 */
+    public List<JobStats> getStats() {
+        List<JobStats> list = new ArrayList<>();
+        counters.forEach((name, c) -> {
+            Job job = c.named;
+            list.add(new JobStats(name, c.schedule, c.runs.sum(), c.failures.sum(), c.misfires.sum(),
+                    c.running.get(), job != null ? job.getNextFireMs() : -1, c.duration.snapshot()));
+        });
+        return list;
+    }
+
+    /** 停止调度，正在执行的任务不打断 */
+    public void shutdown() {
+        running = false;
+        timerThread.interrupt();
+        workers.shutdown();
+        quickWorkers.shutdown();
+    }
+
+    private static LocalDateTime toLocal(long epochMs) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault());
+    }
+
+    private static String format(long epochMs) {
+        return epochMs < 0 ? "无" : toLocal(epochMs).withNano(0).toString();
+    }
+}
@@ -0,0 +1,108 @@
+package com.start.scheduler;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/**
+ * 任务的触发规则
+ */
+public interface Schedule {
+
+    /**
+     * 下一次触发时刻
+     *
+     * @param referenceMs 参照时刻（epoch 毫秒）：固定间隔任务为上次运行结束时刻，其余为上次计划触发时刻
+     * @return 下一次触发的 epoch 毫秒，严格晚于参照时刻；-1 表示不再触发
+     */
+    long next(long referenceMs);
+
+    /** 是否以上次运行结束为参照（固定间隔），否则以上次计划触发时刻为参照 */
+    default boolean fromCompletion() {
+        return false;
+    }
+
+    /** 可读描述，持久化时写入 recurring_tasks.cron_expr */
+    String describe();
+
+    /** 上次运行结束后间隔固定时间再运行，运行时间长也不会重叠 */
+    static Schedule fixedDelay(long delayMs) {
+        if (delayMs <= 0) throw new IllegalArgumentException("间隔必须为正: " + delayMs);
+        return new Schedule() {
+            @Override
+            public long next(long referenceMs) {
+                return referenceMs + delayMs;
+            }
+
+            @Override
+            public boolean fromCompletion() {
+                return true;
+            }
+
+            @Override
+            public String describe() {
+                return "every " + delayMs + "ms";
+            }
+        };
+    }
+
+    /**
+     * cron 风格规则，格式与周期任务一致："mm HH * * D"，D 为 * 或 0 表示每天，1-7 表示周一到周日；
+     * 多条规则用 ; 分隔，取最早的一次
+     */
+    static Schedule cron(String expr) {
+        if (nextFire(expr, LocalDateTime.now()) == null) throw new IllegalArgumentException("无法解析的 cron: " + expr);
+        return new Schedule() {
+            @Override
+            public long next(long referenceMs) {
+                ZoneId zone = ZoneId.systemDefault();
+                LocalDateTime next = nextFire(expr, LocalDateTime.ofInstant(Instant.ofEpochMilli(referenceMs), zone));
+                return next == null ? -1 : next.atZone(zone).toInstant().toEpochMilli();
+            }
+
+            @Override
+            public String describe() {
+                return expr;
+            }
+        };
+    }
+
+    /**
+     * cron 规则在 {@code after} 之后的下一次触发时刻，无法解析返回 null
+     */
+    static LocalDateTime nextFire(String cronExpr, LocalDateTime after) {
+        if (cronExpr == null) return null;
+        LocalDateTime earliest = null;
+
+        for (String cron : cronExpr.split(";")) {
+            String[] fields = cron.trim().split("\\s+");
+            if (fields.length < 5) continue;
+            try {
+                int minute = Integer.parseInt(fields[0]);
+                int hour = Integer.parseInt(fields[1]);
+                boolean daily = fields[4].equals("*");
+                int dayOfWeek = daily ? 0 : Integer.parseInt(fields[4]);
+                LocalDate day = after.toLocalDate();
+
+                LocalDateTime candidate;
+                if (daily || dayOfWeek == 0) {
+                    // 每天
+                    candidate = LocalDateTime.of(day, LocalTime.of(hour, minute));
+                    if (!candidate.isAfter(after)) candidate = candidate.plusDays(1);
+                } else {
+                    // 每周特定日 (1=Mon, 7=Sun)
+                    int todayDow = after.getDayOfWeek().getValue();
+                    int daysUntil = (dayOfWeek - todayDow + 7) % 7;
+                    candidate = LocalDateTime.of(day.plusDays(daysUntil), LocalTime.of(hour, minute));
+                    if (!candidate.isAfter(after)) candidate = candidate.plusDays(7);
+                }
+                if (earliest == null || candidate.isBefore(earliest)) earliest = candidate;
+            } catch (RuntimeException ignored) {
+                // 数字格式错误或时间越界，跳过这一条
+            }
+        }
+        return earliest;
+    }
+}
@@ -0,0 +1,110 @@
+package com.start.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 分层哈希时间轮（非线程安全，只由调度线程访问）。
+ * <p>
+ * 4 层、每层 64 槽：第 0 层一个槽一个 tick，第 L 层一个槽 64^L 个 tick。
+ * 条目按到期 tick 与当前 tick 的距离放到能容纳它的最低一层；高层的槽在轮转到时整体下放（cascade），
+ * 最终落到第 0 层并在到期 tick 取出。超出 4 层范围的条目放在溢出表，第 3 层轮转时重新放置。
+ * 插入、到期都是 O(1)，空转一个 tick 只看一个槽，比按到期时间排序的队列更适合大量短期一次性定时。
+ * </p>
+ */
+final class TimerWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private record Entry<T>(long deadline, T value) {}
+
+    @SuppressWarnings("unchecked")
+    private final List<Entry<T>>[][] wheel = new List[LEVELS][SLOTS];
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    /** 已处理到的 tick */
+    private long tick;
+    private int size;
+    /** 正在执行 beforeExpire：当前 tick 的槽尚未取出 */
+    private boolean expiring;
+
+    TimerWheel(long startTick) {
+        this.tick = startTick;
+        for (int l = 0; l < LEVELS; l++) {
+            for (int s = 0; s < SLOTS; s++) wheel[l][s] = new ArrayList<>();
+        }
+    }
+
+    long currentTick() {
+        return tick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 放入一个条目；到期 tick 不晚于当前 tick 时尽快到期：
+     * 在 beforeExpire 中放入的随本次 {@link #advance} 取出，其余的在下一次 advance 取出
+     */
+    void add(long deadlineTick, T value) {
+        size++;
+        // 当前 tick 的槽只在 advance 中取出一次，错过之后要等整整一圈
+        long earliest = expiring ? tick : tick + 1;
+        place(new Entry<>(Math.max(deadlineTick, earliest), value));
+    }
+
+    private void place(Entry<T> e) {
+        long delta = e.deadline - tick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (delta < 1L << (BITS * (level + 1))) {
+                wheel[level][(int) ((e.deadline >>> (BITS * level)) & MASK)].add(e);
+                return;
+            }
+        }
+        overflow.add(e);
+    }
+
+    /**
+     * 前进到下一个 tick：先把轮转到的高层槽下放，再交给 {@code beforeExpire} 插入新条目，最后取出到期条目
+     */
+    void advance(Runnable beforeExpire, Consumer<T> expired) {
+        tick++;
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            if ((tick & ((1L << (BITS * level)) - 1)) != 0) continue;
+            if (level == LEVELS - 1 && !overflow.isEmpty()) {
+                List<Entry<T>> far = new ArrayList<>(overflow);
+                overflow.clear();
+                for (Entry<T> e : far) place(e);
+            }
+            List<Entry<T>> slot = wheel[level][(int) ((tick >>> (BITS * level)) & MASK)];
+            if (slot.isEmpty()) continue;
+            List<Entry<T>> moving = new ArrayList<>(slot);
+            slot.clear();
+            for (Entry<T> e : moving) place(e);
+        }
+        expiring = true;
+        try {
+            beforeExpire.run();
+        } finally {
+            expiring = false;
+        }
+
+        List<Entry<T>> slot = wheel[0][(int) (tick & MASK)];
+        if (slot.isEmpty()) return;
+        int kept = 0;
+        for (int i = 0; i < slot.size(); i++) {
+            Entry<T> e = slot.get(i);
+            if (e.deadline <= tick) {
+                size--;
+                expired.accept(e.value);
+            } else {
+                slot.set(kept++, e);
+            }
+        }
+        slot.subList(kept, slot.size()).clear();
+    }
+}
@@ -0,0 +1,245 @@
+package com.start.service;
+
+import com.start.config.BotConfig;
+import com.start.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket 连接监管：断线重连、断线期间的出站缓冲与在途请求处理。
+ * <p>
+ * 重连在一个常驻的 WS-Supervisor 线程上进行，间隔按指数退避（{@code ws.reconnect-base-ms} 起，
+ * 封顶 {@code ws.reconnect-max-ms}），每次取上限的一半再加随机抖动，NapCat 重启时不会和其它客户端同时涌上。
+ * 同一时刻最多一个重连尝试，连接失败触发的 onClose 不会再叠加新的尝试。
+ * </p>
+ * 断线期间：
+ * <ul>
+ *     <li>群聊 / 私聊消息留在 {@link OutboundScheduler} 的有界队列里，重连后按原顺序限速发出；</li>
+ *     <li>只读的 get_* 请求在途或新发起的都保留，重连后用原 echo 重发，仍受原超时约束；</li>
+ *     <li>其余请求（发送、撤回、设置等）立即失败，避免重发造成重复操作。</li>
+ * </ul>
+ */
+public class ConnectionSupervisor {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionSupervisor.class);
+
+    /** 实际的连接（Main 继承的 WebSocketClient 已有这两个方法） */
+    public interface Transport {
+        /** 重置并阻塞重连，返回是否连上 */
+        boolean reconnectBlocking() throws InterruptedException;
+
+        void send(String frame);
+    }
+
+    /**
+     * @param stateMs 当前状态（已连接 / 已断开）持续的毫秒数
+     * @param outages 每次断线到重连成功的时长
+     */
+    public record Stats(boolean connected, long connects, long disconnects, long attempts, long failedAttempts,
+                        long replayed, long failedFast, long stateMs, LatencyHistogram.Snapshot outages) {}
+
+    private final Transport transport;
+    private final PendingRequestTable pendingRequests;
+    private final OutboundScheduler outbound;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    /** 可在重连后重发的请求：echo → 原始帧，请求结束时移除 */
+    private final Map<String, String> replayable = new ConcurrentHashMap<>();
+    private final AtomicBoolean reconnectPending = new AtomicBoolean();
+    private volatile boolean connected;
+    private volatile boolean stopped;
+    private volatile long stateSinceMs = System.currentTimeMillis();
+    /** 连续失败的重连次数，决定下一次退避 */
+    private int failures;
+
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong failedAttempts = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong failedFast = new AtomicLong();
+    private final LatencyHistogram outages = new LatencyHistogram();
+
+    public ConnectionSupervisor(Transport transport, PendingRequestTable pendingRequests, OutboundScheduler outbound) {
+        this(transport, pendingRequests, outbound, BotConfig.getWsReconnectBaseMs(), BotConfig.getWsReconnectMaxMs());
+    }
+
+    public ConnectionSupervisor(Transport transport, PendingRequestTable pendingRequests, OutboundScheduler outbound,
+                                long baseDelayMs, long maxDelayMs) {
+        this.transport = transport;
+        this.pendingRequests = pendingRequests;
+        this.outbound = outbound;
+        this.baseDelayMs = Math.max(100, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "WS-Supervisor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        // 首次连接前发的消息同样先排队
+        outbound.pause();
+    }
+
+    // ================== 连接事件 ==================
+
+    /** 连接建立（onOpen）：恢复发送并重发保留的只读请求 */
+    public void onConnected() {
+        long now = System.currentTimeMillis();
+        if (connects.get() > 0) outages.record(now - stateSinceMs);
+        connects.incrementAndGet();
+        connected = true;
+        stateSinceMs = now;
+        scheduler.execute(() -> failures = 0);
+
+        int n = 0;
+        for (Map.Entry<String, String> e : replayable.entrySet()) {
+            if (!pendingRequests.contains(e.getKey())) {
+                replayable.remove(e.getKey());
+                continue;
+            }
+            try {
+                transport.send(e.getValue());
+                n++;
+            } catch (Exception ex) {
+                // 刚连上又断开，留给下一次重连
+                break;
+            }
+        }
+        if (n > 0) {
+            replayed.addAndGet(n);
+            logger.info("🔁 已重发 {} 个断线期间保留的 OneBot 请求", n);
+        }
+        outbound.resume();
+    }
+
+    /** 连接断开（onClose，包括连接失败）：暂停发送、处理在途请求并安排重连 */
+    public void onDisconnected(int code, String reason, boolean remote) {
+        if (connected) {
+            connected = false;
+            stateSinceMs = System.currentTimeMillis();
+            disconnects.incrementAndGet();
+            logger.warn("❌ 连接断开 (code={}, reason={}, remote={})，出站消息暂存待重连", code, reason, remote);
+        }
+        outbound.pause();
+        // 断线后不会再收到这些请求的响应：只读请求等重连后重发，其余立即失败而不是等超时
+        failedFast.addAndGet(pendingRequests.failAll(
+                new IllegalStateException("WebSocket 连接已断开: " + code), action -> !isReplayable(action)));
+        scheduleReconnect();
+    }
+
+    // ================== 请求 ==================
+
+    /** 重连后可以安全重发的请求（只读） */
+    public static boolean isReplayable(String action) {
+        return action.startsWith("get_");
+    }
+
+    /**
+     * 发送一个已在 {@link PendingRequestTable} 登记的请求帧；
+     * 连接不可用时只读请求保留到重连后发送，其余请求立即失败
+     */
+    public void sendRequest(String action, String echo, String frame, CompletableFuture<?> future) {
+        boolean keep = isReplayable(action);
+        if (keep) {
+            replayable.put(echo, frame);
+            future.whenComplete((r, t) -> replayable.remove(echo));
+        }
+        if (connected) {
+            try {
+                transport.send(frame);
+                return;
+            } catch (Exception e) {
+                if (!keep) {
+                    pendingRequests.fail(echo, e);
+                    failedFast.incrementAndGet();
+                }
+                return;
+            }
+        }
+        if (!keep) {
+            pendingRequests.fail(echo, new IllegalStateException("WebSocket 未连接: action=" + action));
+            failedFast.incrementAndGet();
+        }
+    }
+
+    // ================== 重连 ==================
+
+    private void scheduleReconnect() {
+        if (stopped || !reconnectPending.compareAndSet(false, true)) return;
+        scheduler.execute(() -> {
+            long delay = backoff(failures);
+            logger.info("🔄 {} ms 后尝试重连（已连续失败 {} 次）", delay, failures);
+            scheduler.schedule(this::attempt, delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /** 第 n 次失败后的等待：上限 min(max, base·2ⁿ)，取其一半再加 [0, 一半] 的随机抖动 */
+    long backoff(int n) {
+        long cap = baseDelayMs << Math.min(n, 20);
+        if (cap <= 0 || cap > maxDelayMs) cap = maxDelayMs;
+        long half = cap / 2;
+        return half + ThreadLocalRandom.current().nextLong(cap - half + 1);
+    }
+
+    /** 只在 WS-Supervisor 线程上运行 */
+    private void attempt() {
+        if (stopped || connected) {
+            reconnectPending.set(false);
+            return;
+        }
+        attempts.incrementAndGet();
+        boolean ok;
+        try {
+            logger.info("🔄 尝试重连...");
+            ok = transport.reconnectBlocking();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            logger.warn("⚠️ 重连异常: {}", e.getMessage());
+            ok = false;
+        }
+        reconnectPending.set(false);
+        if (ok) {
+            failures = 0;
+            logger.info("✅ 重连成功");
+        } else {
+            failures++;
+            failedAttempts.incrementAndGet();
+        }
+        // 连上后在清标志前又断开时，onClose 的重连请求被上面的 CAS 吞掉了，这里补上
+        if (!connected && !stopped) scheduleReconnect();
+    }
+
+    // ================== 生命周期 ==================
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /** 是否已停止监管（停止后不再重连） */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public void shutdown() {
+        stopped = true;
+        scheduler.shutdownNow();
+    }
+
+    public Stats getStats() {
+        return new Stats(connected, connects.get(), disconnects.get(), attempts.get(), failedAttempts.get(),
+                replayed.get(), failedFast.get(), System.currentTimeMillis() - stateSinceMs, outages.snapshot());
+    }
+}
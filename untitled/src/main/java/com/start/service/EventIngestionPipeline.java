@@ -0,0 +1,236 @@
+package com.start.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 事件接入流水线：把 WebSocket 读线程和业务处理解耦。
+ * <p>
+ * 第一阶段（解析、echo 响应、白名单过滤）留在 WebSocket 线程完成；
+ * 通过过滤的事件按分区键（群号 / 私聊 QQ）投递到固定数量的工作通道，
+ * 每个通道是一个有界环形缓冲区 + 一个工作线程。同一分区的事件总是进入同一通道，
+ * 因此同群消息仍按到达顺序处理（复读检测、上下文记录依赖这一点）。
+ * </p>
+ * 通道满时按 {@link OverflowPolicy} 处理：
+ * <ul>
+ *     <li>DROP_OLDEST（默认）：挤掉通道里最旧的事件，保证新消息能进来</li>
+ *     <li>DROP_NEWEST：直接丢弃新事件</li>
+ *     <li>BLOCK：阻塞 WebSocket 线程直到有空位（会拖慢 API 响应，仅用于排查）</li>
+ * </ul>
+ *
+ * @param <E> 事件类型
+ */
+public class EventIngestionPipeline<E> {
+    private static final Logger logger = LoggerFactory.getLogger(EventIngestionPipeline.class);
+
+    /** 丢弃告警的最小间隔，避免消息风暴时刷屏 */
+    private static final long DROP_WARN_INTERVAL_MS = 10_000;
+
+    public enum OverflowPolicy {
+        DROP_OLDEST, DROP_NEWEST, BLOCK;
+
+        public static OverflowPolicy parse(String value) {
+            if (value == null) return DROP_OLDEST;
+            return switch (value.trim().toLowerCase()) {
+                case "drop_newest", "drop-newest" -> DROP_NEWEST;
+                case "block" -> BLOCK;
+                default -> DROP_OLDEST;
+            };
+        }
+    }
+
+    private final String name;
+    private final List<Lane> lanes;
+    private final OverflowPolicy policy;
+    private final Consumer<E> handler;
+    private final AtomicLong lastDropWarn = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * @param name     流水线名（用于线程名和日志）
+     * @param laneCount 工作通道数
+     * @param capacity 每个通道的缓冲区容量
+     * @param policy   溢出策略
+     * @param handler  第二阶段处理逻辑，在工作线程上执行
+     */
+    public EventIngestionPipeline(String name, int laneCount, int capacity, OverflowPolicy policy, Consumer<E> handler) {
+        this.name = name;
+        this.policy = policy;
+        this.handler = handler;
+        int count = Math.max(1, laneCount);
+        this.lanes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Lane lane = new Lane(i, Math.max(1, capacity));
+            lanes.add(lane);
+            lane.thread.start();
+        }
+        logger.info("📥 事件流水线 {} 已启动 (lanes={}, capacity={}, policy={})",
+                name, lanes.size(), capacity, policy);
+    }
+
+    /**
+     * 投递事件（在 WebSocket 线程调用）。
+     *
+     * @param partitionKey 分区键，同键事件保证顺序
+     * @param event        事件
+     * @return 事件是否被接收（DROP_NEWEST 下通道满时返回 false）
+     */
+    public boolean submit(long partitionKey, E event) {
+        if (!running) return false;
+        Lane lane = lanes.get((int) Math.floorMod(partitionKey, (long) lanes.size()));
+        return lane.offer(event);
+    }
+
+    /** 各通道统计快照 */
+    public List<LaneStats> getStats() {
+        List<LaneStats> stats = new ArrayList<>(lanes.size());
+        for (Lane lane : lanes) {
+            stats.add(lane.snapshot());
+        }
+        return stats;
+    }
+
+    /** 全部通道当前积压事件数 */
+    public int getTotalDepth() {
+        int total = 0;
+        for (Lane lane : lanes) total += lane.buffer.size();
+        return total;
+    }
+
+    /** 停止接收新事件，等待通道内剩余事件处理完 */
+    public void shutdown(long timeoutMs) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+        for (Lane lane : lanes) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) break;
+            try { lane.thread.join(left); } catch (InterruptedException e) { Thread.currentThread().interrupt(); break; }
+        }
+    }
+
+    private void warnDrop(int laneIndex, long totalDropped) {
+        long now = System.currentTimeMillis();
+        long last = lastDropWarn.get();
+        if (now - last >= DROP_WARN_INTERVAL_MS && lastDropWarn.compareAndSet(last, now)) {
+            logger.warn("⚠️ 事件流水线 {} 通道 {} 已满，策略 {}，累计丢弃 {}", name, laneIndex, policy, totalDropped);
+        }
+    }
+
+    /**
+     * 通道统计
+     *
+     * @param lane        通道序号
+     * @param depth       当前积压
+     * @param capacity    容量
+     * @param maxDepth    历史最高积压
+     * @param accepted    累计接收
+     * @param processed   累计处理完成
+     * @param dropped     累计丢弃
+     * @param blockedMs   BLOCK 策略下 WebSocket 线程累计阻塞时长
+     * @param maxQueueMs  事件在通道中等待的最长时间
+     */
+    public record LaneStats(int lane, int depth, int capacity, int maxDepth, long accepted,
+                            long processed, long dropped, long blockedMs, long maxQueueMs) {}
+
+    private record Envelope<E>(E event, long enqueueNanos) {}
+
+    private final class Lane implements Runnable {
+        final int index;
+        final int capacity;
+        final ArrayBlockingQueue<Envelope<E>> buffer;
+        final Thread thread;
+
+        final AtomicLong accepted = new AtomicLong();
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong blockedNanos = new AtomicLong();
+        volatile int maxDepth;
+        volatile long maxQueueNanos;
+
+        Lane(int index, int capacity) {
+            this.index = index;
+            this.capacity = capacity;
+            this.buffer = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, name + "-Worker-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        boolean offer(E event) {
+            Envelope<E> env = new Envelope<>(event, System.nanoTime());
+            boolean ok;
+            switch (policy) {
+                case DROP_NEWEST -> {
+                    ok = buffer.offer(env);
+                    if (!ok) warnDrop(index, dropped.incrementAndGet());
+                }
+                case BLOCK -> {
+                    ok = buffer.offer(env);
+                    if (!ok) {
+                        long start = System.nanoTime();
+                        try {
+                            buffer.put(env);
+                            ok = true;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        blockedNanos.addAndGet(System.nanoTime() - start);
+                    }
+                }
+                default -> {
+                    while (!(ok = buffer.offer(env))) {
+                        if (buffer.poll() != null) {
+                            warnDrop(index, dropped.incrementAndGet());
+                        }
+                    }
+                }
+            }
+            if (ok) {
+                accepted.incrementAndGet();
+                int depth = buffer.size();
+                if (depth > maxDepth) maxDepth = depth;
+            }
+            return ok;
+        }
+
+        @Override
+        public void run() {
+            while (running || !buffer.isEmpty()) {
+                Envelope<E> env;
+                try {
+                    env = running ? buffer.take() : buffer.poll(0, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    // 关闭时由 shutdown 唤醒；运行中被处理器残留的中断标记打断时继续取下一条
+                    continue;
+                }
+                if (env == null) break;
+
+                long queued = System.nanoTime() - env.enqueueNanos();
+                if (queued > maxQueueNanos) maxQueueNanos = queued;
+                try {
+                    handler.accept(env.event());
+                } catch (Throwable t) {
+                    // Error 也要拦住：否则通道线程退出，这个分区之后的事件全被静默丢弃
+                    logger.error("❌ 事件流水线 {} 通道 {} 处理失败", name, index, t);
+                } finally {
+                    processed.incrementAndGet();
+                }
+            }
+        }
+
+        LaneStats snapshot() {
+            return new LaneStats(index, buffer.size(), capacity, maxDepth, accepted.get(), processed.get(),
+                    dropped.get(), TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()),
+                    TimeUnit.NANOSECONDS.toMillis(maxQueueNanos));
+        }
+    }
+}
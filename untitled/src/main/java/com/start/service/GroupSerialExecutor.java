@@ -0,0 +1,458 @@
+package com.start.service;
+
+import com.start.config.BotConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每群串行执行器，保证同一群内的 AI 调用和游戏逻辑串行执行。
+ * 私聊使用共享线程池，不做串行化。
+ * <p>
+ * 支持两种模式（配置项 {@code group.executor.mode}）：
+ * <ul>
+ *     <li><b>mailbox</b>（默认）：每群一个有界邮箱，所有群共享一个弹性工作线程池。
+ *     邮箱有任务时才占用线程，空闲线程和长时间无消息的邮箱都会被回收。
+ *     邮箱满时丢弃最旧的任务；带合并键的任务会替换队列中同键的旧任务。</li>
+ *     <li><b>thread</b>：旧模式，每群一个常驻单线程执行器，队列无界。</li>
+ * </ul>
+ * 大模型调用这类长时间阻塞的任务用 {@link #executeBlocking} 提交：mailbox 模式下交给单独的弹性线程执行，
+ * 邮箱在它完成前不取下一个任务（同群仍然串行），但共享工作线程立即释放给其他群，
+ * 请求排队、退避重试的等待不再占住工作线程。
+ * 每群的队列深度、等待时间、丢弃次数可通过 {@link #getGroupStats()} 查看。
+ */
+public class GroupSerialExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(GroupSerialExecutor.class);
+
+    /** 单个邮箱一次最多连续执行的任务数，超过后让出线程给其他群 */
+    private static final int MAX_BATCH_PER_TURN = 8;
+    /**
+     * 单个邮箱一次连续占用线程的时长上限。任务多是阻塞的大模型调用，只按条数让出的话，
+     * 一个繁忙的群可以连着占住线程好几次调用，其他群排在后面干等
+     */
+    private static final long MAX_TURN_MS = 200;
+
+    public enum Mode { MAILBOX, THREAD }
+
+    private final Mode mode;
+    private final ExecutorService privateChatExecutor;
+    private final long defaultMaxQueueTimeMs;
+
+    // ===== thread 模式 =====
+    private final Map<String, ExecutorService> groupExecutors = new ConcurrentHashMap<>();
+
+    // ===== mailbox 模式 =====
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor mailboxWorkers;
+    /** 阻塞任务的执行线程，按需创建；同时运行的数量不超过有阻塞任务在跑的群数 */
+    private final ExecutorService blockingWorkers;
+    private final ScheduledExecutorService reaper;
+    private final int mailboxCapacity;
+    private final long idleTimeoutMs;
+
+    public GroupSerialExecutor(int privateThreads, long defaultMaxQueueTimeMs) {
+        this(privateThreads, defaultMaxQueueTimeMs,
+                parseMode(BotConfig.getGroupExecutorMode()),
+                BotConfig.getGroupExecutorWorkers(),
+                BotConfig.getGroupExecutorMailboxCapacity(),
+                BotConfig.getGroupExecutorIdleTimeoutMs());
+    }
+
+    public GroupSerialExecutor(int privateThreads, long defaultMaxQueueTimeMs, Mode mode,
+                               int workers, int mailboxCapacity, long idleTimeoutMs) {
+        this.privateChatExecutor = Executors.newFixedThreadPool(privateThreads, r -> {
+            Thread t = new Thread(r, "Private-AI-Worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.defaultMaxQueueTimeMs = defaultMaxQueueTimeMs;
+        this.mode = mode;
+        this.mailboxCapacity = Math.max(1, mailboxCapacity);
+        this.idleTimeoutMs = idleTimeoutMs;
+
+        if (mode == Mode.MAILBOX) {
+            AtomicInteger seq = new AtomicInteger();
+            int size = Math.max(1, workers);
+            // core = max 且允许核心线程超时：有活才有线程，闲置 60 秒后线程退出
+            this.mailboxWorkers = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "Group-Mailbox-Worker-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.mailboxWorkers.allowCoreThreadTimeOut(true);
+            AtomicInteger blockingSeq = new AtomicInteger();
+            this.blockingWorkers = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "Group-Blocking-Worker-" + blockingSeq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Group-Mailbox-Reaper");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(1_000, Math.min(idleTimeoutMs, 60_000));
+            this.reaper.scheduleAtFixedRate(this::reclaimIdleMailboxes, period, period, TimeUnit.MILLISECONDS);
+            logger.info("🧵 群执行器: mailbox 模式 (workers={}, capacity={}, idle={}ms)",
+                    size, this.mailboxCapacity, idleTimeoutMs);
+        } else {
+            this.mailboxWorkers = null;
+            this.blockingWorkers = null;
+            this.reaper = null;
+            logger.info("🧵 群执行器: thread 模式（每群一个常驻线程）");
+        }
+    }
+
+    /** 提交任务，使用默认超时 */
+    public void execute(String groupId, Runnable task) {
+        execute(groupId, task, defaultMaxQueueTimeMs);
+    }
+
+    /**
+     * 提交任务到对应群的串行队列。超过排队时间的任务会被丢弃。
+     *
+     * @param groupId 群号（null 表示私聊，走共享线程池）
+     * @param task    要执行的任务
+     * @param maxQueueTimeMs 最大排队时间毫秒，超过则丢弃
+     */
+    public void execute(String groupId, Runnable task, long maxQueueTimeMs) {
+        execute(groupId, null, task, maxQueueTimeMs);
+    }
+
+    /**
+     * 提交可合并的任务：同一群内若已有相同 coalesceKey 的任务在排队，旧任务被替换为新任务，
+     * 用于同一用户连续短消息只需回应最后一条的场景。thread 模式下合并键被忽略。
+     *
+     * @param groupId     群号（null 表示私聊）
+     * @param coalesceKey 合并键，null 表示不合并
+     * @param task        要执行的任务
+     * @param maxQueueTimeMs 最大排队时间毫秒，超过则丢弃
+     */
+    public void execute(String groupId, String coalesceKey, Runnable task, long maxQueueTimeMs) {
+        submit(groupId, coalesceKey, task, maxQueueTimeMs, false);
+    }
+
+    /**
+     * 提交会长时间阻塞的任务（大模型调用等）。同群内与其他任务一样串行、可合并、会过期，
+     * 但 mailbox 模式下不占用共享工作线程；thread 模式和私聊与 {@link #execute} 相同。
+     */
+    public void executeBlocking(String groupId, Runnable task) {
+        submit(groupId, null, task, defaultMaxQueueTimeMs, true);
+    }
+
+    /** 同 {@link #executeBlocking(String, Runnable)}，可指定合并键与最长排队时间 */
+    public void executeBlocking(String groupId, String coalesceKey, Runnable task, long maxQueueTimeMs) {
+        submit(groupId, coalesceKey, task, maxQueueTimeMs, true);
+    }
+
+    private void submit(String groupId, String coalesceKey, Runnable task, long maxQueueTimeMs, boolean blocking) {
+        long submitTime = System.currentTimeMillis();
+
+        if (groupId == null) {
+            privateChatExecutor.submit(() -> runIfFresh(null, task, submitTime, maxQueueTimeMs));
+            return;
+        }
+
+        if (mode == Mode.THREAD) {
+            ExecutorService executor = groupExecutors.computeIfAbsent(groupId,
+                    k -> Executors.newSingleThreadExecutor(r -> {
+                        Thread t = new Thread(r, "Group-" + k + "-Worker");
+                        t.setDaemon(true);
+                        return t;
+                    }));
+            executor.submit(() -> runIfFresh(groupId, task, submitTime, maxQueueTimeMs));
+            return;
+        }
+
+        QueuedTask queued = new QueuedTask(task, coalesceKey, submitTime, maxQueueTimeMs, blocking);
+        while (true) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(groupId, Mailbox::new);
+            if (mailbox.offer(queued)) {
+                return;
+            }
+            // 邮箱刚被回收，重新创建
+        }
+    }
+
+    /** 旧模式与私聊的排队超时判断 */
+    private static void runIfFresh(String groupId, Runnable task, long submitTime, long maxQueueTimeMs) {
+        long waited = System.currentTimeMillis() - submitTime;
+        if (waited > maxQueueTimeMs) {
+            logger.debug("丢弃过期任务 group={} 排队{}ms", groupId, waited);
+            return;
+        }
+        if (waited > 500) {
+            logger.debug("任务排队{}ms group={}", waited, groupId);
+        }
+        task.run();
+    }
+
+    /** 回收长时间空闲的邮箱 */
+    private void reclaimIdleMailboxes() {
+        long now = System.currentTimeMillis();
+        int reclaimed = 0;
+        for (Mailbox mailbox : mailboxes.values()) {
+            if (mailbox.retireIfIdle(now)) {
+                mailboxes.remove(mailbox.groupId, mailbox);
+                reclaimed++;
+            }
+        }
+        if (reclaimed > 0) {
+            logger.debug("回收空闲群邮箱 {} 个，剩余 {} 个", reclaimed, mailboxes.size());
+        }
+    }
+
+    /**
+     * 各群队列统计快照（仅 mailbox 模式），按群号排序。
+     */
+    public Map<String, GroupStats> getGroupStats() {
+        Map<String, GroupStats> result = new LinkedHashMap<>();
+        mailboxes.values().stream()
+                .map(Mailbox::snapshot)
+                .sorted((a, b) -> a.groupId().compareTo(b.groupId()))
+                .forEach(s -> result.put(s.groupId(), s));
+        return result;
+    }
+
+    /** 当前存活的群邮箱数 */
+    public int getActiveMailboxCount() {
+        return mailboxes.size();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /** 关闭所有执行器 */
+    public void shutdown() {
+        groupExecutors.values().forEach(e -> {
+            e.shutdown();
+            try { e.awaitTermination(5, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+        });
+        if (reaper != null) {
+            reaper.shutdownNow();
+        }
+        if (blockingWorkers != null) {
+            blockingWorkers.shutdown();
+        }
+        if (mailboxWorkers != null) {
+            mailboxWorkers.shutdown();
+            try { mailboxWorkers.awaitTermination(5, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+        }
+        privateChatExecutor.shutdown();
+    }
+
+    private static Mode parseMode(String value) {
+        return "thread".equalsIgnoreCase(value) ? Mode.THREAD : Mode.MAILBOX;
+    }
+
+    // ===== 邮箱实现 =====
+
+    /**
+     * 群队列统计
+     *
+     * @param groupId         群号
+     * @param queueDepth      当前排队任务数
+     * @param submitted       累计提交数
+     * @param executed        累计执行数
+     * @param droppedOverflow 因邮箱满被挤掉的任务数
+     * @param droppedExpired  因排队超时被丢弃的任务数
+     * @param coalesced       被同键新任务替换的任务数
+     * @param lastWaitMs      最近一次任务的排队时长
+     * @param maxWaitMs       历史最大排队时长
+     * @param avgWaitMs       平均排队时长
+     */
+    public record GroupStats(String groupId, int queueDepth, long submitted, long executed,
+                             long droppedOverflow, long droppedExpired, long coalesced,
+                             long lastWaitMs, long maxWaitMs, double avgWaitMs) {}
+
+    private record QueuedTask(Runnable task, String coalesceKey, long submitTime, long maxQueueTimeMs, boolean blocking) {}
+
+    private final class Mailbox implements Runnable {
+        final String groupId;
+        private final ArrayDeque<QueuedTask> queue = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean retired;
+        private long lastActiveTime = System.currentTimeMillis();
+
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong droppedOverflow = new AtomicLong();
+        private final AtomicLong droppedExpired = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong totalWaitMs = new AtomicLong();
+        private volatile long lastWaitMs;
+        private volatile long maxWaitMs;
+
+        Mailbox(String groupId) {
+            this.groupId = groupId;
+        }
+
+        /** 入队；邮箱已被回收时返回 false，由调用方重新获取 */
+        boolean offer(QueuedTask task) {
+            boolean needSchedule;
+            synchronized (this) {
+                if (retired) return false;
+                submitted.incrementAndGet();
+                lastActiveTime = task.submitTime();
+
+                if (task.coalesceKey() != null && replaceSameKey(task)) {
+                    return true;
+                }
+                if (queue.size() >= mailboxCapacity) {
+                    queue.pollFirst();
+                    long dropped = droppedOverflow.incrementAndGet();
+                    logger.debug("群 {} 邮箱已满({})，丢弃最旧任务，累计丢弃 {}", groupId, mailboxCapacity, dropped);
+                }
+                queue.addLast(task);
+                needSchedule = !scheduled;
+                scheduled = true;
+            }
+            if (needSchedule) {
+                schedule();
+            }
+            return true;
+        }
+
+        /** 用新任务替换队列中同键的旧任务，保持原位置 */
+        private boolean replaceSameKey(QueuedTask task) {
+            if (queue.isEmpty()) return false;
+            ArrayDeque<QueuedTask> rebuilt = new ArrayDeque<>(queue.size());
+            boolean replaced = false;
+            for (Iterator<QueuedTask> it = queue.iterator(); it.hasNext(); ) {
+                QueuedTask existing = it.next();
+                if (!replaced && task.coalesceKey().equals(existing.coalesceKey())) {
+                    rebuilt.addLast(task);
+                    replaced = true;
+                } else {
+                    rebuilt.addLast(existing);
+                }
+            }
+            if (replaced) {
+                queue.clear();
+                queue.addAll(rebuilt);
+                coalesced.incrementAndGet();
+            }
+            return replaced;
+        }
+
+        private void schedule() {
+            try {
+                mailboxWorkers.execute(this);
+            } catch (RejectedExecutionException e) {
+                logger.warn("群 {} 邮箱调度被拒绝（执行器已关闭）", groupId);
+                synchronized (this) {
+                    scheduled = false;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            long turnStart = System.currentTimeMillis();
+            for (int i = 0; i < MAX_BATCH_PER_TURN && System.currentTimeMillis() - turnStart < MAX_TURN_MS; i++) {
+                QueuedTask next;
+                synchronized (this) {
+                    next = queue.pollFirst();
+                    if (next == null) {
+                        scheduled = false;
+                        lastActiveTime = System.currentTimeMillis();
+                        return;
+                    }
+                }
+                if (runOne(next)) {
+                    // 阻塞任务已交给其他线程，它结束后再继续本邮箱（scheduled 保持 true）
+                    return;
+                }
+            }
+            // 本轮配额（条数或时长）用完，若仍有任务则重新排到线程池队尾，避免单群长期独占线程
+            boolean more;
+            synchronized (this) {
+                more = !queue.isEmpty();
+                if (!more) {
+                    scheduled = false;
+                    lastActiveTime = System.currentTimeMillis();
+                }
+            }
+            if (more) {
+                schedule();
+            }
+        }
+
+        /** 执行一个任务；阻塞任务交给 blockingWorkers 时返回 true */
+        private boolean runOne(QueuedTask task) {
+            long waited = System.currentTimeMillis() - task.submitTime();
+            lastWaitMs = waited;
+            if (waited > maxWaitMs) maxWaitMs = waited;
+            totalWaitMs.addAndGet(waited);
+
+            if (waited > task.maxQueueTimeMs()) {
+                droppedExpired.incrementAndGet();
+                logger.debug("丢弃过期任务 group={} 排队{}ms", groupId, waited);
+                return false;
+            }
+            if (waited > 500) {
+                logger.debug("任务排队{}ms group={}", waited, groupId);
+            }
+            if (task.blocking()) {
+                try {
+                    blockingWorkers.execute(() -> {
+                        runGuarded(task);
+                        schedule();
+                    });
+                    return true;
+                } catch (RejectedExecutionException e) {
+                    // 执行器已关闭，就地执行
+                }
+            }
+            runGuarded(task);
+            return false;
+        }
+
+        private void runGuarded(QueuedTask task) {
+            try {
+                task.task().run();
+            } catch (Throwable t) {
+                // Error 也要拦住：否则 run() 带着 scheduled = true 退出，这个群的邮箱再也不会被调度
+                logger.error("群 {} 任务执行异常", groupId, t);
+            } finally {
+                executed.incrementAndGet();
+            }
+        }
+
+        synchronized boolean retireIfIdle(long now) {
+            if (scheduled || !queue.isEmpty() || now - lastActiveTime < idleTimeoutMs) {
+                return false;
+            }
+            retired = true;
+            return true;
+        }
+
+        GroupStats snapshot() {
+            int depth;
+            synchronized (this) {
+                depth = queue.size();
+            }
+            long exec = executed.get() + droppedExpired.get();
+            double avg = exec == 0 ? 0 : (double) totalWaitMs.get() / exec;
+            return new GroupStats(groupId, depth, submitted.get(), executed.get(),
+                    droppedOverflow.get(), droppedExpired.get(), coalesced.get(),
+                    lastWaitMs, maxWaitMs, avg);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.start.service;
+
+import com.start.config.BotConfig;
+import com.start.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 统一的异步 LLM HTTP 客户端，所有聊天 / Agent 模型调用都经由这里发出。
+ * <ul>
+ *     <li>基于 {@link HttpClient#sendAsync}，优先 HTTP/2，多路复用同一连接</li>
+ *     <li>按端点（聊天 / Agent）限制并发，超出的请求排队，不占用线程</li>
+ *     <li>超时、连接错误、429/5xx 按带抖动的指数退避重试，退避由调度器定时触发而不是 sleep</li>
+ *     <li>可选请求对冲：请求耗时超过该端点 P95（或固定阈值）仍未返回时，再发一份，先到先用，另一份取消</li>
+ *     <li>按端点统计请求数、重试、对冲、HTTP 版本和延迟直方图</li>
+ * </ul>
+ */
+public class LlmClient {
+    private static final Logger logger = LoggerFactory.getLogger(LlmClient.class);
+
+    /** 调用端点，各自独立限流和统计 */
+    public enum Endpoint { CHAT, AGENT }
+
+    /** 对冲前至少需要的样本数（自适应模式） */
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    /** 自适应对冲的最小延迟，避免短请求被频繁重复发送 */
+    private static final long HEDGE_MIN_DELAY_MS = 2_000;
+
+    private static final LlmClient INSTANCE = new LlmClient();
+
+    public static LlmClient getInstance() {
+        return INSTANCE;
+    }
+
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Endpoint, EndpointState> endpoints = new EnumMap<>(Endpoint.class);
+    private final long retryBaseMs;
+    private final long retryMaxMs;
+    private final boolean hedgeEnabled;
+    private final long hedgeDelayMs;
+
+    private LlmClient() {
+        AtomicInteger seq = new AtomicInteger();
+        ExecutorService httpExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "LLM-Http-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(BotConfig.getHttpConnectTimeoutMs()))
+                .executor(httpExecutor)
+                .build();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LLM-Retry-Scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.retryBaseMs = Math.max(50, BotConfig.getLlmRetryBaseMs());
+        this.retryMaxMs = Math.max(retryBaseMs, BotConfig.getLlmRetryMaxMs());
+        this.hedgeEnabled = BotConfig.isLlmHedgeEnabled();
+        this.hedgeDelayMs = BotConfig.getLlmHedgeDelayMs();
+        endpoints.put(Endpoint.CHAT, new EndpointState(Endpoint.CHAT, BotConfig.getLlmChatMaxConcurrency()));
+        endpoints.put(Endpoint.AGENT, new EndpointState(Endpoint.AGENT, BotConfig.getLlmAgentMaxConcurrency()));
+        logger.info("🌐 LLM 客户端已初始化 (chat 并发={}, agent 并发={}, 对冲={})",
+                BotConfig.getLlmChatMaxConcurrency(), BotConfig.getLlmAgentMaxConcurrency(), hedgeEnabled);
+    }
+
+    /**
+     * 异步发送请求。
+     *
+     * @param endpoint   所属端点（决定并发限制和统计）
+     * @param request    请求（需自带超时）
+     * @param handler    响应体处理器
+     * @param maxRetries 最大重试次数（不含首次）
+     * @param hedge      是否允许对冲（流式请求不要开）
+     * @return 最终响应；429/5xx 在重试耗尽后仍作为响应返回，由调用方判断状态码
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(Endpoint endpoint, HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> handler,
+                                                            int maxRetries, boolean hedge) {
+        EndpointState ep = endpoints.get(endpoint);
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        ep.requests.incrementAndGet();
+        attempt(ep, request, handler, 0, Math.max(0, maxRetries), hedge && hedgeEnabled, System.nanoTime(), result);
+        return result;
+    }
+
+    /** 同步等待的便捷方法，异常原样抛出（如 {@link HttpTimeoutException}） */
+    public <T> HttpResponse<T> send(Endpoint endpoint, HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                    int maxRetries, boolean hedge) throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> future = sendAsync(endpoint, request, handler, maxRetries, hedge);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException(cause);
+        }
+    }
+
+    /** 字符串响应的同步便捷方法 */
+    public HttpResponse<String> send(Endpoint endpoint, HttpRequest request, int maxRetries)
+            throws IOException, InterruptedException {
+        return send(endpoint, request, HttpResponse.BodyHandlers.ofString(), maxRetries, true);
+    }
+
+    private <T> void attempt(EndpointState ep, HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                             int attemptNo, int maxRetries, boolean hedge, long startNanos,
+                             CompletableFuture<HttpResponse<T>> result) {
+        if (result.isDone()) return;
+        CompletableFuture<HttpResponse<T>> single = hedge
+                ? hedged(ep, request, handler)
+                : ep.limiter.submit(() -> httpClient.sendAsync(request, handler));
+        // 调用方取消时同时取消底层请求
+        result.whenComplete((r, e) -> { if (result.isCancelled()) single.cancel(true); });
+
+        single.whenComplete((resp, err) -> {
+            if (result.isDone()) return;
+            Throwable cause = unwrap(err);
+            boolean retryable = cause != null ? isRetryable(cause) : isRetryableStatus(resp.statusCode());
+            if (retryable && attemptNo < maxRetries) {
+                long delay = backoffMs(attemptNo, resp);
+                ep.retries.incrementAndGet();
+                logger.warn("🔁 LLM {} 第{}次重试，{}ms 后发起（原因: {}）", ep.endpoint, attemptNo + 1, delay,
+                        cause != null ? cause.getClass().getSimpleName() : "HTTP " + resp.statusCode());
+                discard(resp);
+                scheduler.schedule(() -> attempt(ep, request, handler, attemptNo + 1, maxRetries, hedge, startNanos, result),
+                        delay, TimeUnit.MILLISECONDS);
+                return;
+            }
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            if (cause != null) {
+                ep.failures.incrementAndGet();
+                result.completeExceptionally(cause);
+            } else {
+                ep.latency.record(elapsedMs);
+                ep.recordVersion(resp.version());
+                if (resp.statusCode() == 200) ep.successes.incrementAndGet();
+                else ep.failures.incrementAndGet();
+                result.complete(resp);
+            }
+        });
+    }
+
+    /** 发起一次请求，超过对冲阈值仍未返回时再发一份，先成功者胜出 */
+    private <T> CompletableFuture<HttpResponse<T>> hedged(EndpointState ep, HttpRequest request,
+                                                          HttpResponse.BodyHandler<T> handler) {
+        CompletableFuture<HttpResponse<T>> primary = ep.limiter.submit(() -> httpClient.sendAsync(request, handler));
+        long delay = ep.hedgeDelayMs(hedgeDelayMs);
+        if (delay <= 0) return primary;
+
+        CompletableFuture<HttpResponse<T>> winner = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicReference<CompletableFuture<HttpResponse<T>>> backup = new AtomicReference<>();
+
+        primary.whenComplete((r, e) -> settle(winner, outstanding, r, e, false, ep));
+        ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            if (winner.isDone()) return;
+            // 对冲请求不排队：没有空闲并发额度就不发
+            CompletableFuture<HttpResponse<T>> second = ep.limiter.trySubmit(() -> httpClient.sendAsync(request, handler));
+            if (second == null) return;
+            ep.hedges.incrementAndGet();
+            outstanding.incrementAndGet();
+            backup.set(second);
+            logger.debug("🪁 LLM {} 请求超过 {}ms 未返回，发起对冲请求", ep.endpoint, delay);
+            second.whenComplete((r, e) -> settle(winner, outstanding, r, e, true, ep));
+        }, delay, TimeUnit.MILLISECONDS);
+
+        winner.whenComplete((r, e) -> {
+            timer.cancel(false);
+            if (!primary.isDone()) primary.cancel(true);
+            CompletableFuture<HttpResponse<T>> second = backup.get();
+            if (second != null && !second.isDone()) second.cancel(true);
+        });
+        return winner;
+    }
+
+    /** 对冲竞速结算：先拿到 200 的胜出；全部结束仍无 200 时，用最后一个结果（异常或响应） */
+    private <T> void settle(CompletableFuture<HttpResponse<T>> winner, AtomicInteger outstanding,
+                            HttpResponse<T> resp, Throwable err, boolean fromHedge, EndpointState ep) {
+        int left = outstanding.decrementAndGet();
+        if (err == null && resp != null && resp.statusCode() == 200) {
+            if (winner.complete(resp)) {
+                if (fromHedge) ep.hedgeWins.incrementAndGet();
+            } else {
+                discard(resp);
+            }
+            return;
+        }
+        if (left > 0) {
+            discard(resp);
+            return;
+        }
+        if (err != null) {
+            winner.completeExceptionally(err);
+        } else if (!winner.complete(resp)) {
+            discard(resp);
+        }
+    }
+
+    private long backoffMs(int attemptNo, HttpResponse<?> resp) {
+        long exp = Math.min(retryMaxMs, retryBaseMs << Math.min(attemptNo, 16));
+        // equal jitter：一半固定，一半随机，避免多个请求同时重试
+        long delay = exp / 2 + ThreadLocalRandom.current().nextLong(exp / 2 + 1);
+        if (resp != null) {
+            long retryAfter = resp.headers().firstValue("Retry-After").map(v -> {
+                try { return Long.parseLong(v.trim()) * 1000; } catch (NumberFormatException e) { return 0L; }
+            }).orElse(0L);
+            if (retryAfter > delay) delay = Math.min(retryAfter, 30_000);
+        }
+        return delay;
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    private static boolean isRetryable(Throwable t) {
+        if (t instanceof CancellationException) return false;
+        return t instanceof HttpTimeoutException || t instanceof IOException;
+    }
+
+    private static boolean isRetryableStatus(int status) {
+        return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    /** 丢弃不用的响应；流式响应体需要关闭以释放连接 */
+    private static void discard(HttpResponse<?> resp) {
+        if (resp != null && resp.body() instanceof AutoCloseable c) {
+            try { c.close(); } catch (Exception ignored) {}
+        }
+    }
+
+    /**
+     * 为流式响应体加空闲看门狗：超过 {@code idleMs} 没有 {@link BodyWatchdog#touch()}，就关闭响应体。
+     * 请求超时只管到响应头为止，之后读取响应体没有期限；关闭后阻塞在读取上的线程会收到 IOException 而不是一直挂住。
+     */
+    public BodyWatchdog watchBody(AutoCloseable body, long idleMs) {
+        return new BodyWatchdog(body, idleMs);
+    }
+
+    public final class BodyWatchdog implements AutoCloseable {
+        private final AutoCloseable body;
+        private final long idleNanos;
+        private final ScheduledFuture<?> check;
+        private volatile long lastActivity = System.nanoTime();
+        private volatile boolean expired;
+
+        private BodyWatchdog(AutoCloseable body, long idleMs) {
+            this.body = body;
+            this.idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, idleMs));
+            long period = Math.max(100, Math.min(1000, idleMs / 4));
+            this.check = scheduler.scheduleAtFixedRate(this::check, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        /** 收到数据时调用 */
+        public void touch() {
+            lastActivity = System.nanoTime();
+        }
+
+        /** 是否因空闲超时关闭了响应体 */
+        public boolean isExpired() {
+            return expired;
+        }
+
+        private void check() {
+            if (expired || System.nanoTime() - lastActivity < idleNanos) return;
+            expired = true;
+            check.cancel(false);
+            logger.warn("⏱️ 流式响应 {}ms 内没有新数据，关闭连接", TimeUnit.NANOSECONDS.toMillis(idleNanos));
+            try { body.close(); } catch (Exception ignored) {}
+        }
+
+        @Override
+        public void close() {
+            check.cancel(false);
+        }
+    }
+
+    /** 各端点统计快照 */
+    public Map<Endpoint, EndpointStats> getStats() {
+        Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        endpoints.forEach((k, v) -> stats.put(k, v.snapshot()));
+        return stats;
+    }
+
+    /**
+     * 端点统计
+     *
+     * @param requests       逻辑请求数（不含重试/对冲）
+     * @param successes      最终 200 的请求数
+     * @param failures       最终失败（异常或非 200）
+     * @param retries        重试次数
+     * @param hedges         发出的对冲请求数
+     * @param hedgeWins      对冲请求先返回的次数
+     * @param inFlight       正在进行的 HTTP 请求
+     * @param queued         排队等待并发额度的请求
+     * @param maxConcurrency 并发上限
+     * @param http2Responses 以 HTTP/2 返回的响应数
+     * @param http1Responses 以 HTTP/1.1 返回的响应数
+     * @param latency        端到端延迟（含重试）
+     */
+    public record EndpointStats(long requests, long successes, long failures, long retries, long hedges,
+                                long hedgeWins, int inFlight, int queued, int maxConcurrency,
+                                long http2Responses, long http1Responses, LatencyHistogram.Snapshot latency) {}
+
+    private static final class EndpointState {
+        final Endpoint endpoint;
+        final Limiter limiter;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong hedges = new AtomicLong();
+        final AtomicLong hedgeWins = new AtomicLong();
+        final AtomicLong http2 = new AtomicLong();
+        final AtomicLong http1 = new AtomicLong();
+
+        EndpointState(Endpoint endpoint, int maxConcurrency) {
+            this.endpoint = endpoint;
+            this.limiter = new Limiter(Math.max(1, maxConcurrency));
+        }
+
+        /** 固定阈值优先；否则用 P95（样本不足时不对冲） */
+        long hedgeDelayMs(long configured) {
+            if (configured > 0) return configured;
+            if (latency.getCount() < HEDGE_MIN_SAMPLES) return 0;
+            return Math.max(HEDGE_MIN_DELAY_MS, latency.percentile(0.95));
+        }
+
+        void recordVersion(HttpClient.Version v) {
+            if (v == HttpClient.Version.HTTP_2) http2.incrementAndGet();
+            else http1.incrementAndGet();
+        }
+
+        EndpointStats snapshot() {
+            return new EndpointStats(requests.get(), successes.get(), failures.get(), retries.get(), hedges.get(),
+                    hedgeWins.get(), limiter.inFlight.get(), limiter.waiters.size(), limiter.max,
+                    http2.get(), http1.get(), latency.snapshot());
+        }
+    }
+
+    /**
+     * 非阻塞并发限制器：拿不到额度的请求进等待队列，前一个请求完成时再启动，不阻塞任何线程。
+     */
+    private static final class Limiter {
+        final int max;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final Queue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+
+        Limiter(int max) {
+            this.max = max;
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            AtomicBoolean started = new AtomicBoolean();
+            Runnable run = () -> {
+                if (!started.compareAndSet(false, true)) return;
+                if (result.isDone()) { release(); return; }
+                start(task, result);
+            };
+            waiters.add(run);
+            drain();
+            // 排队中被取消：从队列里移除，不再启动
+            result.whenComplete((r, e) -> { if (result.isCancelled()) waiters.remove(run); });
+            return result;
+        }
+
+        /** 有空闲额度时立即启动，否则返回 null */
+        <T> CompletableFuture<T> trySubmit(Supplier<CompletableFuture<T>> task) {
+            if (!tryAcquire()) return null;
+            CompletableFuture<T> result = new CompletableFuture<>();
+            start(task, result);
+            return result;
+        }
+
+        private <T> void start(Supplier<CompletableFuture<T>> task, CompletableFuture<T> result) {
+            CompletableFuture<T> inner;
+            try {
+                inner = task.get();
+            } catch (Throwable t) {
+                release();
+                result.completeExceptionally(t);
+                return;
+            }
+            inner.whenComplete((v, e) -> {
+                release();
+                if (e != null) result.completeExceptionally(e);
+                else result.complete(v);
+            });
+            result.whenComplete((v, e) -> { if (result.isCancelled()) inner.cancel(true); });
+        }
+
+        private boolean tryAcquire() {
+            int n;
+            do {
+                n = inFlight.get();
+                if (n >= max) return false;
+            } while (!inFlight.compareAndSet(n, n + 1));
+            return true;
+        }
+
+        private void release() {
+            inFlight.decrementAndGet();
+            drain();
+        }
+
+        private void drain() {
+            while (!waiters.isEmpty() && tryAcquire()) {
+                Runnable next = waiters.poll();
+                if (next == null) {
+                    inFlight.decrementAndGet();
+                    break;
+                }
+                next.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.start.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.start.model.MessageEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OneBot 帧解码器：先用流式 {@link JsonParser} 扫描顶层字段，决定丢弃后不再建树。
+ * <p>
+ * 扫描只读取 {@code echo / post_type / message_type / notice_type / group_id / user_id / self_id} 这几个标量，
+ * 其余字段（message、sender、data 等）直接 {@code skipChildren} 跳过，不分配节点。
+ * 一旦能判定丢弃（非 message 事件、非白名单群、机器人自己的消息等）立即停止扫描，
+ * 因此大群里被过滤掉的帧只付出扫描到判定字段为止的代价。
+ * </p>
+ * 只有三类帧会第二次解析成 {@link JsonNode}：有等待者的 API 响应、通过过滤的消息事件
+ * （包装为 {@link MessageEvent}，回复等仍需要原始树），以及白名单群里调用方关心的通知事件。
+ * <p>
+ * 约定：OneBot 事件不带 echo，API 响应不带 post_type，因此二者可以在扫描中提前判定。
+ * </p>
+ */
+public class OneBotFrameDecoder {
+
+    /** 解码结果类型 */
+    public enum Kind { DROPPED, API_RESPONSE, MESSAGE, NOTICE }
+
+    /**
+     * @param kind    结果类型
+     * @param echo    API 响应的 echo（其他类型为 null）
+     * @param json    API 响应或通知事件的完整树（其他类型为 null）
+     * @param message 消息事件（其他类型为 null）
+     */
+    public record Frame(Kind kind, String echo, JsonNode json, MessageEvent message) {
+        static final Frame DROPPED = new Frame(Kind.DROPPED, null, null, null);
+    }
+
+    /** 过滤条件，由调用方提供（白名单、待完成的 API 请求） */
+    public interface Filter {
+        /** 是否有等待该 echo 的请求 */
+        boolean acceptEcho(String echo);
+
+        boolean acceptGroup(long groupId);
+
+        boolean acceptPrivate(long userId);
+
+        /** 是否需要该类型的通知事件（notice_type），只对群通知生效 */
+        default boolean acceptNotice(String noticeType) {
+            return false;
+        }
+    }
+
+    public record DecoderStats(long frames, long apiResponses, long messages, long notices, long dropped,
+                               long earlyExits, long errors) {}
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private final Filter filter;
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong apiResponses = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong notices = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong earlyExits = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public OneBotFrameDecoder(Filter filter) {
+        this.filter = filter;
+    }
+
+    /** 帧数据来源，允许对同一份数据开两次解析器 */
+    @FunctionalInterface
+    private interface Source {
+        JsonParser open() throws IOException;
+    }
+
+    /** 解码文本帧 */
+    public Frame decode(String text) throws IOException {
+        return decode(() -> FACTORY.createParser(text));
+    }
+
+    /** 解码 UTF-8 字节帧，不改变 buffer 的 position */
+    public Frame decode(ByteBuffer buffer) throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        if (view.hasArray()) {
+            byte[] array = view.array();
+            int offset = view.arrayOffset() + view.position();
+            int length = view.remaining();
+            return decode(() -> FACTORY.createParser(array, offset, length));
+        }
+        return decode(() -> FACTORY.createParser(new ByteBufferBackedInputStream(view.duplicate())));
+    }
+
+    private Frame decode(Source source) throws IOException {
+        frames.incrementAndGet();
+        Header h;
+        try (JsonParser p = source.open()) {
+            h = scan(p);
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            throw e;
+        }
+
+        if (h.verdict == Verdict.DROP) {
+            dropped.incrementAndGet();
+            if (h.early) earlyExits.incrementAndGet();
+            return Frame.DROPPED;
+        }
+        JsonNode tree;
+        try (JsonParser p = source.open()) {
+            tree = MAPPER.readTree(p);
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            throw e;
+        }
+        if (h.verdict == Verdict.API_RESPONSE) {
+            apiResponses.incrementAndGet();
+            return new Frame(Kind.API_RESPONSE, h.echo, tree, null);
+        }
+        if (h.verdict == Verdict.NOTICE) {
+            notices.incrementAndGet();
+            return new Frame(Kind.NOTICE, null, tree, null);
+        }
+        messages.incrementAndGet();
+        return new Frame(Kind.MESSAGE, null, null, MessageEvent.of(tree));
+    }
+
+    // ================== 扫描 ==================
+
+    private enum Verdict { PENDING, DROP, API_RESPONSE, MESSAGE, NOTICE }
+
+    /** 扫描过程中收集的顶层字段 */
+    private static final class Header {
+        String echo;
+        String postType;
+        String messageType;
+        String noticeType;
+        long groupId, userId, selfId;
+        boolean hasGroupId, hasUserId, hasSelfId;
+        Verdict verdict = Verdict.PENDING;
+        boolean early;
+    }
+
+    private Header scan(JsonParser p) throws IOException {
+        Header h = new Header();
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            h.verdict = Verdict.DROP;
+            return h;
+        }
+        JsonToken t;
+        while ((t = p.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+            switch (name) {
+                case "echo" -> h.echo = p.getValueAsString();
+                case "post_type" -> h.postType = p.getValueAsString();
+                case "message_type" -> h.messageType = p.getValueAsString();
+                case "notice_type" -> h.noticeType = p.getValueAsString();
+                case "group_id" -> { h.groupId = p.getValueAsLong(); h.hasGroupId = true; }
+                case "user_id" -> { h.userId = p.getValueAsLong(); h.hasUserId = true; }
+                case "self_id" -> { h.selfId = p.getValueAsLong(); h.hasSelfId = true; }
+                default -> { continue; }
+            }
+            Verdict v = evaluate(h, false);
+            if (v != Verdict.PENDING) {
+                h.verdict = v;
+                h.early = true;
+                return h;
+            }
+        }
+        if (t != JsonToken.END_OBJECT) {
+            throw new IOException("帧不是完整的 JSON 对象");
+        }
+        h.verdict = evaluate(h, true);
+        return h;
+    }
+
+    /**
+     * 判定帧的去留；{@code complete} 为 false 时缺失的字段视为未知，只做能确定的判定
+     */
+    private Verdict evaluate(Header h, boolean complete) {
+        if (h.echo != null) {
+            if (filter.acceptEcho(h.echo)) return Verdict.API_RESPONSE;
+            if (h.postType == null) return complete ? Verdict.DROP : Verdict.PENDING;
+        }
+        if ("notice".equals(h.postType)) return evaluateNotice(h, complete);
+        if (h.postType != null && !"message".equals(h.postType)) return Verdict.DROP;
+        if (h.hasUserId && h.hasSelfId && h.userId == h.selfId) return Verdict.DROP;
+        if (h.messageType != null) {
+            switch (h.messageType) {
+                case "group" -> {
+                    if (h.hasGroupId && !filter.acceptGroup(h.groupId)) return Verdict.DROP;
+                }
+                case "private" -> {
+                    if (h.hasUserId && !filter.acceptPrivate(h.userId)) return Verdict.DROP;
+                }
+                default -> { return Verdict.DROP; }
+            }
+        }
+        if (!complete) return Verdict.PENDING;
+        if (h.postType == null || h.messageType == null) return Verdict.DROP;
+        // 缺失的 id 按 0 处理，与原先 path().asLong() 一致
+        if ((h.hasUserId ? h.userId : 0) == (h.hasSelfId ? h.selfId : 0)) return Verdict.DROP;
+        if ("group".equals(h.messageType) && !h.hasGroupId && !filter.acceptGroup(0)) return Verdict.DROP;
+        if ("private".equals(h.messageType) && !h.hasUserId && !filter.acceptPrivate(0)) return Verdict.DROP;
+        return Verdict.MESSAGE;
+    }
+
+    /** 通知事件：只要调用方声明需要的类型，且来自白名单群 */
+    private Verdict evaluateNotice(Header h, boolean complete) {
+        if (h.noticeType != null && !filter.acceptNotice(h.noticeType)) return Verdict.DROP;
+        if (h.hasGroupId && !filter.acceptGroup(h.groupId)) return Verdict.DROP;
+        if (!complete) return Verdict.PENDING;
+        return h.noticeType != null && h.hasGroupId ? Verdict.NOTICE : Verdict.DROP;
+    }
+
+    // ================== 统计 ==================
+
+    public DecoderStats getStats() {
+        return new DecoderStats(frames.get(), apiResponses.get(), messages.get(), notices.get(), dropped.get(),
+                earlyExits.get(), errors.get());
+    }
+}
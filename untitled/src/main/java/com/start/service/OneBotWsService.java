@@ -0,0 +1,281 @@
+// com/start/service/OneBotWsService.java
+
+package com.start.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.start.Main;
+import com.start.config.BotConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OneBot WebSocket 服务
+ * <p>
+ * 群成员目录（QQ → 显示名）按群缓存：同一群的并发加载合并成一次 {@code get_group_member_list}，
+ * 快到期时后台提前刷新、期间继续返回旧快照；快照是不可变 Map，命中时直接返回不复制。
+ * 入群 / 退群 / 改名片通知（{@link #onNotice}）增量更新快照，不必整表重拉。
+ * 成员头像 URL 按成员缓存，同样合并并发请求。
+ * </p>
+ */
+public class OneBotWsService {
+    private static final Logger logger = LoggerFactory.getLogger(OneBotWsService.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Main botClient;
+
+    private static final long CACHE_EXPIRE_MS = 60 * 60 * 1000; // 1小时
+    /** 距离过期不足该时间时，访问会触发后台刷新 */
+    private static final long REFRESH_AHEAD_MS = 10 * 60 * 1000;
+    /** 刷新失败后的重试间隔，避免每次访问都打一次大请求 */
+    private static final long RETRY_BACKOFF_MS = 60 * 1000;
+    private static final long AVATAR_EXPIRE_MS = 24 * 60 * 60 * 1000;
+
+    /** 群号 → 成员目录 */
+    private final Map<Long, Directory> directories = new ConcurrentHashMap<>();
+    /** 群号:QQ → 头像 URL */
+    private final Map<String, AvatarEntry> avatars = new ConcurrentHashMap<>();
+
+    public OneBotWsService(Main botClient) {
+        this.botClient = botClient;
+    }
+
+    // ===== 原有方法：仅返回 QQ 列表（保持兼容）=====
+    public CompletableFuture<List<Long>> getGroupMemberQqListAsync(long groupId) {
+        return getGroupMemberDisplayNamesAsync(groupId)
+                .thenApply(map -> new ArrayList<>(map.keySet().stream()
+                        .map(Long::parseLong)
+                        .toList()));
+    }
+
+    /**
+     * 获取 QQ → 显示名 映射（不可修改的快照）
+     * <p>
+     * 新鲜时直接返回；临近过期时返回当前快照并在后台刷新；已过期或没有快照时等待加载，
+     * 加载失败则退回旧快照（没有旧快照返回空 Map）。
+     * </p>
+     */
+    public CompletableFuture<Map<String, String>> getGroupMemberDisplayNamesAsync(long groupId) {
+        Directory dir = directories.computeIfAbsent(groupId, Directory::new);
+        Snapshot snap = dir.snapshot;
+        long now = System.currentTimeMillis();
+
+        if (snap != null && now < snap.expireTime) {
+            if (snap.expireTime - now < REFRESH_AHEAD_MS) dir.refresh(now);
+            logger.debug("✅ 使用缓存的群 {} 成员昵称映射（{} 人）", groupId, snap.qqToName.size());
+            return CompletableFuture.completedFuture(snap.qqToName);
+        }
+        return dir.refresh(now).thenApply(s -> s != null ? s.qqToName : Map.<String, String>of());
+    }
+
+    // ===== 缓存结构：成员目录 =====
+
+    /** 不可变快照 */
+    private record Snapshot(Map<String, String> qqToName, long expireTime) {}
+
+    private final class Directory {
+        final long groupId;
+        volatile Snapshot snapshot;
+        /** 进行中的整表加载，null 表示没有 */
+        CompletableFuture<Snapshot> loading;
+        long lastFailure;
+
+        Directory(long groupId) {
+            this.groupId = groupId;
+        }
+
+        /**
+         * 触发（或加入进行中的）整表加载；最近失败过且仍有快照时不重试，直接返回当前快照
+         */
+        synchronized CompletableFuture<Snapshot> refresh(long now) {
+            if (loading != null) return loading;
+            Snapshot current = snapshot;
+            if (current != null && now - lastFailure < RETRY_BACKOFF_MS) {
+                return CompletableFuture.completedFuture(current);
+            }
+            CompletableFuture<Snapshot> f = load().handle((fresh, t) -> {
+                synchronized (this) {
+                    loading = null;
+                    if (fresh != null) {
+                        snapshot = fresh;
+                        return fresh;
+                    }
+                    lastFailure = System.currentTimeMillis();
+                    return snapshot;
+                }
+            });
+            // load 同步失败时 handle 已执行完，不能再挂上去
+            if (!f.isDone()) loading = f;
+            return f;
+        }
+
+        /** 加载整表，失败返回 null */
+        private CompletableFuture<Snapshot> load() {
+            logger.info("🔄 正在加载群 {} 的完整成员信息...", groupId);
+            ObjectNode params = MAPPER.createObjectNode();
+            params.put("group_id", groupId);
+
+            return botClient.callOneBotApi("get_group_member_list", params, BotConfig.getOneBotApiHeavyTimeoutMs())
+                    .thenApply(response -> {
+                        if (response == null || !"ok".equals(response.path("status").asText())) {
+                            logger.warn("❌ 群 {} 成员列表 API 失败", groupId);
+                            return null;
+                        }
+
+                        JsonNode data = response.path("data");
+                        if (!data.isArray()) {
+                            logger.warn("❌ 群 {} 返回数据不是数组", groupId);
+                            return null;
+                        }
+
+                        Map<String, String> qqToName = new HashMap<>(data.size() * 4 / 3 + 1);
+                        for (JsonNode member : data) {
+                            long userId = member.path("user_id").asLong();
+                            if (userId <= 10000) continue; // 过滤无效账号
+                            qqToName.put(String.valueOf(userId), displayName(member, userId));
+                        }
+
+                        logger.info("✅ 成功缓存群 {} 的 {} 名成员（含昵称）", groupId, qqToName.size());
+                        return new Snapshot(Collections.unmodifiableMap(qqToName),
+                                System.currentTimeMillis() + CACHE_EXPIRE_MS);
+                    });
+        }
+
+        /** 写时复制地修改单个成员；还没有快照时忽略（下次整表加载会带上） */
+        synchronized void update(String qq, String name) {
+            Snapshot current = snapshot;
+            if (current == null) return;
+            if (name == null ? !current.qqToName.containsKey(qq) : name.equals(current.qqToName.get(qq))) return;
+            Map<String, String> copy = new HashMap<>(current.qqToName);
+            if (name == null) copy.remove(qq);
+            else copy.put(qq, name);
+            snapshot = new Snapshot(Collections.unmodifiableMap(copy), current.expireTime);
+        }
+    }
+
+    private static String displayName(JsonNode member, long userId) {
+        String card = member.path("card").asText();
+        String nickname = member.path("nickname").asText();
+        return !card.isEmpty() ? card : (!nickname.isEmpty() ? nickname : String.valueOf(userId));
+    }
+
+    // ===== 通知事件：增量更新 =====
+
+    /**
+     * 处理群成员变动通知（group_increase / group_decrease / group_card），在 WebSocket 读线程调用
+     */
+    public void onNotice(JsonNode notice) {
+        String type = notice.path("notice_type").asText();
+        long groupId = notice.path("group_id").asLong();
+        long userId = notice.path("user_id").asLong();
+        if (groupId == 0 || userId <= 10000) return;
+        Directory dir = directories.get(groupId);
+        String qq = String.valueOf(userId);
+
+        switch (type) {
+            case "group_decrease" -> {
+                if (dir != null) dir.update(qq, null);
+                avatars.remove(groupId + ":" + userId);
+                logger.debug("👋 群 {} 成员 {} 已移出目录", groupId, userId);
+            }
+            case "group_increase" -> {
+                // 通知里没有昵称，先用 QQ 占位，再查一次成员信息补上
+                if (dir != null) dir.update(qq, qq);
+                refreshMember(groupId, userId);
+            }
+            case "group_card" -> {
+                String card = notice.path("card_new").asText();
+                if (!card.isEmpty()) {
+                    if (dir != null) dir.update(qq, card);
+                } else {
+                    // 清空名片后显示名回落到昵称，需要查一次
+                    refreshMember(groupId, userId);
+                }
+            }
+            default -> { }
+        }
+    }
+
+    /** 查询单个成员信息，同时更新目录里的显示名和头像缓存 */
+    private void refreshMember(long groupId, long userId) {
+        ObjectNode params = MAPPER.createObjectNode();
+        params.put("group_id", groupId);
+        params.put("user_id", userId);
+        botClient.callOneBotApi("get_group_member_info", params).thenAccept(response -> {
+            if (response == null || !"ok".equals(response.path("status").asText())) return;
+            JsonNode data = response.path("data");
+            Directory dir = directories.get(groupId);
+            if (dir != null) dir.update(String.valueOf(userId), displayName(data, userId));
+            String avatarUrl = data.path("avatar_url").asText();
+            if (!avatarUrl.isEmpty()) {
+                avatars.put(groupId + ":" + userId, new AvatarEntry(CompletableFuture.completedFuture(avatarUrl),
+                        System.currentTimeMillis() + AVATAR_EXPIRE_MS));
+            }
+        });
+    }
+
+    // 同步方法（可选）
+    public Map<String, String> getGroupMemberDisplayNames(long groupId) {
+        try {
+            return getGroupMemberDisplayNamesAsync(groupId).get(12, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.error("⚠️ 同步获取群成员昵称失败", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    // ===== 头像 =====
+
+    private record AvatarEntry(CompletableFuture<String> url, long expireTime) {}
+
+    /**
+     * 获取单个群成员的头像 URL（通过 get_group_member_info），按成员缓存，并发请求合并
+     */
+    public CompletableFuture<String> getGroupMemberAvatarUrlAsync(long groupId, long userId) {
+        String key = groupId + ":" + userId;
+        long now = System.currentTimeMillis();
+        AvatarEntry cached = avatars.get(key);
+        if (cached != null && now < cached.expireTime) return cached.url;
+
+        AvatarEntry mine = new AvatarEntry(new CompletableFuture<>(), now + AVATAR_EXPIRE_MS);
+        AvatarEntry winner = avatars.compute(key, (k, old) -> old != null && now < old.expireTime ? old : mine);
+        if (winner != mine) return winner.url;
+
+        ObjectNode params = MAPPER.createObjectNode();
+        params.put("group_id", groupId);
+        params.put("user_id", userId);
+
+        botClient.callOneBotApi("get_group_member_info", params)
+                .thenApply(response -> {
+                    if (response == null || !"ok".equals(response.path("status").asText())) {
+                        logger.warn("❌ 获取群 {} 成员 {} 头像信息失败", groupId, userId);
+                        // 失败不缓存，下次重新请求
+                        avatars.remove(key, mine);
+                        return getDefaultAvatarUrl(userId); // 回退到默认头像
+                    }
+
+                    JsonNode data = response.path("data");
+                    String avatarUrl = data.path("avatar_url").asText();
+
+                    if (avatarUrl.isEmpty()) {
+                        logger.debug("群 {} 成员 {} 无 avatar_url，使用默认", groupId, userId);
+                        return getDefaultAvatarUrl(userId);
+                    }
+
+                    return avatarUrl;
+                })
+                .thenAccept(mine.url::complete);
+        return mine.url;
+    }
+
+    private String getDefaultAvatarUrl(long userId) {
+        // 腾讯官方默认头像（即使用户没设置也会返回此图）
+        return "https://q1.qlogo.cn/g?b=qq&nk=" + userId + "&s=640";
+    }
+}
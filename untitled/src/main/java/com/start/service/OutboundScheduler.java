@@ -0,0 +1,494 @@
+package com.start.service;
+
+import com.start.config.BotConfig;
+import com.start.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 出站消息调度器：所有群聊 / 私聊消息先进入这里，由单个发送线程按限速写入 WebSocket。
+ * <p>
+ * 限速用两层令牌桶：全局一个（整个账号的发送速率），每个发送目标（群 / 私聊 QQ）一个。
+ * 同一目标内按优先级出队，同优先级保持入队顺序；不同目标之间轮转，避免一个群刷屏饿死其他群。
+ * </p>
+ * 积压时的降级：
+ * <ul>
+ *     <li>目标积压达到 {@code outbound.merge-backlog} 条时，把同优先级的相邻纯文本气泡合并成一条发送</li>
+ *     <li>{@link Priority#PROACTIVE} 消息排队超过 {@code outbound.proactive-ttl-ms} 直接丢弃（过时的插话没有意义）</li>
+ *     <li>目标队列满时挤掉优先级更低的最旧消息，没有更低优先级的消息时丢弃新消息（保住已排队气泡的顺序）</li>
+ * </ul>
+ * 连接断开时发送暂停（{@link #pause}），消息留在各目标的有界队列里，重连后 {@link #resume} 按原顺序限速发出；
+ * 发送端拒收的消息放回队首并自动暂停，不会因为断线丢失。
+ */
+public class OutboundScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(OutboundScheduler.class);
+
+    /** 空闲目标的清理间隔 */
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+    /** 丢弃告警的最小间隔 */
+    private static final long DROP_WARN_INTERVAL_MS = 10_000;
+
+    /** 优先级，声明顺序即出队顺序 */
+    public enum Priority {
+        /** 对用户消息的直接回复 */
+        REPLY,
+        /** 定时提醒、订阅通知等 */
+        NOTIFY,
+        /** 主动插话、抛话题、复读等 */
+        PROACTIVE
+    }
+
+    public enum Kind { GROUP, PRIVATE }
+
+    /**
+     * 一条出站消息
+     *
+     * @param kind       群聊 / 私聊
+     * @param targetId   群号或 QQ
+     * @param viaGroupId 私聊的临时会话来源群，0 表示无
+     * @param text       消息内容（可含 CQ 码）
+     * @param priority   优先级
+     */
+    public record Outgoing(Kind kind, long targetId, long viaGroupId, String text, Priority priority) {}
+
+    /** 实际写出消息的一方（Main 负责组装 OneBot 请求并发送） */
+    @FunctionalInterface
+    public interface Sink {
+        /**
+         * @return false 表示连接不可用、消息未发出，调度器会把它放回队首并暂停发送
+         */
+        boolean deliver(Outgoing message);
+    }
+
+    public record PriorityStats(Priority priority, long enqueued, long sent, long merged, long dropped, int queued,
+                                LatencyHistogram.Snapshot queueTime) {}
+
+    private final Sink sink;
+    private final TokenBucket global;
+    private final int targetPerMinute;
+    private final int targetBurst;
+    private final int targetCapacity;
+    private final int mergeBacklog;
+    private final int mergeMaxChars;
+    private final long proactiveTtlMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    /** 以下状态均由 lock 保护 */
+    private final Map<String, Target> targets = new HashMap<>();
+    /** 每个优先级一个轮转队列，只放该优先级有待发消息的目标 */
+    private final List<ArrayDeque<Target>> active = new ArrayList<>();
+    private long lastSweep = System.currentTimeMillis();
+    /** poll 未取到时，距离下一个令牌可用的等待时间 */
+    private long waitMs;
+
+    private final Counters[] counters = new Counters[Priority.values().length];
+    private final AtomicLong lastDropWarn = new AtomicLong();
+    private final Thread sender;
+    private volatile boolean running = true;
+    /** 暂停期间只入队不发送（lock 保护写入） */
+    private volatile boolean paused;
+    /** 每次暂停 / 恢复加一（lock 保护写入），用来判断投递期间连接状态是否变过 */
+    private volatile long pauseEpoch;
+
+    public OutboundScheduler(Sink sink) {
+        this(sink, BotConfig.getOutboundGlobalPerMinute(), BotConfig.getOutboundGlobalBurst(),
+                BotConfig.getOutboundTargetPerMinute(), BotConfig.getOutboundTargetBurst(),
+                BotConfig.getOutboundTargetCapacity(), BotConfig.getOutboundMergeBacklog(),
+                BotConfig.getOutboundMergeMaxChars(), BotConfig.getOutboundProactiveTtlMs());
+    }
+
+    /**
+     * @param globalPerMinute 全局每分钟可发条数
+     * @param globalBurst     全局突发上限
+     * @param targetPerMinute 单个群 / 私聊每分钟可发条数
+     * @param targetBurst     单个群 / 私聊突发上限
+     * @param targetCapacity  单个目标的排队上限
+     * @param mergeBacklog    开始合并气泡的积压条数，&lt;= 1 表示不合并
+     * @param mergeMaxChars   合并后单条消息的最大字数
+     * @param proactiveTtlMs  主动消息的最长排队时间，&lt;= 0 表示不过期
+     */
+    public OutboundScheduler(Sink sink, int globalPerMinute, int globalBurst, int targetPerMinute, int targetBurst,
+                             int targetCapacity, int mergeBacklog, int mergeMaxChars, long proactiveTtlMs) {
+        this.sink = sink;
+        this.global = new TokenBucket(globalPerMinute, globalBurst);
+        this.targetPerMinute = targetPerMinute;
+        this.targetBurst = targetBurst;
+        this.targetCapacity = Math.max(1, targetCapacity);
+        this.mergeBacklog = mergeBacklog;
+        this.mergeMaxChars = mergeMaxChars;
+        this.proactiveTtlMs = proactiveTtlMs;
+        for (Priority p : Priority.values()) {
+            active.add(new ArrayDeque<>());
+            counters[p.ordinal()] = new Counters();
+        }
+
+        this.sender = new Thread(this::runLoop, "Outbound-Sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
+        logger.info("📮 出站调度器已启动: 全局 {}/min (突发 {}), 单目标 {}/min (突发 {})",
+                globalPerMinute, globalBurst, targetPerMinute, targetBurst);
+    }
+
+    // ================== 入队 ==================
+
+    public void enqueueGroup(long groupId, String text, Priority priority) {
+        enqueue(new Outgoing(Kind.GROUP, groupId, 0, text, priority));
+    }
+
+    public void enqueuePrivate(long userId, long viaGroupId, String text, Priority priority) {
+        enqueue(new Outgoing(Kind.PRIVATE, userId, viaGroupId, text, priority));
+    }
+
+    public void enqueue(Outgoing message) {
+        if (message.text() == null || message.text().isEmpty()) return;
+        Priority p = message.priority();
+        counters[p.ordinal()].enqueued.incrementAndGet();
+        String key = key(message);
+
+        Outgoing dropped = null;
+        lock.lock();
+        try {
+            Target t = targets.computeIfAbsent(key, k -> new Target());
+            if (t.size >= targetCapacity) {
+                dropped = t.evictFor(p);
+                if (dropped == null) {
+                    dropped = message;
+                    return;
+                }
+            }
+            t.add(new Pending(message, System.nanoTime()));
+            changed.signal();
+        } finally {
+            lock.unlock();
+            if (dropped != null) onDropped(dropped, "队列已满");
+        }
+    }
+
+    private static String key(Outgoing message) {
+        return (message.kind() == Kind.GROUP ? "g:" : "p:") + message.targetId();
+    }
+
+    // ================== 发送线程 ==================
+
+    private void runLoop() {
+        while (running) {
+            Pending next;
+            lock.lock();
+            try {
+                while ((next = paused ? null : poll()) == null) {
+                    if (!running) return;
+                    changed.await(paused ? SWEEP_INTERVAL_MS : waitMs, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+            deliver(next);
+        }
+    }
+
+    /** 取下一条可发送的消息；都不可发时设置 waitMs 并返回 null（持有 lock 调用） */
+    private Pending poll() {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep > SWEEP_INTERVAL_MS) sweepIdle(now);
+
+        long globalWait = global.waitMs(now);
+        if (globalWait > 0) {
+            waitMs = globalWait;
+            return null;
+        }
+        long minWait = SWEEP_INTERVAL_MS;
+        for (Priority p : Priority.values()) {
+            ArrayDeque<Target> ring = active.get(p.ordinal());
+            for (int n = ring.size(); n > 0; n--) {
+                Target t = ring.pollFirst();
+                if (p == Priority.PROACTIVE) t.expireProactive(now);
+                if (t.queue(p).isEmpty()) {
+                    t.inRing[p.ordinal()] = false; // 移出该优先级的轮转
+                    continue;
+                }
+                long wait = t.bucket.waitMs(now);
+                if (wait > 0) {
+                    ring.addLast(t);
+                    minWait = Math.min(minWait, wait);
+                    continue;
+                }
+                Pending head = t.take(p);
+                if (t.queue(p).isEmpty()) t.inRing[p.ordinal()] = false;
+                else ring.addLast(t);
+                t.bucket.take();
+                global.take();
+                return head;
+            }
+        }
+        waitMs = Math.max(1, minWait);
+        return null;
+    }
+
+    private void deliver(Pending pending) {
+        Outgoing m = pending.message;
+        long epoch = pauseEpoch;
+        boolean delivered;
+        try {
+            delivered = sink.deliver(m);
+        } catch (Exception e) {
+            logger.error("❌ 出站消息发送失败: {} {}", m.kind(), m.targetId(), e);
+            delivered = true;
+        }
+        if (!delivered) {
+            requeue(pending, epoch);
+            return;
+        }
+        Counters c = counters[m.priority().ordinal()];
+        c.queueTime.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.enqueuedNanos));
+        c.sent.incrementAndGet();
+    }
+
+    /**
+     * 未发出的消息放回目标队首并暂停，等 {@link #resume} 后按原顺序重发。
+     * 投递期间已经恢复过（重连在这之间完成）就不再暂停，否则会一直停到下一次断线
+     */
+    private void requeue(Pending pending, long epochAtDeliver) {
+        lock.lock();
+        try {
+            if (pauseEpoch == epochAtDeliver) {
+                paused = true;
+                pauseEpoch++;
+            }
+            Target t = targets.computeIfAbsent(key(pending.message), k -> new Target());
+            // 合并过的消息整条放回，容量可能暂时超出一条
+            t.addFirst(pending);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ================== 暂停 / 恢复 ==================
+
+    /** 暂停发送（连接断开），新消息照常入队 */
+    public void pause() {
+        lock.lock();
+        try {
+            paused = true;
+            pauseEpoch++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 恢复发送（重连成功），积压消息按限速发出 */
+    public void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            pauseEpoch++;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /** 清理已空且令牌已回满的目标（重建后状态相同） */
+    private void sweepIdle(long now) {
+        lastSweep = now;
+        targets.values().removeIf(t -> t.size == 0 && t.bucket.isFull(now));
+    }
+
+    private void onDropped(Outgoing m, String reason) {
+        counters[m.priority().ordinal()].dropped.incrementAndGet();
+        long now = System.currentTimeMillis();
+        long last = lastDropWarn.get();
+        if (now - last >= DROP_WARN_INTERVAL_MS && lastDropWarn.compareAndSet(last, now)) {
+            logger.warn("⚠️ 出站消息被丢弃（{}）: {} {} [{}]", reason, m.kind(), m.targetId(), m.priority());
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        sender.interrupt();
+    }
+
+    // ================== 合并 ==================
+
+    /** 只有纯文本（可含 @ 和表情）能合并；图片、语音、引用回复等保持独立 */
+    private static boolean mergeable(String text) {
+        int i = text.indexOf("[CQ:");
+        while (i >= 0) {
+            if (!text.startsWith("[CQ:at,", i) && !text.startsWith("[CQ:face,", i)) return false;
+            i = text.indexOf("[CQ:", i + 4);
+        }
+        return true;
+    }
+
+    // ================== 内部结构 ==================
+
+    private record Pending(Outgoing message, long enqueuedNanos) {}
+
+    private static final class Counters {
+        final AtomicLong enqueued = new AtomicLong();
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong merged = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final LatencyHistogram queueTime = new LatencyHistogram();
+    }
+
+    /** 单个发送目标：每个优先级一个 FIFO + 一个令牌桶（lock 保护） */
+    private final class Target {
+        final TokenBucket bucket = new TokenBucket(targetPerMinute, targetBurst);
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Pending>[] queues = new ArrayDeque[Priority.values().length];
+        final boolean[] inRing = new boolean[Priority.values().length];
+        int size;
+
+        Target() {
+            for (int i = 0; i < queues.length; i++) queues[i] = new ArrayDeque<>();
+        }
+
+        ArrayDeque<Pending> queue(Priority p) {
+            return queues[p.ordinal()];
+        }
+
+        void add(Pending pending) {
+            int p = pending.message.priority().ordinal();
+            if (!inRing[p]) {
+                inRing[p] = true;
+                active.get(p).addLast(this);
+            }
+            queues[p].addLast(pending);
+            size++;
+        }
+
+        void addFirst(Pending pending) {
+            int p = pending.message.priority().ordinal();
+            if (!inRing[p]) {
+                inRing[p] = true;
+                active.get(p).addFirst(this);
+            }
+            queues[p].addFirst(pending);
+            size++;
+        }
+
+        /** 取出队首；积压时把同优先级的相邻纯文本气泡合并进来 */
+        Pending take(Priority p) {
+            ArrayDeque<Pending> q = queue(p);
+            Pending head = q.pollFirst();
+            size--;
+            if (mergeBacklog <= 1 || size + 1 < mergeBacklog || !mergeable(head.message.text())) return head;
+
+            StringBuilder sb = new StringBuilder(head.message.text());
+            int merged = 0;
+            Pending next;
+            while ((next = q.peekFirst()) != null
+                    && next.message.viaGroupId() == head.message.viaGroupId()
+                    && mergeable(next.message.text())
+                    && sb.length() + 1 + next.message.text().length() <= mergeMaxChars) {
+                q.pollFirst();
+                size--;
+                sb.append('\n').append(next.message.text());
+                merged++;
+            }
+            if (merged == 0) return head;
+            counters[p.ordinal()].merged.addAndGet(merged);
+            Outgoing m = head.message;
+            return new Pending(new Outgoing(m.kind(), m.targetId(), m.viaGroupId(), sb.toString(), p), head.enqueuedNanos);
+        }
+
+        /**
+         * 队列满时腾位置：从最低优先级开始挤掉比新消息优先级低的最旧一条；
+         * 返回被挤掉的消息，挤不出来返回 null（丢弃新消息）
+         */
+        Outgoing evictFor(Priority incoming) {
+            for (int i = queues.length - 1; i > incoming.ordinal(); i--) {
+                Pending old = queues[i].pollFirst();
+                if (old != null) {
+                    size--;
+                    return old.message;
+                }
+            }
+            return null;
+        }
+
+        void expireProactive(long now) {
+            if (proactiveTtlMs <= 0) return;
+            ArrayDeque<Pending> q = queue(Priority.PROACTIVE);
+            long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(proactiveTtlMs);
+            Pending head;
+            while ((head = q.peekFirst()) != null && head.enqueuedNanos < deadline) {
+                q.pollFirst();
+                size--;
+                onDropped(head.message, "排队超时");
+            }
+        }
+    }
+
+    /** 令牌桶，按分钟速率连续补充（lock 保护） */
+    private static final class TokenBucket {
+        final double perMs;
+        final double capacity;
+        double tokens;
+        long last;
+
+        TokenBucket(int perMinute, int burst) {
+            this.perMs = Math.max(1, perMinute) / 60_000.0;
+            this.capacity = Math.max(1, burst);
+            this.tokens = capacity;
+            this.last = System.currentTimeMillis();
+        }
+
+        private void refill(long now) {
+            if (now > last) {
+                tokens = Math.min(capacity, tokens + (now - last) * perMs);
+                last = now;
+            }
+        }
+
+        /** 距下一个令牌的毫秒数，0 表示现在可取 */
+        long waitMs(long now) {
+            refill(now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / perMs);
+        }
+
+        void take() {
+            tokens -= 1;
+        }
+
+        boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+    }
+
+    // ================== 统计 ==================
+
+    public List<PriorityStats> getStats() {
+        int[] depth = new int[Priority.values().length];
+        lock.lock();
+        try {
+            for (Target t : targets.values()) {
+                for (Priority p : Priority.values()) depth[p.ordinal()] += t.queue(p).size();
+            }
+        } finally {
+            lock.unlock();
+        }
+        List<PriorityStats> list = new ArrayList<>();
+        for (Priority p : Priority.values()) {
+            Counters c = counters[p.ordinal()];
+            list.add(new PriorityStats(p, c.enqueued.get(), c.sent.get(), c.merged.get(), c.dropped.get(),
+                    depth[p.ordinal()], c.queueTime.snapshot()));
+        }
+        return list;
+    }
+}
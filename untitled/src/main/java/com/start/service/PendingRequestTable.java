@@ -0,0 +1,232 @@
+package com.start.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.start.util.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 在途 OneBot API 请求表：echo → 等待响应的 future。
+ * <p>
+ * echo 由进程前缀 + 单调递增序号组成，不会碰撞。超时由一个哈希时间轮统一处理：
+ * 每个请求登记时放入对应的槽，{@code OneBot-Timeout} 线程每个 tick 扫一个槽，
+ * 到期的请求从表中移除并以 {@link TimeoutException} 结束，不会像 {@code orTimeout} 那样把条目留在表里。
+ * 已完成的请求留在槽中等扫到时顺手丢弃，登记和完成都不需要锁。
+ * </p>
+ * 连接断开时 {@link #failAll} 让在途请求立即失败，调用方不必等到超时。
+ */
+public class PendingRequestTable {
+    private static final Logger logger = LoggerFactory.getLogger(PendingRequestTable.class);
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 512;
+    /** 每个 tick 最多从登记队列搬入时间轮的条数，防止突发登记拖慢扫描 */
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    /** 一个在途请求 */
+    private static final class Entry {
+        final String echo;
+        final String action;
+        final long startNanos = System.nanoTime();
+        final long timeoutMs;
+        final CompletableFuture<JsonNode> future = new CompletableFuture<>();
+        /** 时间轮上剩余的整圈数（仅 tick 线程访问） */
+        long rounds;
+
+        Entry(String echo, String action, long timeoutMs) {
+            this.echo = echo;
+            this.action = action;
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    public record ActionStats(long calls, long failures, long timeouts, LatencyHistogram.Snapshot latency) {}
+
+    private static final class ActionCounters {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong timeouts = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private final String prefix = "req_" + Long.toString(System.currentTimeMillis(), 36) + "_";
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentHashMap<String, Entry> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ActionCounters> actions = new ConcurrentHashMap<>();
+
+    /** 新登记的请求，由 tick 线程搬进时间轮 */
+    private final ConcurrentLinkedQueue<Entry> registrations = new ConcurrentLinkedQueue<>();
+    /** 时间轮槽，仅 tick 线程访问 */
+    @SuppressWarnings("unchecked")
+    private final List<Entry>[] wheel = new List[WHEEL_SIZE];
+    private long tick;
+    private final Thread ticker;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    public PendingRequestTable() {
+        for (int i = 0; i < WHEEL_SIZE; i++) wheel[i] = new ArrayList<>();
+        ticker = new Thread(this::runTicker, "OneBot-Timeout");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    // ================== 登记 / 完成 ==================
+
+    /** 登记结果：分配的 echo 和等待响应的 future */
+    public record Registration(String echo, CompletableFuture<JsonNode> future) {}
+
+    /**
+     * 登记一个请求，超时后 future 以 {@link TimeoutException} 结束
+     */
+    public Registration register(String action, long timeoutMs) {
+        String echo = prefix + sequence.incrementAndGet();
+        Entry e = new Entry(echo, action, Math.max(TICK_MS, timeoutMs));
+        inFlight.put(echo, e);
+        counters(action).calls.incrementAndGet();
+        registrations.add(e);
+        return new Registration(echo, e.future);
+    }
+
+    /** 是否有等待该 echo 的请求 */
+    public boolean contains(String echo) {
+        return inFlight.containsKey(echo);
+    }
+
+    /**
+     * 用响应完成请求
+     *
+     * @return false 表示请求已超时、已失败或 echo 未知
+     */
+    public boolean complete(String echo, JsonNode response) {
+        Entry e = inFlight.remove(echo);
+        if (e == null) return false;
+        ActionCounters c = counters(e.action);
+        c.latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - e.startNanos));
+        if (!"ok".equals(response.path("status").asText("ok"))) c.failures.incrementAndGet();
+        e.future.complete(response);
+        return true;
+    }
+
+    /** 单个请求失败（如发送时连接已断开） */
+    public void fail(String echo, Throwable cause) {
+        Entry e = inFlight.remove(echo);
+        if (e == null) return;
+        counters(e.action).failures.incrementAndGet();
+        e.future.completeExceptionally(cause);
+    }
+
+    /** 让所有在途请求立即失败（连接断开时调用） */
+    public int failAll(Throwable cause) {
+        return failAll(cause, action -> true);
+    }
+
+    /**
+     * 让 action 满足条件的在途请求立即失败，其余继续等待（重连后由调用方重发）
+     */
+    public int failAll(Throwable cause, Predicate<String> actionFilter) {
+        int n = 0;
+        for (Iterator<Entry> it = inFlight.values().iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            if (!actionFilter.test(e.action)) continue;
+            it.remove();
+            counters(e.action).failures.incrementAndGet();
+            e.future.completeExceptionally(cause);
+            n++;
+        }
+        if (n > 0) logger.warn("⚠️ 连接断开，{} 个在途 OneBot 请求已失败", n);
+        return n;
+    }
+
+    private ActionCounters counters(String action) {
+        return actions.computeIfAbsent(action, a -> new ActionCounters());
+    }
+
+    // ================== 时间轮 ==================
+
+    private void runTicker() {
+        long next = System.nanoTime();
+        while (running.get()) {
+            next += TimeUnit.MILLISECONDS.toNanos(TICK_MS);
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            try {
+                transferRegistrations();
+                expire(wheel[(int) (tick & (WHEEL_SIZE - 1))]);
+                tick++;
+            } catch (Exception e) {
+                logger.error("OneBot 请求超时扫描失败", e);
+            }
+        }
+    }
+
+    private void transferRegistrations() {
+        Entry e;
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK && (e = registrations.poll()) != null; i++) {
+            if (e.future.isDone()) continue;
+            long ticks = Math.max(1, (e.timeoutMs + TICK_MS - 1) / TICK_MS);
+            // 本 tick 的槽紧接着就会被扫描，落在 tick + ticks 的槽上正好在 ticks 个 tick 后到期
+            e.rounds = ticks / WHEEL_SIZE;
+            wheel[(int) ((tick + ticks) & (WHEEL_SIZE - 1))].add(e);
+        }
+    }
+
+    private void expire(List<Entry> slot) {
+        if (slot.isEmpty()) return;
+        int kept = 0;
+        for (int i = 0; i < slot.size(); i++) {
+            Entry e = slot.get(i);
+            if (e.future.isDone()) continue;
+            if (e.rounds > 0) {
+                e.rounds--;
+                slot.set(kept++, e);
+                continue;
+            }
+            if (inFlight.remove(e.echo, e)) {
+                counters(e.action).timeouts.incrementAndGet();
+                e.future.completeExceptionally(new TimeoutException(
+                        "OneBot API 超时: action=" + e.action + ", echo=" + e.echo + ", timeout=" + e.timeoutMs + "ms"));
+            }
+        }
+        slot.subList(kept, slot.size()).clear();
+    }
+
+    public void shutdown() {
+        running.set(false);
+        ticker.interrupt();
+    }
+
+    // ================== 统计 ==================
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    /** 按 action 名排序的统计 */
+    public Map<String, ActionStats> getStats() {
+        Map<String, ActionStats> map = new TreeMap<>();
+        actions.forEach((action, c) -> map.put(action,
+                new ActionStats(c.calls.get(), c.failures.get(), c.timeouts.get(), c.latency.snapshot())));
+        return map;
+    }
+}
@@ -0,0 +1,163 @@
+package com.start.service;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.start.agent.Tool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 系统提示词组装。
+ * <p>
+ * 静态人设前缀和工具 spec 只序列化一次（已转义好的 JSON 片段），请求时以 {@link RawValue}
+ * 直接拼进请求体，不再每次重新转义几 KB 的文本。动态部分按 {@link Section} 的固定顺序
+ * 写入线程复用的缓冲区：越稳定的段落越靠前（人设 → 群 → 用户 → 本条消息），
+ * 同一群/同一用户的连续请求共享尽量长的相同前缀，便于服务商的前缀缓存（prompt/KV cache）命中。
+ * </p>
+ * 工具 spec 按工具名缓存，要求 {@link Tool#getFunctionSpec()} 不依赖构造时传入的会话上下文。
+ */
+public class PromptAssembler {
+    private static final Logger logger = LoggerFactory.getLogger(PromptAssembler.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** 缓冲区超过该大小时不再复用，避免线程长期持有大块内存 */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    /**
+     * 动态段落，声明顺序即输出顺序（按变化频率从低到高排列）。
+     */
+    public enum Section {
+        /** 群内别称与所在地（群级，变化少） */
+        GROUP_ALIASES,
+        /** 当前对话用户身份 + 画像 + 好感度 */
+        USER_PROFILE,
+        /** 管理员专属偏爱 */
+        ADMIN,
+        /** 当前用户所在地 */
+        USER_LOCATION,
+        /** 机器人情绪 */
+        MOOD,
+        /** 知识库参考信息 */
+        KNOWLEDGE,
+        /** 是否被 @ */
+        AT_STATUS,
+        /** 本条消息 @ 的其他用户 */
+        AT_USERS,
+        /** 游戏状态 */
+        GAME_STATE,
+        /** 群内最近讨论 */
+        GROUP_RECENT,
+        /** 主动召回的长期记忆 */
+        MEMORY_RECALL,
+        /** 当前时间（每分钟都变，放最后） */
+        TIME
+    }
+
+    private final String staticPrefix;
+    /** 静态前缀转义后的 JSON 字符串内容（不含引号） */
+    private final char[] staticPrefixJson;
+    private final Map<String, RawValue> toolSpecCache = new ConcurrentHashMap<>();
+    private final Map<String, String> singleSpecCache = new ConcurrentHashMap<>();
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+
+    public PromptAssembler(String staticPrefix) {
+        this.staticPrefix = staticPrefix;
+        this.staticPrefixJson = JsonStringEncoder.getInstance().quoteAsString(staticPrefix);
+    }
+
+    public String getStaticPrefix() {
+        return staticPrefix;
+    }
+
+    /** 开始组装一条系统提示词 */
+    public Composition begin() {
+        return new Composition();
+    }
+
+    /**
+     * 工具 spec 数组的预序列化 JSON，同一组工具（按名称顺序）只序列化一次。
+     * 列表顺序即输出顺序，调用方应保持工具顺序固定。
+     */
+    public RawValue toolSpecs(List<Tool> tools) {
+        StringBuilder key = new StringBuilder();
+        for (Tool t : tools) key.append(t.getName()).append(',');
+        return toolSpecCache.computeIfAbsent(key.toString(), k -> {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < tools.size(); i++) {
+                if (i > 0) json.append(',');
+                json.append(specJson(tools.get(i)));
+            }
+            json.append(']');
+            logger.debug("🧩 工具 spec 已缓存: {} 个, {} 字符", tools.size(), json.length());
+            return new RawValue(json.toString());
+        });
+    }
+
+    private String specJson(Tool tool) {
+        return singleSpecCache.computeIfAbsent(tool.getName(), n -> {
+            try {
+                return MAPPER.writeValueAsString(tool.getFunctionSpec());
+            } catch (Exception e) {
+                throw new IllegalStateException("序列化工具 spec 失败: " + n, e);
+            }
+        });
+    }
+
+    private StringBuilder buffer() {
+        StringBuilder sb = buffers.get();
+        if (sb.capacity() > MAX_RETAINED_BUFFER) {
+            sb = new StringBuilder(8 * 1024);
+            buffers.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    /**
+     * 一次组装过程。各段落可以按任意顺序写入，输出时统一按 {@link Section} 顺序排列。
+     */
+    public final class Composition {
+        private final String[] parts = new String[Section.values().length];
+
+        private Composition() {}
+
+        /** 向段落追加文本（null/空串忽略） */
+        public Composition append(Section section, String text) {
+            if (text == null || text.isEmpty()) return this;
+            int i = section.ordinal();
+            parts[i] = parts[i] == null ? text : parts[i] + text;
+            return this;
+        }
+
+        /** 动态部分全文（按段落顺序） */
+        public String dynamicText() {
+            StringBuilder sb = buffer();
+            for (String p : parts) {
+                if (p != null) sb.append(p);
+            }
+            return sb.toString();
+        }
+
+        /** 完整系统提示词（静态前缀 + 动态部分），用于日志 */
+        public String fullText() {
+            return staticPrefix + dynamicText();
+        }
+
+        /**
+         * 系统提示词的 JSON 字符串值（含引号）：静态前缀直接使用预转义结果，只转义动态部分。
+         */
+        public RawValue toJsonValue() {
+            String dynamic = dynamicText();
+            char[] escaped = JsonStringEncoder.getInstance().quoteAsString(dynamic);
+            StringBuilder sb = buffer();
+            sb.ensureCapacity(staticPrefixJson.length + escaped.length + 2);
+            sb.append('"').append(staticPrefixJson).append(escaped).append('"');
+            return new RawValue(sb.toString());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+// ReminderService.java
+package com.start.service;
+
+import com.start.Main;
+import com.start.scheduler.JobScheduler;
+import com.start.scheduler.Schedule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 提醒服务
+ */
+public class ReminderService {
+    private static final Logger logger = LoggerFactory.getLogger(ReminderService.class);
+    private static final ReminderService INSTANCE = new ReminderService();
+
+    private volatile boolean enabled = true;
+    private final Map<Long, AbstractReminderTask> activeTasks = new ConcurrentHashMap<>();
+    /** 提醒都挂在统一调度器上，按 reminder-* 分组统计 */
+    private final JobScheduler scheduler = JobScheduler.getInstance();
+
+    private Main botInstance;
+
+    private ReminderService() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            activeTasks.values().forEach(AbstractReminderTask::cancel);
+            activeTasks.clear();
+        }));
+    }
+
+    public static ReminderService getInstance() {
+        return INSTANCE;
+    }
+
+    public void setBotInstance(Main bot) {
+        this.botInstance = bot;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            activeTasks.values().forEach(AbstractReminderTask::cancel);
+            activeTasks.clear();
+            logger.info("🔕 提醒服务已全局关闭");
+        }
+    }
+
+    // ===== 原有：间隔提醒 =====
+    public void startReminding(long userId, String message, long intervalSec, int maxRetries) {
+        if (!enabled) return;
+        stopReminding(userId);
+        IntervalTask task = new IntervalTask(userId, message, intervalSec, maxRetries, botInstance);
+        activeTasks.put(userId, task);
+        task.start(scheduler);
+    }
+
+    // ===== 新增：一次性定时提醒（私聊） =====
+    public void remindAt(long userId, String message, LocalDateTime triggerTime) {
+        if (!enabled) return;
+        stopReminding(userId);
+
+        long delaySec = Duration.between(LocalDateTime.now(), triggerTime).getSeconds();
+        if (delaySec <= 0) {
+            botInstance.sendPrivateReply(userId, "提醒时间已过期。");
+            return;
+        }
+
+        JobScheduler.Job job = scheduler.scheduleOnce("reminder-once", TimeUnit.SECONDS.toMillis(delaySec), () -> {
+            if (enabled) {
+                botInstance.sendPrivateReply(userId, 0, message, OutboundScheduler.Priority.NOTIFY);
+                logger.info("✅ 一次性提醒已发送给 user={}", userId);
+            }
+            activeTasks.remove(userId);
+        });
+
+        activeTasks.put(userId, new OneTimeTask(job));
+    }
+
+    // ===== 新增：一次性定时提醒（群聊） =====
+    public void remindAtGroup(long groupId, long userId, String message, LocalDateTime triggerTime) {
+        if (!enabled) return;
+        String key = "group_" + groupId + "_" + userId;
+        stopReminding(userId);
+
+        long delaySec = Duration.between(LocalDateTime.now(), triggerTime).getSeconds();
+        if (delaySec <= 0) {
+            botInstance.sendGroupReply(groupId, "[CQ:at,qq=" + userId + "] 提醒时间已过期。");
+            return;
+        }
+
+        JobScheduler.Job job = scheduler.scheduleOnce("reminder-once", TimeUnit.SECONDS.toMillis(delaySec), () -> {
+            if (enabled) {
+                botInstance.sendGroupReply(groupId, "[CQ:at,qq=" + userId + "] " + message, OutboundScheduler.Priority.NOTIFY);
+                logger.info("✅ 群提醒已发送 group={} user={}", groupId, userId);
+            }
+            activeTasks.remove(userId);
+        });
+
+        activeTasks.put(userId, new OneTimeTask(job));
+    }
+
+    // ===== 新增：延迟私聊某人（可用于定时提醒别人） =====
+    public void remindPrivate(long groupId, long targetUserId, String message, LocalDateTime triggerTime) {
+        if (!enabled) return;
+
+        long delaySec = Duration.between(LocalDateTime.now(), triggerTime).getSeconds();
+        if (delaySec <= 0) {
+            botInstance.sendPrivateReply(targetUserId, groupId, "提醒时间已过期：" + message);
+            return;
+        }
+
+        JobScheduler.Job job = scheduler.scheduleOnce("reminder-once", TimeUnit.SECONDS.toMillis(delaySec), () -> {
+            if (enabled) {
+                botInstance.sendPrivateReply(targetUserId, groupId, message, OutboundScheduler.Priority.NOTIFY);
+                logger.info("✅ 延迟私聊已发送 target={}", targetUserId);
+            }
+        });
+
+        activeTasks.put(targetUserId, new OneTimeTask(job));
+    }
+
+    /** 解析相对时间字符串（如"30分钟""1小时""5秒"）为秒数 */
+    public static long parseDelaySeconds(String timeStr) {
+        if (timeStr == null) return 0;
+        timeStr = timeStr.trim();
+        try {
+            if (timeStr.contains("小时") || timeStr.contains("时")) {
+                String num = timeStr.replaceAll("[^0-9.]", "");
+                return (long) (Double.parseDouble(num) * 3600);
+            }
+            if (timeStr.contains("分钟") || timeStr.contains("分")) {
+                String num = timeStr.replaceAll("[^0-9.]", "");
+                return (long) (Double.parseDouble(num) * 60);
+            }
+            if (timeStr.contains("秒")) {
+                String num = timeStr.replaceAll("[^0-9.]", "");
+                return (long) Double.parseDouble(num);
+            }
+            return Long.parseLong(timeStr); // 纯数字，按秒处理
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // ===== 新增：每日定时提醒 =====
+    public void remindDaily(long userId, String message, LocalTime timeOfDay) {
+        if (!enabled) return;
+        stopReminding(userId);
+
+        Runnable dailyRunnable = () -> {
+            if (enabled) {
+                botInstance.sendPrivateReply(userId, 0, message, OutboundScheduler.Priority.NOTIFY);
+                logger.debug("📤 每日提醒已发送给 user={}", userId);
+            }
+        };
+
+        JobScheduler.Job job = scheduleNextDaily(dailyRunnable, timeOfDay);
+        activeTasks.put(userId, new DailyTask(job, dailyRunnable, timeOfDay));
+    }
+
+    public void stopReminding(long userId) {
+        AbstractReminderTask task = activeTasks.remove(userId);
+        if (task != null) {
+            task.cancel();
+            logger.info("✅ 已停止对 user={} 的提醒", userId);
+        }
+    }
+
+    public void onPrivateMessageReceived(long userId) {
+        if (!enabled) return;
+        AbstractReminderTask task = activeTasks.get(userId);
+        if (task != null) {
+            task.markAsReplied();
+            activeTasks.remove(userId);
+        }
+    }
+
+    // 按每天的 HH:mm 触发（今天 or 明天开始），用 cron 规则避免固定 24 小时间隔随夏令时、挂起漂移
+    private JobScheduler.Job scheduleNextDaily(Runnable task, LocalTime timeOfDay) {
+        Schedule daily = Schedule.cron(timeOfDay.getMinute() + " " + timeOfDay.getHour() + " * * *");
+        long first = daily.next(System.currentTimeMillis());
+        return scheduler.repeat("reminder-daily", daily, first - System.currentTimeMillis(), task);
+    }
+
+    // ===== 抽象任务基类 =====
+    private abstract static class AbstractReminderTask {
+        protected final AtomicBoolean completed = new AtomicBoolean(false);
+        public abstract void cancel();
+        public void markAsReplied() {
+            if (completed.compareAndSet(false, true)) {
+                cancel();
+            }
+        }
+    }
+
+    // 间隔任务（原有）
+    private static class IntervalTask extends AbstractReminderTask {
+        private final long userId;
+        private final String message;
+        private final long intervalSeconds;
+        private final int maxRetries;
+        private final Main bot;
+        private volatile JobScheduler.Job job;
+        private int retryCount = 0;
+
+        IntervalTask(long userId, String message, long intervalSeconds, int maxRetries, Main bot) {
+            this.userId = userId;
+            this.message = message;
+            this.intervalSeconds = intervalSeconds;
+            this.maxRetries = maxRetries;
+            this.bot = bot;
+        }
+
+        void start(JobScheduler scheduler) {
+            if (completed.get()) return;
+            job = scheduler.repeat("reminder-interval", Schedule.fixedDelay(TimeUnit.SECONDS.toMillis(intervalSeconds)),
+                    0, this::sendAndSchedule);
+        }
+
+        private void sendAndSchedule() {
+            if (completed.get() || retryCount >= maxRetries) {
+                cancel();
+                return;
+            }
+            try {
+                bot.sendPrivateReply(userId, 0, message, OutboundScheduler.Priority.NOTIFY);
+                retryCount++;
+            } catch (Exception e) {
+                logger.error("❌ 发送提醒失败", e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (job != null) job.cancel();
+            completed.set(true);
+        }
+    }
+
+    // 一次性任务
+    private static class OneTimeTask extends AbstractReminderTask {
+        private final JobScheduler.Job job;
+        OneTimeTask(JobScheduler.Job job) {
+            this.job = job;
+        }
+        @Override
+        public void cancel() {
+            if (job != null) job.cancel();
+            completed.set(true);
+        }
+    }
+
+    // 每日任务
+    private static class DailyTask extends AbstractReminderTask {
+        private final JobScheduler.Job job;
+        private final Runnable task;
+        private final LocalTime timeOfDay;
+
+        DailyTask(JobScheduler.Job job, Runnable task, LocalTime timeOfDay) {
+            this.job = job;
+            this.task = task;
+            this.timeOfDay = timeOfDay;
+        }
+
+        @Override
+        public void cancel() {
+            if (job != null) job.cancel();
+            completed.set(true);
+        }
+
+        // 如果需要重新调度（比如收到回复后又想开启），可扩展
+    }
+}
\ No newline at end of file
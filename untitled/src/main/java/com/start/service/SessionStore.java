@@ -0,0 +1,324 @@
+package com.start.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.start.config.BotConfig;
+import com.start.service.BaiLianService.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 会话历史存储（sessionId → 最近消息），有界、可淘汰、线程安全。
+ * <p>
+ * 每个会话是一个按条数和 token 预算裁剪的环形缓冲，超出预算时从最旧的一端弹出。
+ * token 按字符数估算（中文约一字一 token）。会话内的追加、裁剪和全局 token 计数在会话自己的锁下完成，
+ * 会话被移除（release）后不再接受追加，全局计数不会多出扣不掉的 token。
+ * </p>
+ * 后台线程 {@code Session-Evictor} 定期淘汰：
+ * <ul>
+ *     <li>空闲超过 {@code session.idle-timeout-ms} 的会话</li>
+ *     <li>会话数或总 token 超过全局上限时，按最近访问时间（LRU）淘汰最旧的会话</li>
+ * </ul>
+ * 配置了 {@code session.spill-dir} 时，被淘汰的会话以 JSON 写到磁盘，下次访问时读回并删除文件。
+ */
+public class SessionStore {
+    private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private final int maxMessages;
+    private final int maxTokensPerSession;
+    private final int maxSessions;
+    private final long maxTotalTokens;
+    private final long idleTimeoutMs;
+    private final Path spillDir;
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    /** 已落盘的会话 id，避免每个新会话都去查文件系统 */
+    private final Set<String> spilled = ConcurrentHashMap.newKeySet();
+    private final AtomicLong totalTokens = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong reloadedCount = new AtomicLong();
+    private final ScheduledExecutorService evictor;
+    private final AtomicInteger sweepScheduled = new AtomicInteger();
+
+    /** 单个会话：超预算时从头部裁剪；锁只覆盖本会话，不同会话互不影响 */
+    private final class Session {
+        private final ArrayDeque<Message> messages = new ArrayDeque<>();
+        private int tokens;
+        private boolean released;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        /** @return 会话已被移除时返回 false，消息未追加 */
+        synchronized boolean append(Message m) {
+            if (released) return false;
+            int t = estimateTokens(m);
+            messages.addLast(m);
+            tokens += t;
+            totalTokens.addAndGet(t);
+            // 至少保留刚追加的这一条
+            while ((messages.size() > maxMessages || tokens > maxTokensPerSession) && messages.size() > 1) {
+                int ot = estimateTokens(messages.pollFirst());
+                tokens -= ot;
+                totalTokens.addAndGet(-ot);
+            }
+            return true;
+        }
+
+        synchronized List<Message> recent(int n) {
+            List<Message> all = new ArrayList<>(messages);
+            return all.size() <= n ? all : new ArrayList<>(all.subList(all.size() - n, all.size()));
+        }
+
+        /**
+         * 从全局计数中扣除本会话占用（会话被移除时调用），此后的追加被拒绝
+         *
+         * @return 移除时的消息快照
+         */
+        synchronized List<Message> release() {
+            released = true;
+            totalTokens.addAndGet(-tokens);
+            tokens = 0;
+            return new ArrayList<>(messages);
+        }
+    }
+
+    public SessionStore() {
+        this(BotConfig.getSessionMaxMessages(), BotConfig.getSessionMaxTokens(), BotConfig.getSessionMaxSessions(),
+                BotConfig.getSessionMaxTotalTokens(), BotConfig.getSessionIdleTimeoutMs(), BotConfig.getSessionSpillDir());
+    }
+
+    /**
+     * @param maxMessages         每个会话保留的最大条数
+     * @param maxTokensPerSession 每个会话的 token 预算
+     * @param maxSessions         常驻内存的会话数上限
+     * @param maxTotalTokens      所有会话的 token 总上限
+     * @param idleTimeoutMs       空闲淘汰时间，&lt;= 0 表示不按空闲淘汰
+     * @param spillDir            淘汰会话落盘目录，为空表示直接丢弃
+     */
+    public SessionStore(int maxMessages, int maxTokensPerSession, int maxSessions, long maxTotalTokens,
+                        long idleTimeoutMs, String spillDir) {
+        this.maxMessages = Math.max(2, maxMessages);
+        this.maxTokensPerSession = Math.max(1, maxTokensPerSession);
+        this.maxSessions = Math.max(1, maxSessions);
+        this.maxTotalTokens = Math.max(1, maxTotalTokens);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.spillDir = initSpillDir(spillDir);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Session-Evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        this.evictor.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private Path initSpillDir(String dir) {
+        if (dir == null || dir.isBlank()) return null;
+        try {
+            Path p = Paths.get(dir.trim());
+            Files.createDirectories(p);
+            try (Stream<Path> files = Files.list(p)) {
+                files.map(f -> f.getFileName().toString())
+                        .filter(n -> n.endsWith(".json"))
+                        .forEach(n -> spilled.add(n.substring(0, n.length() - 5)));
+            }
+            logger.info("💾 会话落盘目录: {}（已有 {} 个会话）", p.toAbsolutePath(), spilled.size());
+            return p;
+        } catch (IOException e) {
+            logger.warn("会话落盘目录不可用，淘汰的会话将直接丢弃: {}", dir, e);
+            return null;
+        }
+    }
+
+    // ================== 读写 ==================
+
+    /** 追加一条消息 */
+    public void append(String sessionId, Message message) {
+        Session s;
+        do {
+            // 拿到的会话恰好被淘汰或清空时，换成表里的新会话再追加
+            s = session(sessionId);
+            s.lastAccess = System.currentTimeMillis();
+        } while (!s.append(message));
+        if (totalTokens.get() > maxTotalTokens || sessions.size() > maxSessions) {
+            requestSweep();
+        }
+    }
+
+    /** 最近 n 条消息（按时间正序的快照） */
+    public List<Message> recent(String sessionId, int n) {
+        Session s = sessions.get(sessionId);
+        if (s == null) {
+            if (!spilled.contains(sessionId)) return List.of();
+            s = session(sessionId);
+        }
+        s.lastAccess = System.currentTimeMillis();
+        return s.recent(n);
+    }
+
+    /** 清空会话（含已落盘的副本） */
+    public void clear(String sessionId) {
+        sessions.compute(sessionId, (id, cur) -> {
+            if (cur != null) cur.release();
+            if (spilled.remove(id)) deleteSpill(id);
+            return null;
+        });
+    }
+
+    /**
+     * 取会话，不存在时新建或从磁盘读回。
+     * 读回与淘汰落盘都在该 id 的桶锁内完成（computeIfAbsent / compute），
+     * 并发访问看不到"已移出内存但还没落盘"或"文件已删但还没装回"的中间状态；只有命中落盘的会话才在锁内做 IO。
+     */
+    private Session session(String sessionId) {
+        Session s = sessions.get(sessionId);
+        if (s != null) return s;
+        return sessions.computeIfAbsent(sessionId, this::restore);
+    }
+
+    /** 在桶锁内调用：新建会话，有落盘副本时装回消息，装回后才删除文件；读取失败时保留文件 */
+    private Session restore(String sessionId) {
+        Session fresh = new Session();
+        if (!spilled.contains(sessionId)) return fresh;
+        List<Message> restored = readSpill(sessionId);
+        spilled.remove(sessionId);
+        if (restored != null) {
+            for (Message m : restored) fresh.append(m);
+            reloadedCount.incrementAndGet();
+            deleteSpill(sessionId);
+        }
+        return fresh;
+    }
+
+    // ================== 淘汰 ==================
+
+    private void requestSweep() {
+        if (sweepScheduled.compareAndSet(0, 1)) {
+            evictor.execute(() -> {
+                sweepScheduled.set(0);
+                sweep();
+            });
+        }
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            int idle = 0;
+            if (idleTimeoutMs > 0) {
+                for (Map.Entry<String, Session> e : sessions.entrySet()) {
+                    if (now - e.getValue().lastAccess > idleTimeoutMs && evict(e.getKey(), e.getValue())) idle++;
+                }
+            }
+
+            int lru = 0;
+            if (sessions.size() > maxSessions || totalTokens.get() > maxTotalTokens) {
+                List<Map.Entry<String, Session>> byAge = new ArrayList<>(sessions.entrySet());
+                byAge.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+                for (Map.Entry<String, Session> e : byAge) {
+                    if (sessions.size() <= maxSessions && totalTokens.get() <= maxTotalTokens) break;
+                    if (evict(e.getKey(), e.getValue())) lru++;
+                }
+            }
+            if (idle + lru > 0) {
+                logger.info("🧹 会话淘汰: 空闲 {} 个, LRU {} 个, 剩余 {} 个 / {} tokens",
+                        idle, lru, sessions.size(), totalTokens.get());
+            }
+        } catch (Exception e) {
+            logger.error("会话淘汰失败", e);
+        }
+    }
+
+    private boolean evict(String sessionId, Session s) {
+        boolean[] evicted = new boolean[1];
+        // 落盘完成后才移出内存：同一 id 的并发访问要么拿到旧会话，要么等锁释放后从磁盘读回
+        sessions.computeIfPresent(sessionId, (id, cur) -> {
+            if (cur != s) return cur;
+            List<Message> messages = s.release();
+            if (spillDir != null && !messages.isEmpty()) {
+                writeSpill(id, messages);
+            }
+            evicted[0] = true;
+            return null;
+        });
+        if (evicted[0]) evictedCount.incrementAndGet();
+        return evicted[0];
+    }
+
+    // ================== 落盘 ==================
+
+    private Path spillFile(String sessionId) {
+        return spillDir.resolve(sessionId.replaceAll("[^A-Za-z0-9_-]", "_") + ".json");
+    }
+
+    private void writeSpill(String sessionId, List<Message> messages) {
+        try {
+            List<Map<String, String>> rows = new ArrayList<>(messages.size());
+            for (Message m : messages) rows.add(Map.of("role", m.role, "content", m.content));
+            Path file = spillFile(sessionId);
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            MAPPER.writeValue(tmp.toFile(), rows);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            spilled.add(sessionId);
+        } catch (IOException e) {
+            logger.warn("会话落盘失败: {}", sessionId, e);
+        }
+    }
+
+    private List<Message> readSpill(String sessionId) {
+        if (spillDir == null) return null;
+        Path file = spillFile(sessionId);
+        try {
+            if (!Files.exists(file)) return null;
+            List<Map<String, String>> rows = MAPPER.readValue(file.toFile(), new TypeReference<>() {});
+            List<Message> list = new ArrayList<>(rows.size());
+            for (Map<String, String> r : rows) {
+                if (r.get("role") != null && r.get("content") != null) list.add(new Message(r.get("role"), r.get("content")));
+            }
+            return list;
+        } catch (IOException e) {
+            logger.warn("读取落盘会话失败: {}", sessionId, e);
+            return null;
+        }
+    }
+
+    private void deleteSpill(String sessionId) {
+        if (spillDir == null) return;
+        try {
+            Files.deleteIfExists(spillFile(sessionId));
+        } catch (IOException e) {
+            logger.warn("删除落盘会话失败: {}", sessionId, e);
+        }
+    }
+
+    private static int estimateTokens(Message m) {
+        return m.content != null ? Math.max(1, m.content.length()) : 1;
+    }
+
+    // ================== 统计 ==================
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getTotalTokens() {
+        return totalTokens.get();
+    }
+
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    public long getReloadedCount() {
+        return reloadedCount.get();
+    }
+}
@@ -0,0 +1,205 @@
+package com.start.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 启动编排：把启动步骤声明成依赖图，互不依赖的步骤在 Startup 线程上并行执行。
+ * <p>
+ * 步骤在 {@link #step} 注册时即开始调度，依赖全部就绪后提交执行；依赖必须先于自己注册，
+ * 所以图天然无环，启动代码按依赖顺序写下来就行，不需要单独的 start()。
+ * 关键步骤（critical）决定何时可以开始收消息（{@link #awaitCritical}），
+ * 其余步骤在后台继续，业务代码用 {@link #isReady} 判断、用 {@link #whenReady} 挂后续动作。
+ * </p>
+ * 步骤失败只记日志并标记失败，依赖它的步骤跳过；关键步骤失败也不会卡住启动，
+ * 与原先各初始化步骤失败后自行降级的行为一致。
+ */
+public class StartupOrchestrator {
+    private static final Logger logger = LoggerFactory.getLogger(StartupOrchestrator.class);
+
+    public enum State { PENDING, RUNNING, READY, FAILED, SKIPPED }
+
+    /**
+     * @param startMs    相对编排器创建时刻的开始时间，未开始为 -1
+     * @param durationMs 执行耗时，未结束为 -1
+     */
+    public record StepStats(String name, boolean critical, State state, long startMs, long durationMs) {}
+
+    private final class Step {
+        final String name;
+        final boolean critical;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        volatile State state = State.PENDING;
+        volatile long startNanos, endNanos;
+
+        Step(String name, boolean critical) {
+            this.name = name;
+            this.critical = critical;
+        }
+    }
+
+    private final long createdNanos = System.nanoTime();
+    /** 注册顺序 */
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final ThreadPoolExecutor pool;
+
+    public StartupOrchestrator() {
+        // 步骤多是数据库和网络 IO，线程数不按核数收紧
+        this(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public StartupOrchestrator(int threads) {
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "Startup-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // 启动完成后线程空闲退出，不常驻
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 注册一个步骤，依赖就绪后立即开始执行
+     *
+     * @param name      步骤名，唯一
+     * @param critical  是否在关键路径上（收消息前必须完成）
+     * @param action    步骤内容，抛异常视为失败
+     * @param dependsOn 依赖的步骤名，必须已注册
+     */
+    public StartupOrchestrator step(String name, boolean critical, Runnable action, String... dependsOn) {
+        Step step = new Step(name, critical);
+        CompletableFuture<?>[] deps = new CompletableFuture<?>[dependsOn.length];
+        synchronized (steps) {
+            if (steps.containsKey(name)) throw new IllegalArgumentException("启动步骤重复: " + name);
+            for (int i = 0; i < dependsOn.length; i++) {
+                Step dep = steps.get(dependsOn[i]);
+                if (dep == null) throw new IllegalArgumentException("启动步骤 " + name + " 的依赖未注册: " + dependsOn[i]);
+                deps[i] = dep.done;
+            }
+            steps.put(name, step);
+        }
+
+        CompletableFuture.allOf(deps).whenComplete((v, depFailure) -> {
+            if (depFailure != null) {
+                step.state = State.SKIPPED;
+                logger.warn("⏭️ 启动步骤 {} 已跳过：依赖未就绪", name);
+                step.done.completeExceptionally(depFailure);
+                return;
+            }
+            pool.execute(() -> run(step, action));
+        });
+        return this;
+    }
+
+    private void run(Step step, Runnable action) {
+        step.state = State.RUNNING;
+        step.startNanos = System.nanoTime();
+        try {
+            action.run();
+            step.endNanos = System.nanoTime();
+            step.state = State.READY;
+            logger.info("🚀 启动步骤 {} 完成，耗时 {} ms", step.name, millis(step.endNanos - step.startNanos));
+            step.done.complete(null);
+        } catch (Throwable t) {
+            step.endNanos = System.nanoTime();
+            step.state = State.FAILED;
+            logger.error("❌ 启动步骤 {} 失败（{} ms）", step.name, millis(step.endNanos - step.startNanos), t);
+            step.done.completeExceptionally(t);
+        }
+    }
+
+    // ================== 就绪状态 ==================
+
+    /** 步骤是否已成功完成；未注册的步骤视为未就绪 */
+    public boolean isReady(String name) {
+        Step step;
+        synchronized (steps) {
+            step = steps.get(name);
+        }
+        return step != null && step.state == State.READY;
+    }
+
+    /**
+     * 步骤成功完成时结束的 future；步骤失败或被跳过时异常结束
+     */
+    public CompletableFuture<Void> whenReady(String name) {
+        Step step;
+        synchronized (steps) {
+            step = steps.get(name);
+        }
+        if (step == null) throw new IllegalArgumentException("启动步骤未注册: " + name);
+        return step.done.copy();
+    }
+
+    /**
+     * 等待目前已注册的关键步骤全部结束（成功或失败）
+     *
+     * @return 是否在超时前全部结束
+     */
+    public boolean awaitCritical(long timeoutMs) {
+        List<CompletableFuture<Void>> critical = new ArrayList<>();
+        synchronized (steps) {
+            for (Step s : steps.values()) {
+                if (s.critical) critical.add(s.done);
+            }
+        }
+        try {
+            CompletableFuture.allOf(critical.stream()
+                            .map(f -> f.handle((v, t) -> null))
+                            .toArray(CompletableFuture[]::new))
+                    .get(timeoutMs, TimeUnit.MILLISECONDS);
+            logger.info("✅ 关键启动步骤就绪（{} 个），距启动 {} ms", critical.size(), millis(System.nanoTime() - createdNanos));
+            return true;
+        } catch (TimeoutException e) {
+            logger.warn("⚠️ 等待关键启动步骤超时（{} ms），未完成: {}", timeoutMs, pendingCritical());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private List<String> pendingCritical() {
+        List<String> names = new ArrayList<>();
+        synchronized (steps) {
+            for (Step s : steps.values()) {
+                if (s.critical && !s.done.isDone()) names.add(s.name);
+            }
+        }
+        return names;
+    }
+
+    // ================== 统计 ==================
+
+    /** 按注册顺序的各步骤状态与耗时 */
+    public List<StepStats> getStats() {
+        List<StepStats> list = new ArrayList<>();
+        synchronized (steps) {
+            for (Step s : steps.values()) {
+                long start = s.startNanos, end = s.endNanos;
+                list.add(new StepStats(s.name, s.critical, s.state,
+                        start == 0 ? -1 : millis(start - createdNanos),
+                        end == 0 ? -1 : millis(end - start)));
+            }
+        }
+        return list;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
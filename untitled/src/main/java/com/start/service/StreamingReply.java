@@ -0,0 +1,113 @@
+package com.start.service;
+
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+
+/**
+ * 流式回复的首条气泡提前发送。
+ * <p>
+ * {@link BaiLianService} 以 SSE 方式接收模型输出时，每收到一段 content 增量就交给这里；
+ * 一旦第一条气泡完整（遇到 {@code |---|}、空行，或按
+ * {@link BaiLianService#SENTENCE_BOUNDARY} 判定的句末），立即通过 sender 发出，
+ * 不必等整条回复生成完。剩余内容由 {@link BaiLianService#splitRemainingMessages} 照常拆分发送。
+ * </p>
+ * 以下情况不提前发送，整条回复走原来的流程：
+ * <ul>
+ *     <li>回复以 JSON / 代码块开头（long 模式，需要整段解析）</li>
+ *     <li>首句含未闭合的 CQ 码、JSON 花括号或 【】 标记（后处理会改写）</li>
+ *     <li>本轮出现了 tool_calls，或调用方已判定本次不应发言（如限流）</li>
+ * </ul>
+ * 请求带了工具时，tool_calls 可能在 content 之后才出现，content 会压到本轮 finish_reason
+ * 确认没有工具调用后才交给这里。
+ * 每次 generate 最多提前发送一条。
+ */
+public class StreamingReply {
+    private final Consumer<String> sender;
+    private final StringBuilder buffer = new StringBuilder();
+    private volatile boolean suppressed;
+    private volatile String dispatched;
+
+    /**
+     * @param sender 首条气泡的发送方式（如 {@code part -> bot.sendGroupReply(groupId, part)}）
+     */
+    public StreamingReply(Consumer<String> sender) {
+        this.sender = sender;
+    }
+
+    /** 新一轮请求开始，清空本轮缓冲 */
+    void beginRound() {
+        buffer.setLength(0);
+    }
+
+    /** 本次不再提前发送 */
+    void suppress() {
+        suppressed = true;
+    }
+
+    /** 收到一段 content 增量 */
+    void onContentDelta(String delta) {
+        if (suppressed || dispatched != null) return;
+        buffer.append(delta);
+
+        String lead = buffer.toString().stripLeading();
+        if (lead.isEmpty()) return;
+        if (lead.charAt(0) == '{' || lead.startsWith("`")) {
+            suppressed = true;
+            return;
+        }
+
+        int cut = findFirstBubbleEnd(lead);
+        if (cut < 0) return;
+
+        String bubble = lead.substring(0, cut).trim()
+                .replaceAll("\\[\\s*CQ:", "[CQ:").replaceAll("\\s*\\]", "]");
+        if (bubble.isEmpty()) return;
+        if (!isSafe(bubble)) {
+            suppressed = true;
+            return;
+        }
+        dispatched = bubble;
+        sender.accept(bubble);
+    }
+
+    /** 是否已经提前发出了首条气泡 */
+    public boolean hasDispatched() {
+        return dispatched != null;
+    }
+
+    /** 已提前发出的首条气泡（未发送时为 null） */
+    public String getDispatched() {
+        return dispatched;
+    }
+
+    /** 首条气泡的结束位置：分隔符、空行或第一个确定的句末，取最早者；尚不完整返回 -1 */
+    private static int findFirstBubbleEnd(String text) {
+        int cut = -1;
+        int sep = text.indexOf("|---|");
+        if (sep > 0) cut = sep;
+        int para = text.indexOf("\n\n");
+        if (para > 0 && (cut < 0 || para < cut)) cut = para;
+
+        // 句末后面必须已经出现下一个字符，才能确认不是连续标点（如 "？！"）
+        Matcher m = BaiLianService.SENTENCE_BOUNDARY.matcher(text);
+        while (m.find()) {
+            int end = m.end();
+            if (end <= 0) continue;
+            if (end >= text.length()) break;
+            if (cut < 0 || end < cut) cut = end;
+            break;
+        }
+        return cut;
+    }
+
+    private static boolean isSafe(String bubble) {
+        if (bubble.indexOf('{') >= 0 || bubble.indexOf('【') >= 0 || bubble.contains("|")) return false;
+        int open = 0;
+        for (int i = 0; i < bubble.length(); i++) {
+            char c = bubble.charAt(i);
+            if (c == '[') open++;
+            else if (c == ']') open--;
+        }
+        return open == 0;
+    }
+}
@@ -0,0 +1,379 @@
+package com.start.service;
+
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.start.config.BotConfig;
+import com.start.config.DatabaseConfig;
+import com.start.model.ChatMessage;
+import com.start.model.UserAffinity;
+import com.start.model.UserProfile;
+import com.start.repository.MessageRepository;
+import com.start.repository.MessageRepository.MessageCursor;
+import com.start.repository.UserAffinityRepository;
+import com.start.repository.UserProfileRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+
+/**
+ * 用户画像服务类
+ * <p>
+ * 负责基于用户的聊天记录，利用 AI（百炼）动态生成和更新用户画像及好感度。
+ * 主要功能包括：
+ * 1. 筛选需要更新画像的活跃用户/群组组合，按新消息数与画像陈旧程度排序，每轮最多处理 {@code portrait.max-users-per-run} 个。
+ * 2. 一条查询取出所有候选的新增聊天记录，画像、好感度也各一条查询预取。
+ * 3. 每 {@code portrait.batch-size} 个用户打包成一次结构化的 AI 请求，最多 {@code portrait.concurrency} 个请求并行。
+ * 4. 更新后的用户画像（UserProfile）和好感度信息（UserAffinity）各用一次批量写入持久化。
+ * </p>
+ * 某个用户在 AI 回复中缺失或整批请求失败时不推进它的消息游标，下一轮自动重试。
+ */
+public class UserPortraitService {
+    Logger logger = LoggerFactory.getLogger(UserPortraitService.class);
+    private final BaiLianService baiLianService; // 假设你有这个类
+    private final MessageRepository messageRepo;
+    private final UserProfileRepository profileRepo = new UserProfileRepository();
+    private final UserAffinityRepository affinityRepo = new UserAffinityRepository();
+    private static final ObjectMapper jsonMapper = new ObjectMapper();
+
+    private static final int MIN_NEW_MESSAGES = 20;
+    private static final int MAX_MESSAGES_TO_ANALYZE = 50;
+    /** 从未生成过画像的用户按这么久没更新计算陈旧度，陈旧度也以此封顶 */
+    private static final long MAX_STALE_HOURS = 7 * 24;
+
+    /**
+     * 待更新的用户
+     *
+     * @param lastId        已分析到的消息 id
+     * @param newMessages   之后的新消息数
+     * @param lastUpdatedAt 画像上次更新时间，从未生成为 null
+     */
+    public record Candidate(String userId, String groupId, long lastId, int newMessages, LocalDateTime lastUpdatedAt) {
+
+        /** 优先级：新消息越多、画像越久没更新越靠前 */
+        double priority(LocalDateTime now) {
+            long staleHours = lastUpdatedAt == null ? MAX_STALE_HOURS
+                    : Math.min(MAX_STALE_HOURS, Math.max(0, Duration.between(lastUpdatedAt, now).toHours()));
+            return newMessages * (1 + staleHours / 24.0);
+        }
+    }
+
+    /**
+     * @param lastRunMs     上一轮耗时
+     * @param lastBacklog   上一轮开始时待更新的用户数（含超出本轮上限的）
+     */
+    public record PortraitStats(long runs, long updated, long failed, long llmRequests, long lastRunMs, int lastBacklog) {}
+
+    /** 一个用户的分析输入：候选、新消息与已有画像 / 好感度 */
+    private record Work(Candidate candidate, List<ChatMessage> messages, UserProfile profile, UserAffinity affinity) {}
+
+    /** 一个用户的分析结果 */
+    private record Update(UserProfile profile, UserAffinity affinity) {}
+
+    private final ThreadPoolExecutor llmPool;
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong llmRequests = new AtomicLong();
+    private volatile long lastRunMs;
+    private volatile int lastBacklog;
+
+    public UserPortraitService(BaiLianService baiLianService, MessageRepository messageRepo) {
+        this.baiLianService = baiLianService;
+        this.messageRepo = messageRepo;
+        int threads = Math.max(1, BotConfig.getPortraitConcurrency());
+        AtomicInteger seq = new AtomicInteger();
+        this.llmPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "Portrait-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // 每 10 分钟跑一轮，其余时间不占线程
+        this.llmPool.allowCoreThreadTimeOut(true);
+    }
+
+    // 获取需要更新的用户列表（遍历最近活跃用户），按优先级从高到低
+    public List<Candidate> getCandidates() throws SQLException {
+        String sql = """
+    SELECT
+        m.user_id,
+        m.group_id,
+        COALESCE(MAX(p.last_message_id), 0) AS last_profile_id,
+        COALESCE(MAX(a.last_updated_message_id), 0) AS last_affinity_id,
+        MAX(p.updated_at) AS profile_updated_at,
+        COUNT(*) AS new_msg_count
+    FROM messages m
+    LEFT JOIN user_profiles p
+        ON m.user_id = p.user_id AND (m.group_id <=> p.group_id)
+    LEFT JOIN user_affinity a
+        ON m.user_id = a.user_id AND (m.group_id <=> a.group_id)
+    WHERE
+        m.is_robot_reply = 0
+        AND m.id > GREATEST(
+            COALESCE(p.last_message_id, 0),
+            COALESCE(a.last_updated_message_id, 0)
+        )
+    GROUP BY m.user_id, m.group_id
+    HAVING new_msg_count >= ?
+    """;
+
+        try (Connection conn = DatabaseConfig.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, MIN_NEW_MESSAGES);
+            ResultSet rs = ps.executeQuery();
+            List<Candidate> list = new ArrayList<>();
+            while (rs.next()) {
+                Timestamp updatedAt = rs.getTimestamp("profile_updated_at");
+                list.add(new Candidate(
+                        rs.getString("user_id"),
+                        rs.getString("group_id"),
+                        Math.max(rs.getLong("last_profile_id"), rs.getLong("last_affinity_id")),
+                        rs.getInt("new_msg_count"),
+                        updatedAt != null ? updatedAt.toLocalDateTime() : null));
+            }
+            LocalDateTime now = LocalDateTime.now();
+            list.sort(Comparator.comparingDouble((Candidate c) -> c.priority(now)).reversed());
+            return list;
+        }
+    }
+
+    /** 单独更新一个用户（与批量更新同一流程） */
+    public void processUser(String userId, String groupId, long lastMessageId) throws Exception {
+        process(List.of(new Candidate(userId, groupId, lastMessageId, 0, null)));
+    }
+
+    public void runUpdateTask() {
+        long start = System.currentTimeMillis();
+        try {
+            List<Candidate> candidates = getCandidates();
+            lastBacklog = candidates.size();
+            int limit = Math.max(1, BotConfig.getPortraitMaxUsersPerRun());
+            if (candidates.size() > limit) {
+                logger.info("👤 待更新画像 {} 人，本轮处理优先级最高的 {} 人", candidates.size(), limit);
+                candidates = candidates.subList(0, limit);
+            }
+            int n = process(candidates);
+            if (!candidates.isEmpty()) {
+                logger.info("✅ 画像更新完成: {}/{} 人，耗时 {} ms", n, candidates.size(), System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            logger.error("❌ 用户画像更新任务异常", e);
+        } finally {
+            runs.incrementAndGet();
+            lastRunMs = System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * 预取 → 分批并行分析 → 批量写入
+     *
+     * @return 成功更新的用户数
+     */
+    private int process(List<Candidate> candidates) throws Exception {
+        if (candidates.isEmpty()) return 0;
+        List<Work> work = prefetch(candidates);
+
+        int batchSize = Math.max(1, BotConfig.getPortraitBatchSize());
+        List<CompletableFuture<List<Update>>> futures = new ArrayList<>();
+        for (int i = 0; i < work.size(); i += batchSize) {
+            List<Work> batch = work.subList(i, Math.min(work.size(), i + batchSize));
+            futures.add(CompletableFuture.supplyAsync(() -> analyze(batch), llmPool));
+        }
+
+        List<Update> updates = new ArrayList<>();
+        for (CompletableFuture<List<Update>> f : futures) {
+            updates.addAll(f.join());
+        }
+        failed.addAndGet(work.size() - updates.size());
+        if (updates.isEmpty()) return 0;
+
+        saveAll(updates);
+        updated.addAndGet(updates.size());
+        return updates.size();
+    }
+
+    /**
+     * 画像与好感度在同一事务里写入：两者都记录了分析到的消息游标，
+     * 分开提交时一边成功一边失败会让候选查询的游标错位
+     */
+    private void saveAll(List<Update> updates) throws SQLException {
+        List<UserProfile> profiles = updates.stream().map(Update::profile).toList();
+        List<UserAffinity> affinities = updates.stream().map(Update::affinity).toList();
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                profileRepo.saveOrUpdateAll(conn, profiles);
+                affinityRepo.saveOrUpdateAll(conn, affinities);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } finally {
+            profileRepo.invalidateAll(profiles);
+            affinityRepo.invalidateAll(affinities);
+        }
+    }
+
+    /** 一次取出所有候选的新消息、已有画像与好感度 */
+    private List<Work> prefetch(List<Candidate> candidates) throws SQLException {
+        List<MessageCursor> cursors = new ArrayList<>(candidates.size());
+        for (Candidate c : candidates) cursors.add(new MessageCursor(c.userId(), c.groupId(), c.lastId()));
+        var result = messageRepo.findMessagesAfterIds(cursors, MAX_MESSAGES_TO_ANALYZE);
+        if (!result.isSuccess()) throw new SQLException("预取画像消息失败: " + result.getError());
+        Map<MessageCursor, List<ChatMessage>> messages = result.getData();
+
+        Set<String> userIds = new LinkedHashSet<>();
+        for (Candidate c : candidates) userIds.add(c.userId());
+        Map<String, UserProfile> profiles = new HashMap<>();
+        for (UserProfile p : profileRepo.findByUserIds(userIds)) profiles.put(key(p.getUserId(), p.getGroupId()), p);
+        Map<String, UserAffinity> affinities = new HashMap<>();
+        for (UserAffinity a : affinityRepo.findByUserIds(userIds)) affinities.put(key(a.getUserId(), a.getGroupId()), a);
+
+        List<Work> work = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            Candidate c = candidates.get(i);
+            List<ChatMessage> msgs = messages.get(cursors.get(i));
+            if (msgs == null || msgs.isEmpty()) continue;
+            String k = key(c.userId(), c.groupId());
+            work.add(new Work(c, msgs, profiles.get(k), affinities.get(k)));
+        }
+        return work;
+    }
+
+    private static String key(String userId, String groupId) {
+        return userId + "@" + groupId;
+    }
+
+    // ================== 批量分析 ==================
+
+    /** 一批用户打包成一次请求；失败时整批跳过，下一轮重试 */
+    private List<Update> analyze(List<Work> batch) {
+        llmRequests.incrementAndGet();
+        try {
+            String aiResponse = baiLianService.generateForAgent(buildPrompt(batch), Collections.emptyList());
+            logger.debug("🤖 响应: " + aiResponse);
+            JsonNode users = jsonMapper.readTree(aiResponse).path("users");
+
+            Map<String, JsonNode> byId = new HashMap<>();
+            for (JsonNode u : users) byId.put(u.path("id").asText(), u);
+            List<Update> updates = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                JsonNode node = byId.get(String.valueOf(i + 1));
+                if (node == null) {
+                    logger.warn("⚠️ 画像结果缺少用户 {} @ {}，下一轮重试", batch.get(i).candidate().userId(), batch.get(i).candidate().groupId());
+                    continue;
+                }
+                updates.add(toUpdate(batch.get(i), node));
+            }
+            return updates;
+        } catch (Exception e) {
+            logger.error("❌ 画像批量分析失败（{} 人）: {}", batch.size(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    private String buildPrompt(List<Work> batch) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("你是糖果熊，17岁女生，在QQ群跟朋友聊天。请基于聊天记录，用你的视角分别更新对下面每个群友的认知：\n" +
+                "用户画像：用你（糖果熊）的口吻记录你了解到的关于这个群友的事——TA喜欢什么、做什么的、性格怎么样、跟你聊过什么。\n" +
+                "风格要像你跟朋友聊天时心里记的小笔记，口语化自然，不要AI腔。新信息合并进旧画像，不虚构。\n" +
+                "好感度：根据TA是否主动找你玩、语气是否友善（如说了谢谢、用了可爱表情包）动态调整，初始50分（0-100）。\n" +
+                "始终以[糖果熊对这个群友]的视角来写。每个群友只根据TA自己的记录判断，不要串到别人身上。\n\n");
+        for (int i = 0; i < batch.size(); i++) {
+            Work w = batch.get(i);
+            prompt.append("===== 群友 ").append(i + 1).append(" =====\n");
+            if (w.profile() != null) {
+                prompt.append("【当前画像】\n").append(w.profile().getProfileText()).append("\n");
+            }
+            String history = w.messages().stream()
+                    .map(m -> "- " + m.getContent())
+                    .collect(Collectors.joining("\n"));
+            prompt.append("【新增聊天记录】\n").append(history).append("\n\n");
+        }
+        prompt.append("""
+请严格按以下 JSON 格式输出，users 中每个群友一项，id 为上面的群友编号：
+{
+  "users": [
+    {
+      "id": "1",
+      "new_profile": "更新后的画像文本（约100字）",
+      "affinity_change": {"delta": 整数（-5到+5）, "reason": "简短原因"}
+    }
+  ]
+}
+""");
+        return prompt.toString();
+    }
+
+    private Update toUpdate(Work w, JsonNode node) throws Exception {
+        Candidate c = w.candidate();
+        List<ChatMessage> newMessages = w.messages();
+        long newestId = newMessages.get(newMessages.size() - 1).getId();
+        int totalAnalyzed = w.profile() != null
+                ? w.profile().getMessageCountSnapshot() + newMessages.size()
+                : newMessages.size();
+
+        String newProfile = node.path("new_profile").asText("未生成画像");
+        int delta = node.path("affinity_change").path("delta").asInt(0);
+        String reason = node.path("affinity_change").path("reason").asText("无");
+
+        UserProfile profile = new UserProfile();
+        profile.setUserId(c.userId());
+        profile.setGroupId(c.groupId());
+        profile.setProfileText(newProfile);
+        profile.setMessageCountSnapshot(totalAnalyzed);
+        profile.setLastMessageId(newestId);
+
+        UserAffinity old = w.affinity();
+        int oldScore = old != null ? old.getAffinityScore() : 50;
+        int newScore = Math.max(0, Math.min(100, oldScore + delta));
+
+        List<String> reasons = new ArrayList<>();
+        if (old != null && old.getReasonLog() != null) {
+            try {
+                JsonNode logArray = jsonMapper.readTree(old.getReasonLog());
+                if (logArray.isArray()) {
+                    for (JsonNode n : logArray) {
+                        reasons.add(n.asText());
+                    }
+                }
+            } catch (Exception ignored) {}
+        }
+        reasons.add(String.format("%+d: %s", delta, reason));
+        if (reasons.size() > 10) {
+            reasons = reasons.subList(reasons.size() - 10, reasons.size());
+        }
+
+        UserAffinity affinity = new UserAffinity();
+        affinity.setUserId(c.userId());
+        affinity.setGroupId(c.groupId());
+        affinity.setAffinityScore(newScore);
+        affinity.setLastUpdatedMessageId(newestId);
+        affinity.setMessageCountSnapshot(totalAnalyzed);
+        affinity.setReasonLog(jsonMapper.writeValueAsString(reasons));
+        return new Update(profile, affinity);
+    }
+
+    // ================== 统计 ==================
+
+    public PortraitStats getStats() {
+        return new PortraitStats(runs.get(), updated.get(), failed.get(), llmRequests.get(), lastRunMs, lastBacklog);
+    }
+}
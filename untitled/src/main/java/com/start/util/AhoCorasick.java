@@ -0,0 +1,136 @@
+package com.start.util;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick 多模式子串匹配，构建后不可变、可并发使用。
+ * <p>
+ * 一次扫描文本即可判断是否包含任一模式，耗时与模式数量无关。
+ * 匹配忽略大小写（与 MySQL 默认排序规则下的 {@code LIKE} 行为一致）。
+ * </p>
+ */
+public final class AhoCorasick {
+
+    private static final AhoCorasick EMPTY = new AhoCorasick(List.of());
+
+    private final List<Map<Character, Integer>> next = new ArrayList<>();
+    private final int[] fail;
+    /** 到达该节点时命中的模式下标（含 fail 链上的），-1 表示无 */
+    private final int[] match;
+    /** 恰好在该节点结束的模式下标，-1 表示无 */
+    private final int[] own;
+    /** fail 链上最近的、自身有模式结束的节点，-1 表示无（用于枚举全部命中） */
+    private final int[] dict;
+    private final String[] patterns;
+
+    private AhoCorasick(Collection<String> source) {
+        List<String> list = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        next.add(new HashMap<>());
+        ends.add(-1);
+        for (String p : source) {
+            if (p == null || p.isEmpty()) continue;
+            int node = 0;
+            for (int i = 0; i < p.length(); i++) {
+                char c = Character.toLowerCase(p.charAt(i));
+                Integer to = next.get(node).get(c);
+                if (to == null) {
+                    to = next.size();
+                    next.get(node).put(c, to);
+                    next.add(new HashMap<>());
+                    ends.add(-1);
+                }
+                node = to;
+            }
+            if (ends.get(node) < 0) {
+                ends.set(node, list.size());
+                list.add(p);
+            }
+        }
+        this.patterns = list.toArray(new String[0]);
+
+        int size = next.size();
+        this.fail = new int[size];
+        this.match = new int[size];
+        this.own = new int[size];
+        this.dict = new int[size];
+        for (int i = 0; i < size; i++) {
+            match[i] = ends.get(i);
+            own[i] = ends.get(i);
+            dict[i] = -1;
+        }
+
+        // BFS 构建失败指针
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : next.get(0).values()) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> e : next.get(node).entrySet()) {
+                char c = e.getKey();
+                int child = e.getValue();
+                int f = fail[node];
+                while (f != 0 && !next.get(f).containsKey(c)) f = fail[f];
+                Integer to = next.get(f).get(c);
+                fail[child] = to != null && to != child ? to : 0;
+                if (match[child] < 0) match[child] = match[fail[child]];
+                dict[child] = own[fail[child]] >= 0 ? fail[child] : dict[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public static AhoCorasick of(Collection<String> patterns) {
+        return patterns.isEmpty() ? EMPTY : new AhoCorasick(patterns);
+    }
+
+    /**
+     * 返回文本中最先出现（按结束位置）的模式原文，没有则返回 null。
+     */
+    public String findFirst(CharSequence text) {
+        if (text == null || patterns.length == 0) return null;
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            Integer to;
+            while ((to = next.get(node).get(c)) == null && node != 0) node = fail[node];
+            node = to != null ? to : 0;
+            if (match[node] >= 0) return patterns[match[node]];
+        }
+        return null;
+    }
+
+    /**
+     * 文本中出现过的全部模式原文（去重，按首次出现的结束位置排序）。
+     */
+    public List<String> findAll(CharSequence text) {
+        if (text == null || patterns.length == 0) return List.of();
+        List<String> found = new ArrayList<>();
+        boolean[] seen = new boolean[patterns.length];
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            Integer to;
+            while ((to = next.get(node).get(c)) == null && node != 0) node = fail[node];
+            node = to != null ? to : 0;
+            for (int n = own[node] >= 0 ? node : dict[node]; n > 0; n = dict[n]) {
+                int p = own[n];
+                if (!seen[p]) {
+                    seen[p] = true;
+                    found.add(patterns[p]);
+                }
+            }
+        }
+        return found;
+    }
+
+    public boolean containsAny(CharSequence text) {
+        return findFirst(text) != null;
+    }
+
+    public int size() {
+        return patterns.length;
+    }
+}
@@ -0,0 +1,296 @@
+package com.start.util;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 内存倒排索引，按 BM25 打分并用小顶堆取 top-k。
+ * <p>
+ * 词项在首次出现时分配整数 id（intern），倒排表存文档槽位和词频的并行 int 数组；
+ * 文档槽位在删除后回收复用。支持按 id 增量 {@link #put}/{@link #remove}，无需整体重建。
+ * 读写用读写锁保护：查询之间互不阻塞，更新只短暂独占。
+ * </p>
+ * 词项 id 一经分配不再回收，倒排表清空后仅占一个空数组，对词表规模有限的场景可以忽略。
+ *
+ * @param <T> 文档负载类型
+ */
+public class InvertedIndex<T> {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 检索命中
+     *
+     * @param id           文档 id
+     * @param doc          文档负载
+     * @param score        BM25 得分
+     * @param matchedTerms 命中的查询词数量
+     */
+    public record Hit<T>(long id, T doc, double score, int matchedTerms) {}
+
+    /** 单个词项的倒排表：文档槽位 + 词频，顺序无意义 */
+    private static final class Postings {
+        int[] slots = new int[4];
+        int[] tfs = new int[4];
+        int size;
+
+        void add(int slot, int tf) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                tfs = Arrays.copyOf(tfs, size * 2);
+            }
+            slots[size] = slot;
+            tfs[size] = tf;
+            size++;
+        }
+
+        void remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    size--;
+                    slots[i] = slots[size];
+                    tfs[i] = tfs[size];
+                    return;
+                }
+            }
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private long[] ids = new long[16];
+    private Object[] docs = new Object[16];
+    private int[] lengths = new int[16];
+    /** 每个槽位包含的词项 id，删除时据此清理倒排表 */
+    private int[][] docTerms = new int[16][];
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int slotCount;
+    private long totalLength;
+
+    /**
+     * 写入或替换一篇文档。
+     *
+     * @param terms 文档词项，重复出现的词按词频计
+     */
+    public void put(long id, T doc, Collection<String> terms) {
+        Map<Integer, Integer> tf = new HashMap<>();
+        int length = 0;
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            for (String term : terms) {
+                if (term == null || term.isEmpty()) continue;
+                Integer tid = termIds.get(term);
+                if (tid == null) {
+                    tid = postings.size();
+                    termIds.put(term, tid);
+                    postings.add(new Postings());
+                }
+                tf.merge(tid, 1, Integer::sum);
+                length++;
+            }
+
+            int slot = allocateSlot();
+            ids[slot] = id;
+            docs[slot] = doc;
+            lengths[slot] = length;
+            int[] termList = new int[tf.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> e : tf.entrySet()) {
+                postings.get(e.getKey()).add(slot, e.getValue());
+                termList[i++] = e.getKey();
+            }
+            docTerms[slot] = termList;
+            slotById.put(id, slot);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** 删除文档，不存在返回 false */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean removeLocked(long id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) return false;
+        for (int tid : docTerms[slot]) {
+            postings.get(tid).remove(slot);
+        }
+        totalLength -= lengths[slot];
+        docs[slot] = null;
+        docTerms[slot] = null;
+        lengths[slot] = 0;
+        freeSlots.push(slot);
+        return true;
+    }
+
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) return freeSlots.pop();
+        if (slotCount == ids.length) {
+            int cap = slotCount * 2;
+            ids = Arrays.copyOf(ids, cap);
+            docs = Arrays.copyOf(docs, cap);
+            lengths = Arrays.copyOf(lengths, cap);
+            docTerms = Arrays.copyOf(docTerms, cap);
+        }
+        return slotCount++;
+    }
+
+    /**
+     * 按 BM25 检索，返回得分最高的 k 篇文档（降序）；没有任何词命中时返回空列表。
+     *
+     * @param queryTerms 查询词，重复的词只计一次
+     */
+    public List<Hit<T>> search(Collection<String> queryTerms, int k) {
+        return search(queryTerms, k, null);
+    }
+
+    /**
+     * 同 {@link #search(Collection, int)}，只保留满足 filter 的文档（filter 为 null 不过滤）。
+     */
+    public List<Hit<T>> search(Collection<String> queryTerms, int k, Predicate<? super T> filter) {
+        if (k <= 0 || queryTerms.isEmpty()) return List.of();
+        lock.readLock().lock();
+        try {
+            int n = slotById.size();
+            if (n == 0) return List.of();
+            double avgLength = Math.max(1.0, (double) totalLength / n);
+
+            double[] scores = new double[slotCount];
+            int[] matched = new int[slotCount];
+            int[] touched = new int[Math.min(slotCount, 64)];
+            int touchedCount = 0;
+
+            Set<String> seen = new HashSet<>();
+            for (String term : queryTerms) {
+                if (term == null || !seen.add(term)) continue;
+                Integer tid = termIds.get(term);
+                if (tid == null) continue;
+                Postings p = postings.get(tid);
+                if (p.size == 0) continue;
+                double idf = Math.log(1 + (n - p.size + 0.5) / (p.size + 0.5));
+                for (int i = 0; i < p.size; i++) {
+                    int slot = p.slots[i];
+                    int tf = p.tfs[i];
+                    double norm = K1 * (1 - B + B * lengths[slot] / avgLength);
+                    if (matched[slot]++ == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, Math.min(slotCount, touchedCount * 2));
+                        }
+                        touched[touchedCount++] = slot;
+                    }
+                    scores[slot] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            if (touchedCount == 0) return List.of();
+
+            // 小顶堆保留 top-k，同分按 id 稳定排序
+            Comparator<Hit<T>> order = Comparator.<Hit<T>>comparingDouble(Hit::score)
+                    .thenComparing(Hit::id, Comparator.reverseOrder());
+            PriorityQueue<Hit<T>> heap = new PriorityQueue<>(Math.min(k, touchedCount) + 1, order);
+            for (int i = 0; i < touchedCount; i++) {
+                int slot = touched[i];
+                if (heap.size() == k) {
+                    // 同分时 id 更小的文档仍要换掉堆顶，否则结果取决于槽位顺序
+                    Hit<T> weakest = heap.peek();
+                    if (scores[slot] < weakest.score()
+                            || (scores[slot] == weakest.score() && ids[slot] > weakest.id())) continue;
+                }
+                if (filter != null && !filter.test(doc(slot))) continue;
+                heap.offer(new Hit<>(ids[slot], doc(slot), scores[slot], matched[slot]));
+                if (heap.size() > k) heap.poll();
+            }
+            List<Hit<T>> result = new ArrayList<>(heap);
+            result.sort(order.reversed());
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T doc(int slot) {
+        return (T) docs[slot];
+    }
+
+    /** 按 id 取文档 */
+    public T get(long id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            return slot == null ? null : doc(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return slotById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 全部文档的快照（无序） */
+    public List<T> values() {
+        lock.readLock().lock();
+        try {
+            List<T> list = new ArrayList<>(slotById.size());
+            for (int slot : slotById.values()) list.add(doc(slot));
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 已分配的词项数（含已无文档的词） */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return termIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            termIds.clear();
+            postings.clear();
+            slotById.clear();
+            Arrays.fill(docs, null);
+            Arrays.fill(docTerms, null);
+            freeSlots.clear();
+            slotCount = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
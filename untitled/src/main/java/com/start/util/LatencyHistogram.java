@@ -0,0 +1,92 @@
+package com.start.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定桶延迟直方图（毫秒），无锁记录，可并发写入。
+ * <p>
+ * 桶边界按 1-2.5-5 递增，从 1ms 到 120s，超过最后一个边界的记到溢出桶。
+ * 分位数按桶上界估算，精度足够用于监控和自适应阈值（如请求对冲延迟）。
+ * </p>
+ */
+public class LatencyHistogram {
+
+    /** 各桶上界（毫秒，含） */
+    private static final long[] BOUNDS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500,
+            1_000, 2_500, 5_000, 10_000, 20_000, 30_000, 60_000, 120_000
+    };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumMs = new AtomicLong();
+    private final AtomicLong maxMs = new AtomicLong();
+
+    public void record(long ms) {
+        if (ms < 0) ms = 0;
+        counts.incrementAndGet(bucketOf(ms));
+        total.incrementAndGet();
+        sumMs.addAndGet(ms);
+        long prev;
+        while (ms > (prev = maxMs.get()) && !maxMs.compareAndSet(prev, ms)) {
+            // CAS 重试
+        }
+    }
+
+    private static int bucketOf(long ms) {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (ms <= BOUNDS[i]) return i;
+        }
+        return BOUNDS.length;
+    }
+
+    public long getCount() {
+        return total.get();
+    }
+
+    /**
+     * 估算分位数（0~1），返回所在桶的上界；无数据返回 0，落在溢出桶返回历史最大值。
+     */
+    public long percentile(double q) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, q)) * n);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank && seen > 0) {
+                return i < BOUNDS.length ? BOUNDS[i] : maxMs.get();
+            }
+        }
+        return maxMs.get();
+    }
+
+    public Snapshot snapshot() {
+        long n = total.get();
+        long[] buckets = new long[counts.length()];
+        for (int i = 0; i < buckets.length; i++) buckets[i] = counts.get(i);
+        return new Snapshot(n, n == 0 ? 0 : sumMs.get() / n, percentile(0.5), percentile(0.95),
+                percentile(0.99), maxMs.get(), sumMs.get(), buckets);
+    }
+
+    /** 桶上界（毫秒），与 {@link Snapshot#buckets()} 前 N 个元素一一对应，最后一个元素为溢出桶 */
+    public static long[] bucketBounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * 直方图快照
+     *
+     * @param count   样本数
+     * @param avgMs   平均值
+     * @param p50Ms   中位数（桶上界估算）
+     * @param p95Ms   P95
+     * @param p99Ms   P99
+     * @param maxMs   最大值
+     * @param sumMs   总和
+     * @param buckets 各桶计数（非累计）
+     */
+    public record Snapshot(long count, long avgMs, long p50Ms, long p95Ms, long p99Ms, long maxMs,
+                           long sumMs, long[] buckets) {}
+}
@@ -0,0 +1,103 @@
+package com.start.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 数据库读取的旁路缓存：容量有上限（按访问顺序 LRU 淘汰），条目超过 TTL 视为过期重新加载。
+ * <p>
+ * 写操作由仓库在提交后调用 {@link #invalidate} / {@link #invalidateIf} 失效对应条目。
+ * 加载在锁外进行，期间若发生过失效，加载结果只返回给本次调用、不写入缓存，避免旧数据覆盖刚失效的条目。
+ * 加载器返回 null 表示本次结果不缓存（例如查询出错），调用方自行处理。
+ * </p>
+ * 缓存的对象会被多个线程共享，调用方不得修改。
+ */
+public final class ReadThroughCache<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    public record Stats(String name, long hits, long misses, long evictions, int size) {}
+
+    private record Entry<V>(V value, long loadedAt) {}
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMs;
+    private final Map<K, Entry<V>> map;
+    /** 每次失效加一，加载前后不一致说明加载期间数据可能已变 */
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ReadThroughCache(String name, int maxSize, long ttlMs) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMs = ttlMs;
+        this.map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() <= ReadThroughCache.this.maxSize) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /** 命中且未过期直接返回，否则调用加载器并缓存其结果 */
+    public <E extends Exception> V get(K key, Loader<V, E> loader) throws E {
+        long gen;
+        synchronized (this) {
+            Entry<V> e = map.get(key);
+            if (e != null) {
+                if (ttlMs <= 0 || System.currentTimeMillis() - e.loadedAt() < ttlMs) {
+                    hits.incrementAndGet();
+                    return e.value();
+                }
+                map.remove(key);
+                evictions.incrementAndGet();
+            }
+            gen = generation;
+        }
+        misses.incrementAndGet();
+        V value = loader.load();
+        if (value != null) {
+            synchronized (this) {
+                if (gen == generation) map.put(key, new Entry<>(value, System.currentTimeMillis()));
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        map.remove(key);
+    }
+
+    public synchronized void invalidateIf(Predicate<? super K> condition) {
+        generation++;
+        for (Iterator<K> it = map.keySet().iterator(); it.hasNext(); ) {
+            if (condition.test(it.next())) it.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        map.clear();
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (this) {
+            size = map.size();
+        }
+        return new Stats(name, hits.get(), misses.get(), evictions.get(), size);
+    }
+}
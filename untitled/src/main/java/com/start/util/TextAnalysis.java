@@ -0,0 +1,211 @@
+package com.start.util;
+
+import com.hankcs.hanlp.HanLP;
+import com.hankcs.hanlp.dictionary.stopword.CoreStopWordDictionary;
+import com.hankcs.hanlp.seg.common.Term;
+import com.hankcs.hanlp.summary.TextRankKeyword;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一段消息文本的分析结果：HanLP 只分词一次，分词、关键词和去停用词的词项都从这一次结果得出，另附兴趣话题。
+ * <p>
+ * 知识库查询、记忆召回、主动插话判断原先各自调用 {@code HanLP.extractKeyword}，同一条消息要分词好几遍。
+ * 现在统一通过 {@link #of(String)} 获取，同一文本的结果放在 LRU 缓存里（复读、刷屏、重复指令直接命中），
+ * 调用方拿到后可以在一次处理流程中传递使用。
+ * </p>
+ * 关键词与 {@code HanLP.extractKeyword(clean, n)} 结果一致：同样的默认分词器、同样的 TextRank，
+ * 只是按最大个数算一次，需要更少时取前缀。兴趣话题只做子串匹配，不需要分词，
+ * 只要话题的地方（每条群消息的插话判断、消息落库）直接用 {@link #topicsOf(String)}。对象不可变，可跨线程共享。
+ */
+public final class TextAnalysis {
+    private static final Logger logger = LoggerFactory.getLogger(TextAnalysis.class);
+
+    /** 一次计算的关键词个数上限，调用方按需取前 n 个 */
+    public static final int MAX_KEYWORDS = 8;
+    private static final int CACHE_SIZE = 1024;
+    /** 超过该长度的文本不进缓存（长文本几乎不会重复，只会挤掉短消息） */
+    private static final int MAX_CACHED_LENGTH = 512;
+
+    private static final TextRankKeyword TEXT_RANK = new TextRankKeyword();
+
+    /** 兴趣话题：话题名 → 触发词（按子串匹配） */
+    private static final Map<String, List<String>> TOPIC_WORDS = new LinkedHashMap<>();
+
+    static {
+        TOPIC_WORDS.put("文学", List.of("诗", "文学", "书"));
+        TOPIC_WORDS.put("音乐", List.of("音乐", "歌", "曲"));
+        TOPIC_WORDS.put("艺术", List.of("艺术", "画", "美术"));
+        TOPIC_WORDS.put("哲学", List.of("哲学", "思考", "人生"));
+        TOPIC_WORDS.put("自然", List.of("自然", "风景", "天空"));
+        TOPIC_WORDS.put("游戏", List.of("游戏", "运动", "板绘"));
+    }
+
+    private static final Map<String, TextAnalysis> CACHE = new LinkedHashMap<>(CACHE_SIZE * 4 / 3 + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TextAnalysis> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final TextAnalysis EMPTY = new TextAnalysis("", "", List.of(), List.of(), Set.of(), Set.of());
+
+    private final String text;
+    private final String clean;
+    private final List<String> tokens;
+    private final List<String> keywords;
+    private final Set<String> terms;
+    private final Set<String> topics;
+
+    private TextAnalysis(String text, String clean, List<String> tokens, List<String> keywords,
+                         Set<String> terms, Set<String> topics) {
+        this.text = text;
+        this.clean = clean;
+        this.tokens = tokens;
+        this.keywords = keywords;
+        this.terms = terms;
+        this.topics = topics;
+    }
+
+    /**
+     * 获取文本的分析结果（先查缓存），text 为 null 或空白时返回空结果
+     */
+    public static TextAnalysis of(String text) {
+        if (text == null || text.isBlank()) return EMPTY;
+        String key = text.trim();
+        boolean cacheable = key.length() <= MAX_CACHED_LENGTH;
+        if (cacheable) {
+            TextAnalysis cached;
+            synchronized (CACHE) {
+                cached = CACHE.get(key);
+            }
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        // 分词放在锁外，并发首次分析同一文本最多重复一次，结果一致
+        TextAnalysis analysis = compute(key);
+        if (cacheable) {
+            synchronized (CACHE) {
+                CACHE.put(key, analysis);
+            }
+        }
+        return analysis;
+    }
+
+    /**
+     * 不经缓存直接分析，用于批量建索引等一次性文本，避免挤掉缓存里的热消息
+     */
+    public static TextAnalysis analyze(String text) {
+        if (text == null || text.isBlank()) return EMPTY;
+        return compute(text.trim());
+    }
+
+    private static TextAnalysis compute(String text) {
+        String clean = text.replaceAll("[\\p{Punct}\\s]+", " ").trim();
+        Set<String> topics = topicsOf(text);
+        if (clean.isEmpty()) {
+            return new TextAnalysis(text, clean, List.of(), List.of(), Set.of(), topics);
+        }
+
+        List<Term> segmented;
+        try {
+            segmented = HanLP.segment(clean);
+        } catch (Exception e) {
+            logger.warn("HanLP 分词失败: {}", e.getMessage());
+            return new TextAnalysis(text, clean, List.of(), List.of(), Set.of(), topics);
+        }
+
+        List<String> tokens = new ArrayList<>(segmented.size());
+        Set<String> terms = new LinkedHashSet<>();
+        for (Term t : segmented) {
+            String w = t.word.trim();
+            if (w.isEmpty()) continue;
+            tokens.add(w);
+            if (CoreStopWordDictionary.shouldInclude(t)) terms.add(w.toLowerCase(Locale.ROOT));
+        }
+
+        List<String> keywords = new ArrayList<>();
+        try {
+            for (String k : TEXT_RANK.getKeywords(segmented, MAX_KEYWORDS)) {
+                if (k != null && !k.isBlank()) keywords.add(k);
+            }
+        } catch (Exception e) {
+            logger.warn("HanLP关键词提取失败: {}", e.getMessage());
+        }
+
+        return new TextAnalysis(text, clean, Collections.unmodifiableList(tokens),
+                Collections.unmodifiableList(keywords), Collections.unmodifiableSet(terms), topics);
+    }
+
+    /**
+     * 启动预热：HanLP 词典在第一次分词时才加载（数秒），启动时先分一次，避免第一条消息承担
+     */
+    public static void warmUp() {
+        compute("糖果熊今天想去三里屯喝奶茶");
+    }
+
+    /** 文本命中的兴趣话题，不分词 */
+    public static Set<String> topicsOf(String text) {
+        if (text == null || text.isEmpty()) return Set.of();
+        Set<String> topics = new LinkedHashSet<>();
+        TOPIC_WORDS.forEach((topic, words) -> {
+            for (String w : words) {
+                if (text.contains(w)) {
+                    topics.add(topic);
+                    return;
+                }
+            }
+        });
+        return topics.isEmpty() ? Set.of() : Collections.unmodifiableSet(topics);
+    }
+
+    /** 原文（已去首尾空白） */
+    public String text() { return text; }
+
+    /** 标点和空白统一替换为单个空格后的文本 */
+    public String clean() { return clean; }
+
+    /** HanLP 分词结果（去空白，保留原大小写和停用词） */
+    public List<String> tokens() { return tokens; }
+
+    /** TextRank 关键词，按权重降序，最多 {@link #MAX_KEYWORDS} 个 */
+    public List<String> keywords() { return keywords; }
+
+    /** 前 n 个关键词 */
+    public List<String> keywords(int n) {
+        return keywords.size() <= n ? keywords : keywords.subList(0, n);
+    }
+
+    /** 去掉 HanLP 停用词和标点后的词项（小写，去重，保持出现顺序） */
+    public Set<String> terms() { return terms; }
+
+    /** 命中的兴趣话题（文学、音乐、艺术、哲学、自然、游戏） */
+    public Set<String> topics() { return topics; }
+
+    // ================== 统计 ==================
+
+    public record CacheStats(long hits, long misses, int size) {}
+
+    public static CacheStats getCacheStats() {
+        int size;
+        synchronized (CACHE) {
+            size = CACHE.size();
+        }
+        return new CacheStats(hits.get(), misses.get(), size);
+    }
+}
@@ -0,0 +1,177 @@
+package com.start.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    /** 第 L 层一个槽覆盖的 tick 数为 64^L，四层之外进溢出表 */
+    private static final long LEVEL1 = 64;
+    private static final long LEVEL2 = 64 * 64;
+    private static final long LEVEL3 = 64 * 64 * 64;
+    private static final long OVERFLOW = 64L * 64 * 64 * 64;
+
+    /** 记录每个条目到期时的 tick */
+    private static final class Recorder {
+        final TimerWheel<String> wheel;
+        final Map<String, Long> firedAt = new HashMap<>();
+
+        Recorder(long startTick) {
+            wheel = new TimerWheel<>(startTick);
+        }
+
+        void advance(Runnable beforeExpire) {
+            wheel.advance(beforeExpire, name -> {
+                Long previous = firedAt.put(name, wheel.currentTick());
+                assertNull(previous, name + " 重复到期");
+            });
+        }
+
+        void advanceTo(long tick) {
+            while (wheel.currentTick() < tick) advance(() -> {});
+        }
+    }
+
+    @Test
+    void entriesExpireOnTheirDeadlineAtEveryLevel() {
+        Recorder r = new Recorder(0);
+        long[] deadlines = {1, 63, LEVEL1, LEVEL1 + 1, LEVEL2 - 1, LEVEL2, LEVEL2 + 1,
+                LEVEL3 - 1, LEVEL3, LEVEL3 + LEVEL2 + 7};
+        for (long d : deadlines) r.wheel.add(d, "d" + d);
+
+        r.advanceTo(LEVEL3 + LEVEL2 + 10);
+
+        for (long d : deadlines) assertEquals(d, r.firedAt.get("d" + d), "d" + d);
+        assertEquals(0, r.wheel.size());
+    }
+
+    @Test
+    void cascadeAtLevelBoundaryFromUnalignedStart() {
+        // 起点紧挨着第 1、2 层的边界，条目要在边界处整体下放后仍按原到期 tick 取出
+        long start = LEVEL2 - 3;
+        Recorder r = new Recorder(start);
+        long[] deadlines = {LEVEL2 - 1, LEVEL2, LEVEL2 + 1, LEVEL2 + LEVEL1, LEVEL2 + LEVEL1 - 1,
+                2 * LEVEL2, 2 * LEVEL2 + 5, start + LEVEL2 - 1};
+        for (long d : deadlines) r.wheel.add(d, "d" + d);
+
+        r.advanceTo(3 * LEVEL2);
+
+        for (long d : deadlines) assertEquals(d, r.firedAt.get("d" + d), "d" + d);
+    }
+
+    @Test
+    void entriesAddedWhileCascadingAreNotLost() {
+        // 在边界 tick 的 beforeExpire 中放入的条目，槽可能刚被下放过
+        Recorder r = new Recorder(0);
+        List<Long> deadlines = new ArrayList<>();
+        r.advanceTo(LEVEL2 - 1);
+        r.advance(() -> {
+            long now = r.wheel.currentTick();
+            assertEquals(LEVEL2, now);
+            for (long d : new long[]{now, now + 1, now + LEVEL1, now + LEVEL2 - 1, now + LEVEL2,
+                    now + LEVEL3 - 1, now + LEVEL3}) {
+                deadlines.add(d);
+                r.wheel.add(d, "d" + d);
+            }
+        });
+
+        r.advanceTo(LEVEL2 + LEVEL3 + 1);
+
+        for (long d : deadlines) assertEquals(d, r.firedAt.get("d" + d), "d" + d);
+    }
+
+    @Test
+    void randomDeadlinesMatchExpectedTicks() {
+        Random random = new Random(42);
+        long start = random.nextInt(1 << 20);
+        Recorder r = new Recorder(start);
+        Map<String, Long> expected = new HashMap<>();
+        int[] counter = {0};
+        long end = start + 3 * LEVEL3;
+
+        while (r.wheel.currentTick() < end) {
+            r.advance(() -> {
+                long now = r.wheel.currentTick();
+                if (now > end - LEVEL3 || random.nextInt(200) != 0) return;
+                long delta = switch (random.nextInt(4)) {
+                    case 0 -> random.nextInt((int) LEVEL1);
+                    case 1 -> random.nextInt((int) LEVEL2);
+                    case 2 -> random.nextInt((int) LEVEL3);
+                    default -> -random.nextInt(10);
+                };
+                String name = "e" + counter[0]++;
+                expected.put(name, Math.max(now, now + delta));
+                r.wheel.add(now + delta, name);
+            });
+        }
+
+        assertTrue(expected.size() > 100);
+        assertEquals(expected, r.firedAt);
+        assertEquals(0, r.wheel.size());
+    }
+
+    @Test
+    void overflowEntryIsReplacedAndExpiresOnTime() {
+        // 第一次第 3 层轮转时仍超出四层范围，要再回溢出表，下一次轮转才落到第 3 层
+        long deadline = OVERFLOW + LEVEL3 + 5;
+        Recorder r = new Recorder(0);
+        r.wheel.add(deadline, "far");
+        r.wheel.add(OVERFLOW + 1, "edge");
+
+        r.advanceTo(OVERFLOW);
+        assertTrue(r.firedAt.isEmpty());
+        assertEquals(2, r.wheel.size());
+
+        r.advanceTo(deadline + 1);
+        assertEquals(OVERFLOW + 1, r.firedAt.get("edge"));
+        assertEquals(deadline, r.firedAt.get("far"));
+        assertEquals(0, r.wheel.size());
+    }
+
+    @Test
+    void deadlineAtOrBeforeCurrentTickExpiresOnNextAdvance() {
+        Recorder r = new Recorder(100);
+        r.wheel.add(100, "now");
+        r.wheel.add(50, "past");
+        r.wheel.add(Long.MIN_VALUE, "ancient");
+
+        r.advance(() -> {});
+
+        assertEquals(101L, r.firedAt.get("now"));
+        assertEquals(101L, r.firedAt.get("past"));
+        assertEquals(101L, r.firedAt.get("ancient"));
+        assertEquals(0, r.wheel.size());
+    }
+
+    @Test
+    void deadlineAtOrBeforeCurrentTickAddedBeforeExpireFiresInSameAdvance() {
+        Recorder r = new Recorder(100);
+        r.advance(() -> {
+            r.wheel.add(101, "now");
+            r.wheel.add(7, "past");
+            r.wheel.add(102, "next");
+        });
+
+        assertEquals(101L, r.firedAt.get("now"));
+        assertEquals(101L, r.firedAt.get("past"));
+        assertFalse(r.firedAt.containsKey("next"));
+        assertEquals(1, r.wheel.size());
+
+        r.advance(() -> {});
+        assertEquals(102L, r.firedAt.get("next"));
+    }
+
+    @Test
+    void entryAddedWhileExpiringWaitsForNextTick() {
+        Recorder r = new Recorder(0);
+        r.wheel.add(1, "first");
+        r.wheel.advance(() -> {}, name -> r.wheel.add(r.wheel.currentTick(), "again"));
+
+        assertEquals(1, r.wheel.size());
+        r.advance(() -> {});
+        assertEquals(2L, r.firedAt.get("again"));
+    }
+}
@@ -0,0 +1,68 @@
+package com.start.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AhoCorasickTest {
+
+    @Test
+    void overlappingPatternsAreAllReported() {
+        AhoCorasick ac = AhoCorasick.of(List.of("he", "she", "his", "hers"));
+
+        // "ushers" 中 she / he 在同一位置结束，hers 与它们重叠
+        assertEquals(List.of("she", "he", "hers"), ac.findAll("ushers"));
+        assertEquals("she", ac.findFirst("ushers"));
+        assertTrue(ac.containsAny("ahishers"));
+        assertFalse(ac.containsAny("hxs"));
+    }
+
+    @Test
+    void patternThatIsSuffixOfAnotherMatchesInsideIt() {
+        AhoCorasick ac = AhoCorasick.of(List.of("abcd", "bcd", "cd"));
+
+        // 只走失败指针才能在 abcd 的路径上发现后缀模式
+        assertEquals(List.of("abcd", "bcd", "cd"), ac.findAll("xabcdx"));
+        assertEquals(List.of("bcd", "cd"), ac.findAll("abxbcd"));
+        assertEquals("abcd", ac.findFirst("abcd"));
+    }
+
+    @Test
+    void shorterPatternEndingEarlierIsFoundFirst() {
+        AhoCorasick ac = AhoCorasick.of(List.of("abcde", "bc"));
+
+        assertEquals("bc", ac.findFirst("abcde"));
+        assertEquals(List.of("bc", "abcde"), ac.findAll("abcde"));
+        // 长模式走到一半失配时要回退到后缀模式继续匹配
+        assertEquals(List.of("bc"), ac.findAll("abcdx"));
+    }
+
+    @Test
+    void matchingIgnoresCaseAndReturnsOriginalPattern() {
+        AhoCorasick ac = AhoCorasick.of(List.of("Hello", "WORLD"));
+
+        assertEquals(List.of("Hello", "WORLD"), ac.findAll("hELLo, world"));
+        assertEquals("WORLD", ac.findFirst("xxWorld"));
+    }
+
+    @Test
+    void patternsDifferingOnlyInCaseAreDeduplicated() {
+        AhoCorasick ac = AhoCorasick.of(List.of("abc", "ABC", "", "Abc"));
+
+        assertEquals(1, ac.size());
+        assertEquals(List.of("abc"), ac.findAll("ABCabc"));
+    }
+
+    @Test
+    void emptyInputs() {
+        AhoCorasick empty = AhoCorasick.of(List.of());
+        assertNull(empty.findFirst("anything"));
+        assertTrue(empty.findAll("anything").isEmpty());
+
+        AhoCorasick ac = AhoCorasick.of(List.of("a"));
+        assertNull(ac.findFirst(null));
+        assertTrue(ac.findAll("").isEmpty());
+    }
+}
@@ -0,0 +1,162 @@
+package com.start.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+
+    private static List<Long> ids(List<InvertedIndex.Hit<String>> hits) {
+        return hits.stream().map(InvertedIndex.Hit::id).toList();
+    }
+
+    @Test
+    void higherTermFrequencyRanksFirst() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        index.put(1, "one", List.of("cat", "dog", "fish", "bird"));
+        index.put(2, "two", List.of("cat", "cat", "cat", "bird"));
+        index.put(3, "three", List.of("cat", "cat", "fish", "bird"));
+
+        assertEquals(List.of(2L, 3L, 1L), ids(index.search(List.of("cat"), 10)));
+    }
+
+    @Test
+    void rareTermOutweighsCommonTerm() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        index.put(1, "common", List.of("the", "x"));
+        index.put(2, "rare", List.of("zebra", "x"));
+        index.put(3, "filler-a", List.of("the", "y"));
+        index.put(4, "filler-b", List.of("the", "z"));
+
+        List<InvertedIndex.Hit<String>> hits = index.search(List.of("the", "zebra"), 10);
+        assertEquals(2L, hits.get(0).id());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void shorterDocumentWinsAtEqualFrequency() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        index.put(1, "long", List.of("cat", "a", "b", "c", "d", "e"));
+        index.put(2, "short", List.of("cat", "a"));
+
+        assertEquals(List.of(2L, 1L), ids(index.search(List.of("cat"), 10)));
+    }
+
+    @Test
+    void moreMatchedTermsRankFirstAndAreCounted() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        index.put(1, "both", List.of("red", "apple"));
+        index.put(2, "one", List.of("red", "car"));
+        index.put(3, "none", List.of("blue", "car"));
+
+        List<InvertedIndex.Hit<String>> hits = index.search(List.of("red", "apple", "red"), 10);
+        assertEquals(List.of(1L, 2L), ids(hits));
+        assertEquals(2, hits.get(0).matchedTerms());
+        assertEquals(1, hits.get(1).matchedTerms());
+    }
+
+    @Test
+    void topKKeepsHighestScoresAndBreaksTiesBySmallerId() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        // 先写大 id，确认结果不依赖槽位顺序
+        index.put(5, "e", List.of("k", "pad"));
+        index.put(4, "d", List.of("k", "pad"));
+        index.put(3, "c", List.of("k", "pad"));
+        index.put(9, "best", List.of("k", "k", "k"));
+
+        assertEquals(List.of(9L, 3L), ids(index.search(List.of("k"), 2)));
+        assertEquals(List.of(3L), ids(index.search(List.of("k"), 1, doc -> !doc.equals("best"))));
+    }
+
+    @Test
+    void removedDocumentDisappearsFromResults() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        index.put(1, "a", List.of("cat"));
+        index.put(2, "b", List.of("cat", "dog"));
+
+        assertTrue(index.remove(1));
+        assertFalse(index.remove(1));
+        assertFalse(index.contains(1));
+        assertNull(index.get(1));
+        assertEquals(1, index.size());
+        assertEquals(List.of(2L), ids(index.search(List.of("cat"), 10)));
+    }
+
+    @Test
+    void putReplacesExistingDocumentTerms() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        index.put(1, "old", List.of("cat"));
+        index.put(1, "new", List.of("dog"));
+
+        assertEquals(1, index.size());
+        assertTrue(index.search(List.of("cat"), 10).isEmpty());
+        List<InvertedIndex.Hit<String>> hits = index.search(List.of("dog"), 10);
+        assertEquals(1, hits.size());
+        assertEquals("new", hits.get(0).doc());
+    }
+
+    @Test
+    void freedSlotIsReusedWithoutLeakingOldPostings() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        for (long id = 1; id <= 20; id++) {
+            index.put(id, "doc" + id, List.of("common", "t" + id));
+        }
+        index.remove(7);
+        index.put(100, "reused", List.of("fresh"));
+
+        assertTrue(index.search(List.of("t7"), 10).isEmpty());
+        assertEquals(List.of(100L), ids(index.search(List.of("fresh"), 10)));
+        assertEquals(19, index.search(List.of("common"), 100).size());
+        assertEquals(20, index.size());
+    }
+
+    @Test
+    void incrementalIndexMatchesFreshlyBuiltOne() {
+        InvertedIndex<String> incremental = new InvertedIndex<>();
+        incremental.put(1, "a", List.of("x", "y"));
+        incremental.put(2, "b", List.of("x", "x", "z"));
+        incremental.put(3, "c", List.of("y", "z", "w"));
+        incremental.remove(2);
+        incremental.put(4, "d", List.of("x", "w"));
+        incremental.put(1, "a", List.of("x", "y", "y"));
+
+        InvertedIndex<String> fresh = new InvertedIndex<>();
+        fresh.put(3, "c", List.of("y", "z", "w"));
+        fresh.put(4, "d", List.of("x", "w"));
+        fresh.put(1, "a", List.of("x", "y", "y"));
+
+        List<String> query = List.of("x", "y", "w");
+        List<InvertedIndex.Hit<String>> expected = fresh.search(query, 10);
+        List<InvertedIndex.Hit<String>> actual = incremental.search(query, 10);
+        assertEquals(ids(expected), ids(actual));
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).score(), actual.get(i).score(), 1e-9);
+        }
+    }
+
+    @Test
+    void emptyQueryOrNoMatchReturnsEmpty() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        assertTrue(index.search(List.of("cat"), 10).isEmpty());
+
+        index.put(1, "a", List.of("cat"));
+        assertTrue(index.search(List.of(), 10).isEmpty());
+        assertTrue(index.search(List.of("dog"), 10).isEmpty());
+        assertTrue(index.search(List.of("cat"), 0).isEmpty());
+    }
+
+    @Test
+    void clearDropsEverything() {
+        InvertedIndex<String> index = new InvertedIndex<>();
+        index.put(1, "a", List.of("cat"));
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertEquals(0, index.termCount());
+        assertTrue(index.search(List.of("cat"), 10).isEmpty());
+        index.put(2, "b", List.of("cat"));
+        assertEquals(List.of(2L), ids(index.search(List.of("cat"), 10)));
+    }
+}